@@ -0,0 +1,28 @@
+#!/bin/sh
+# Compiles the calculator and records an AppCDS archive from a training run.
+# The training run starts the GUI in benchmark mode, which exits as soon as
+# the calculator is interactive, so every class on the boot path is archived.
+#
+# Usage: scripts/build-cds-archive.sh [output-dir]
+# Requires JDK 13+ (-XX:ArchiveClassesAtExit) and a display (or xvfb-run).
+set -e
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+OUT=${1:-"$ROOT/build"}
+CLASSES="$OUT/classes"
+JAR="$OUT/calculator.jar"
+
+mkdir -p "$CLASSES"
+javac -encoding UTF-8 -d "$CLASSES" -sourcepath "$ROOT/src/main/java" \
+    "$ROOT/src/main/java/com/simplecalculator/main/Calculator.java"
+# CDS only archives classes loaded from jars; a non-empty directory on the
+# class path makes the JVM refuse to dump the archive
+rm -f "$JAR"
+jar cf "$JAR" -C "$CLASSES" .
+
+java -XX:ArchiveClassesAtExit="$OUT/calculator.jsa" \
+    -Dcalculator.startupBenchmark=true \
+    -cp "$JAR" com.simplecalculator.main.Calculator
+
+echo "CDS archive written to $OUT/calculator.jsa"
+echo "Run with: java -XX:SharedArchiveFile=$OUT/calculator.jsa -cp $JAR com.simplecalculator.main.Calculator"
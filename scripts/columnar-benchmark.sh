@@ -0,0 +1,21 @@
+#!/bin/sh
+# Compares row-by-row, scalar columnar and Vector API columnar evaluation of one
+# formula (com.simplecalculator.main.ColumnarBenchmark).
+#
+# Usage: scripts/columnar-benchmark.sh [rows] [formula over a, b, c] [output-dir]
+# Requires JDK 16+ for the incubating jdk.incubator.vector module. The kernels using
+# it (src/vector/java) are compiled here only, on top of the main sources.
+set -e
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+OUT=${3:-"$ROOT/build"}
+CLASSES="$OUT/classes"
+
+mkdir -p "$CLASSES"
+javac -encoding UTF-8 -d "$CLASSES" $(find "$ROOT/src/main/java" -name '*.java')
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp "$CLASSES" -d "$CLASSES" \
+    $(find "$ROOT/src/vector/java" -name '*.java')
+
+java --add-modules jdk.incubator.vector -cp "$CLASSES" \
+    com.simplecalculator.main.ColumnarBenchmark ${1:+"$1"} ${2:+"$2"} 2>&1 \
+    | grep -v 'Using incubator modules'
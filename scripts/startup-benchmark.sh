@@ -0,0 +1,32 @@
+#!/bin/sh
+# Measures cold start (JVM launch to first paint and to interactive) with and
+# without the AppCDS archive produced by build-cds-archive.sh.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [output-dir]
+set -e
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+RUNS=${1:-10}
+OUT=${2:-"$ROOT/build"}
+JAR="$OUT/calculator.jar"
+
+if [ ! -f "$OUT/calculator.jsa" ] || [ ! -f "$JAR" ]; then
+    "$ROOT/scripts/build-cds-archive.sh" "$OUT"
+fi
+
+measure() {
+    label=$1
+    shift
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        java "$@" -Dcalculator.startupBenchmark=true -cp "$JAR" com.simplecalculator.main.Calculator
+        i=$((i + 1))
+    done | awk -F= -v label="$label" '
+        /firstPaintMillis/ { paint += $2; n++ }
+        /interactiveMillis/ { ready += $2 }
+        END { if (n > 0) printf "%-10s first paint %6.1f ms   interactive %6.1f ms   (%d runs)\n", label, paint / n, ready / n, n }'
+}
+
+measure "no-cds" -Xshare:off
+measure "default"
+measure "appcds" -XX:SharedArchiveFile="$OUT/calculator.jsa"
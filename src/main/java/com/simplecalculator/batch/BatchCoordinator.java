@@ -0,0 +1,402 @@
+package com.simplecalculator.batch;
+
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.NumericMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates a file of expressions, one per line, with a pool of {@link BatchWorker}
+ * processes on the same host, and writes one result per line, in input order.
+ *
+ * <ul>
+ *   <li>The input is read lazily in chunks of {@code chunkSize} lines. Workers pull the
+ *       next chunk when they finish one, so faster workers simply take more chunks.</li>
+ *   <li>Once no unstarted chunk is left, an idle worker takes a second copy of the
+ *       oldest chunk that has been running for longer than chunks take on average
+ *       (straggler stealing); whichever copy finishes first is used.</li>
+ *   <li>If a worker's connection fails or its process dies, the chunk it held goes back
+ *       to the front of the queue and a replacement process is started, up to
+ *       {@code maxRestarts} times per run.</li>
+ *   <li>Finished chunks are written as soon as all earlier ones are. Reading stops while
+ *       too many finished chunks are waiting for an earlier one, so memory stays bounded
+ *       even if one chunk is slow.</li>
+ * </ul>
+ * Workers connect over a Unix domain socket in a fresh temporary directory and are
+ * started with this JVM's java binary and class path.
+ *
+ * Usage: BatchCoordinator input output [workers] [chunk size]
+ */
+public final class BatchCoordinator {
+    private static final Logger logger = Logger.getLogger(BatchCoordinator.class.getName());
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    // Finished-but-unwritten chunks allowed per worker before reading pauses
+    private static final int BUFFERED_CHUNKS_PER_WORKER = 4;
+    // Most workers ever running the same chunk
+    private static final int MAX_COPIES = 2;
+
+    private final int workers;
+    private final int chunkSize;
+    private final NumericMode mode;
+    private int maxRestarts;
+    private List<String> workerArguments = List.of();
+
+    // Per-run state; everything below is guarded by this
+    private BufferedReader input;
+    private boolean inputDone;
+    private int chunksRead;
+    private int nextToWrite;
+    private final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+    // Chunks running on at least one worker, oldest first
+    private final Map<Integer, Chunk> running = new LinkedHashMap<>();
+    // Chunks read but not yet written
+    private final Map<Integer, Chunk> unwritten = new HashMap<>();
+    private final Map<Long, Process> processes = new HashMap<>();
+    private int liveWorkers;
+    private int restarts;
+    private int retries;
+    private int copies;
+    private long completedChunks;
+    private long completedNanos;
+    private boolean finished;
+    private IOException failure;
+    private Path socket;
+
+    private static final class Chunk {
+        final int id;
+        final List<String> expressions;
+        int copies;
+        long started;
+        EvaluationResult[] results;
+
+        Chunk(int id, List<String> expressions) {
+            this.id = id;
+            this.expressions = expressions;
+        }
+    }
+
+    public BatchCoordinator(int workers) {
+        this(workers, DEFAULT_CHUNK_SIZE, NumericMode.DECIMAL);
+    }
+
+    public BatchCoordinator(int workers, int chunkSize, NumericMode mode) {
+        if (workers < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("workers and chunkSize must be positive");
+        }
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.mode = mode;
+        this.maxRestarts = workers;
+    }
+
+    // Replacement processes started per run when workers die (default: one per worker)
+    public void setMaxRestarts(int maxRestarts) {
+        this.maxRestarts = maxRestarts;
+    }
+
+    // Extra command-line arguments for every worker, for example "--fail-after", "10"
+    public void setWorkerArguments(String... arguments) {
+        this.workerArguments = List.of(arguments);
+    }
+
+    // Replacement processes started during the last run
+    public synchronized int getRestarts() {
+        return restarts;
+    }
+
+    // Chunks that had to run again because their worker was lost, during the last run
+    public synchronized int getRetriedChunks() {
+        return retries;
+    }
+
+    // Second copies of slow chunks started during the last run
+    public synchronized int getStragglerCopies() {
+        return copies;
+    }
+
+    /**
+     * Evaluates every line of {@code inputFile} and writes the results to
+     * {@code outputFile}: the value, or the error message for expressions that fail.
+     * Returns the number of expressions. Throws IOException if the files cannot be read
+     * or written, or if all workers died and no restarts were left.
+     */
+    public synchronized long run(Path inputFile, Path outputFile) throws IOException, InterruptedException {
+        resetState();
+        Path directory = Files.createTempDirectory("calculator-batch");
+        socket = directory.resolve("coordinator.sock");
+        long expressions = 0;
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8);
+             ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            input = reader;
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread acceptor = new Thread(() -> accept(server), "batch-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            for (int i = 0; i < workers; i++) {
+                liveWorkers++;
+                startWorker();
+            }
+
+            while (true) {
+                Chunk chunk = unwritten.get(nextToWrite);
+                if (chunk != null && chunk.results != null) {
+                    unwritten.remove(nextToWrite++);
+                    notifyAll(); // reading may continue
+                    for (EvaluationResult result : chunk.results) {
+                        writer.write(result.toString());
+                        writer.newLine();
+                    }
+                    expressions += chunk.results.length;
+                } else if (failure != null) {
+                    throw failure;
+                } else if (inputDone && nextToWrite == chunksRead) {
+                    break;
+                } else {
+                    wait();
+                }
+            }
+        } finally {
+            finished = true;
+            notifyAll();
+            for (Process process : new ArrayList<>(processes.values())) {
+                process.destroy();
+            }
+            Files.deleteIfExists(socket);
+            Files.deleteIfExists(directory);
+        }
+        logger.info("Evaluated " + expressions + " expressions in " + chunksRead + " chunks with " + workers
+            + " workers (" + copies + " straggler copies, " + retries + " retried chunks, " + restarts + " restarts)");
+        return expressions;
+    }
+
+    private void resetState() {
+        inputDone = false;
+        chunksRead = 0;
+        nextToWrite = 0;
+        pending.clear();
+        running.clear();
+        unwritten.clear();
+        processes.clear();
+        liveWorkers = 0;
+        restarts = 0;
+        retries = 0;
+        copies = 0;
+        completedChunks = 0;
+        completedNanos = 0;
+        finished = false;
+        failure = null;
+    }
+
+    // Workers
+
+    private void startWorker() {
+        List<String> command = new ArrayList<>(Arrays.asList(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            BatchWorker.class.getName(), socket.toString(), mode.name()));
+        command.addAll(workerArguments);
+        Process process;
+        try {
+            process = new ProcessBuilder(command).inheritIO().start();
+        } catch (IOException e) {
+            liveWorkers--;
+            if (liveWorkers == 0 && failure == null) {
+                failure = e;
+            }
+            notifyAll();
+            return;
+        }
+        processes.put(process.pid(), process);
+        process.onExit().thenRun(() -> workerExited(process));
+    }
+
+    private synchronized void workerExited(Process process) {
+        processes.remove(process.pid());
+        if (finished) {
+            return;
+        }
+        if (restarts < maxRestarts) {
+            restarts++;
+            logger.warning("Worker " + process.pid() + " exited with " + process.exitValue() + ", starting a replacement");
+            startWorker();
+        } else {
+            liveWorkers--;
+            logger.warning("Worker " + process.pid() + " exited with " + process.exitValue() + ", no restarts left");
+            if (liveWorkers == 0 && failure == null) {
+                failure = new IOException("all worker processes exited");
+            }
+        }
+        notifyAll();
+    }
+
+    private void accept(ServerSocketChannel server) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                return; // closed at the end of the run
+            }
+            Thread handler = new Thread(() -> serve(channel), "batch-worker-connection");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    // Feeds one worker connection until the run ends or the connection fails
+    private void serve(SocketChannel channel) {
+        long pid = -1;
+        Chunk chunk = null;
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            pid = in.readLong();
+            while ((chunk = nextChunk()) != null) {
+                long start = System.nanoTime();
+                BatchProtocol.writeChunk(out, chunk.id, chunk.expressions);
+                EvaluationResult[] results = BatchProtocol.readResults(in, chunk.id, chunk.expressions.size());
+                complete(chunk, results, System.nanoTime() - start);
+                chunk = null;
+            }
+            BatchProtocol.writeShutdown(out);
+        } catch (IOException | InterruptedException e) {
+            lost(pid, chunk, e);
+        }
+    }
+
+    // Scheduling
+
+    private synchronized Chunk nextChunk() throws InterruptedException {
+        while (!finished) {
+            Chunk chunk = pending.pollFirst();
+            if (chunk == null && !inputDone && chunksRead - nextToWrite < workers * BUFFERED_CHUNKS_PER_WORKER) {
+                chunk = readChunk();
+            }
+            if (chunk == null) {
+                chunk = straggler();
+            }
+            if (chunk != null) {
+                if (chunk.copies++ == 0) {
+                    chunk.started = System.nanoTime();
+                    running.put(chunk.id, chunk);
+                }
+                return chunk;
+            }
+            // Once chunk times are known, wake up to look for stragglers even if nothing else happens
+            long average = averageChunkNanos();
+            wait(average == 0 ? 0 : Math.max(1, average / 1_000_000));
+        }
+        return null;
+    }
+
+    private Chunk readChunk() {
+        List<String> expressions = new ArrayList<>(chunkSize);
+        try {
+            String line;
+            while (expressions.size() < chunkSize && (line = input.readLine()) != null) {
+                expressions.add(line);
+            }
+        } catch (IOException e) {
+            failure = e;
+            notifyAll();
+            return null;
+        }
+        if (expressions.size() < chunkSize) {
+            inputDone = true;
+            notifyAll();
+            if (expressions.isEmpty()) {
+                return null;
+            }
+        }
+        Chunk chunk = new Chunk(chunksRead++, expressions);
+        unwritten.put(chunk.id, chunk);
+        return chunk;
+    }
+
+    // The oldest chunk running for longer than average on fewer than MAX_COPIES workers
+    private Chunk straggler() {
+        long average = averageChunkNanos();
+        if (average == 0) {
+            return null;
+        }
+        long now = System.nanoTime();
+        for (Chunk chunk : running.values()) {
+            if (chunk.copies < MAX_COPIES && now - chunk.started > average) {
+                copies++;
+                return chunk;
+            }
+        }
+        return null;
+    }
+
+    private long averageChunkNanos() {
+        return completedChunks == 0 ? 0 : completedNanos / completedChunks;
+    }
+
+    private synchronized void complete(Chunk chunk, EvaluationResult[] results, long nanos) {
+        chunk.copies--;
+        if (chunk.results == null) {
+            chunk.results = results;
+            running.remove(chunk.id);
+            completedChunks++;
+            completedNanos += nanos;
+            notifyAll();
+        }
+    }
+
+    // A worker connection failed; its chunk runs again elsewhere and its process is replaced
+    private synchronized void lost(long pid, Chunk chunk, Exception cause) {
+        if (chunk != null) {
+            chunk.copies--;
+            if (chunk.results == null && chunk.copies == 0) {
+                running.remove(chunk.id);
+                pending.addFirst(chunk);
+                retries++;
+            }
+            notifyAll();
+        }
+        if (finished) {
+            return;
+        }
+        logger.warning("Lost worker " + pid + ": " + cause);
+        Process process = processes.get(pid);
+        if (process != null) {
+            process.destroyForcibly(); // replaced by workerExited
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchCoordinator input output [workers] [chunk size]");
+            System.exit(2);
+        }
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_CHUNK_SIZE;
+        BatchCoordinator coordinator = new BatchCoordinator(workers, chunkSize, NumericMode.DECIMAL);
+        coordinator.setWorkerArguments("--warm-up");
+        coordinator.run(Path.of(args[0]), Path.of(args[1]));
+    }
+}
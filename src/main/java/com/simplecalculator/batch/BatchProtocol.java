@@ -0,0 +1,116 @@
+package com.simplecalculator.batch;
+
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.ExpressionCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Messages between {@link BatchCoordinator} and {@link BatchWorker}, big-endian over a
+ * stream socket:
+ *
+ * <pre>
+ * hello    := pid:i64                                      (worker, once after connecting)
+ * chunk    := id:i32 count:i32 (length:i32 utf8)*          (coordinator)
+ * shutdown := -1:i32                                       (coordinator)
+ * results  := id:i32 count:i32 (length:i32 result)*        (worker, one per chunk)
+ * </pre>
+ * Each result is an {@link EvaluationResult} in {@link ExpressionCodec}'s binary form,
+ * so values cross the socket without being formatted and parsed again.
+ */
+final class BatchProtocol {
+    static final int SHUTDOWN = -1;
+    // Longest message part accepted, to fail fast on a corrupt stream
+    private static final int MAX_LENGTH = 1 << 30;
+
+    private BatchProtocol() {
+    }
+
+    static void writeChunk(DataOutputStream out, int id, List<String> expressions) throws IOException {
+        out.writeInt(id);
+        out.writeInt(expressions.size());
+        for (String expression : expressions) {
+            writeBytes(out, expression.getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    static void writeShutdown(DataOutputStream out) throws IOException {
+        out.writeInt(SHUTDOWN);
+        out.flush();
+    }
+
+    // The expressions of a chunk whose id has just been read
+    static List<String> readExpressions(DataInputStream in) throws IOException {
+        int count = readLength(in);
+        List<String> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(new String(readBytes(in), StandardCharsets.UTF_8));
+        }
+        return expressions;
+    }
+
+    static void writeResults(DataOutputStream out, int id, List<EvaluationResult> results) throws IOException {
+        out.writeInt(id);
+        out.writeInt(results.size());
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (EvaluationResult result : results) {
+            while (true) {
+                try {
+                    buffer.clear();
+                    ExpressionCodec.encode(result, buffer);
+                    break;
+                } catch (BufferOverflowException e) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                }
+            }
+            out.writeInt(buffer.position());
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        out.flush();
+    }
+
+    // Reads the results for chunk id, which must hold count expressions
+    static EvaluationResult[] readResults(DataInputStream in, int id, int count) throws IOException {
+        int received = in.readInt();
+        int size = in.readInt();
+        if (received != id || size != count) {
+            throw new IOException("expected " + count + " results for chunk " + id + ", got " + size + " for chunk " + received);
+        }
+        EvaluationResult[] results = new EvaluationResult[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                results[i] = ExpressionCodec.decodeResult(ByteBuffer.wrap(readBytes(in)));
+            } catch (RuntimeException e) {
+                throw new IOException("malformed result in chunk " + id, e);
+            }
+        }
+        return results;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("invalid length " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+package com.simplecalculator.batch;
+
+import com.simplecalculator.model.CalculatorModel;
+import com.simplecalculator.model.EngineWarmup;
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.NumericMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker process for {@link BatchCoordinator}: connects to the coordinator's socket,
+ * evaluates the chunks of expressions it is sent with a {@link CalculatorModel} and
+ * sends back the results, until told to shut down or the connection closes.
+ *
+ * Usage: BatchWorker socket-path [DECIMAL|RATIONAL] [--warm-up] [--fail-after chunks]
+ * <p>
+ * {@code --warm-up} runs {@link EngineWarmup} before connecting, so the coordinator only
+ * sees workers that are ready for full speed.
+ * {@code --fail-after n} makes the process die abruptly on receiving chunk n + 1, for
+ * testing the coordinator's recovery.
+ */
+public class BatchWorker {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchWorker socket-path [DECIMAL|RATIONAL] [--warm-up] [--fail-after chunks]");
+            System.exit(2);
+        }
+        Path socket = Path.of(args[0]);
+        NumericMode mode = NumericMode.DECIMAL;
+        int failAfter = -1;
+        boolean warmUp = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--warm-up")) {
+                warmUp = true;
+            } else if (args[i].equals("--fail-after") && i + 1 < args.length) {
+                failAfter = Integer.parseInt(args[++i]);
+            } else {
+                mode = NumericMode.valueOf(args[i]);
+            }
+        }
+
+        if (warmUp) {
+            EngineWarmup.warmUp();
+        }
+        CalculatorModel model = new CalculatorModel();
+        model.setNumericMode(mode);
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeLong(ProcessHandle.current().pid());
+            out.flush();
+
+            int chunks = 0;
+            while (true) {
+                int id = in.readInt();
+                if (id == BatchProtocol.SHUTDOWN) {
+                    return;
+                }
+                List<String> expressions = BatchProtocol.readExpressions(in);
+                if (chunks++ == failAfter) {
+                    Runtime.getRuntime().halt(3);
+                }
+                List<EvaluationResult> results = new ArrayList<>(expressions.size());
+                for (String expression : expressions) {
+                    results.add(model.evaluate(expression));
+                }
+                BatchProtocol.writeResults(out, id, results);
+            }
+        } catch (EOFException e) {
+            // The coordinator went away; nothing left to do
+        }
+    }
+}
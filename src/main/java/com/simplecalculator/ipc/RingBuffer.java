@@ -0,0 +1,165 @@
+package com.simplecalculator.ipc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Single-producer, single-consumer queue of variable-length records in a region of a
+ * (memory-mapped) buffer, which may be shared with another process:
+ *
+ * <pre>
+ * region := tail:i64 (padding to 64) head:i64 (padding to 128) data[capacity]
+ * record := length:i32 (padding to 8) bytes[length] (padding to a multiple of 8)
+ * </pre>
+ * Tail and head only grow; a position's offset in data is {@code position % capacity}.
+ * Records are never split: if one does not fit before the end of data, the producer
+ * writes a length of -1 there and starts the record at offset 0. That skips less than
+ * the record's own size, so records are limited to half the capacity: then one always
+ * fits once the consumer has caught up, wherever the tail is. The producer publishes a
+ * record by storing tail with release semantics after writing it, and the consumer
+ * frees its space the same way with head, so once a record is visible both sides use
+ * plain reads and writes and no locks or system calls. Each side also caches the last
+ * value it read of the other's counter, and only reads the shared one again when the
+ * cached value says the ring is full (or empty).
+ *
+ * Records are exposed as slices of the shared buffer itself: the producer writes the
+ * payload in place between {@link #claim} and {@link #commit}, and the consumer reads it
+ * in place between {@link #poll} and {@link #release}. Not thread-safe: exactly one
+ * thread may produce and one consume.
+ */
+final class RingBuffer {
+    static final int HEADER_SIZE = 128;
+    private static final int TAIL = 0;
+    // A cache line away from tail, so the two sides do not write to the same line
+    private static final int HEAD = 64;
+    private static final int RECORD_HEADER = 8;
+    private static final int PADDING = -1;
+    private static final VarHandle POSITION = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int region;
+    private final int data;
+    private final int capacity;
+    private final int mask;
+
+    // Producer state
+    private long tail;
+    private long cachedHead;
+    private int claimedOffset = -1;
+    private int claimedLength;
+
+    // Consumer state
+    private long head;
+    private long cachedTail;
+    private int polledSize = -1;
+
+    /**
+     * A ring in {@code buffer} starting at byte {@code region} (a multiple of 64) with
+     * {@code capacity} bytes of data, a power of two. A new region must be zero-filled.
+     */
+    RingBuffer(ByteBuffer buffer, int region, int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity < 2 * RECORD_HEADER || region % 64 != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two and region 64-byte aligned");
+        }
+        this.buffer = buffer;
+        this.region = region;
+        this.data = region + HEADER_SIZE;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.tail = (long) POSITION.getAcquire(buffer, region + TAIL);
+        this.head = (long) POSITION.getAcquire(buffer, region + HEAD);
+        this.cachedHead = head;
+        this.cachedTail = tail;
+    }
+
+    static int regionSize(int capacity) {
+        return HEADER_SIZE + capacity;
+    }
+
+    // Largest payload a record can have: a record then takes at most half the ring, so
+    // one that wraps never needs more than the whole ring
+    int maxLength() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    // Producer
+
+    /**
+     * Reserves a record of up to {@code length} bytes and returns the buffer to write its
+     * payload to (position 0, limit {@code length}), or null if the ring is too full right
+     * now. Throws IllegalArgumentException if the record could never fit.
+     */
+    ByteBuffer claim(int length) {
+        if (length < 0 || length > maxLength()) {
+            throw new IllegalArgumentException("record of " + length + " bytes does not fit in the ring");
+        }
+        int size = align(RECORD_HEADER + length);
+        int offset = (int) (tail & mask);
+        int untilEnd = capacity - offset;
+        int needed = size <= untilEnd ? size : untilEnd + size;
+        if (tail + needed - cachedHead > capacity) {
+            cachedHead = (long) POSITION.getAcquire(buffer, region + HEAD);
+            if (tail + needed - cachedHead > capacity) {
+                return null;
+            }
+        }
+        if (size > untilEnd) {
+            // Published together with the record by commit
+            buffer.putInt(data + offset, PADDING);
+            tail += untilEnd;
+            offset = 0;
+        }
+        claimedOffset = offset;
+        claimedLength = length;
+        return buffer.slice(data + offset + RECORD_HEADER, length).order(ByteOrder.nativeOrder());
+    }
+
+    // Publishes the claimed record with its first length bytes as payload
+    void commit(int length) {
+        if (claimedOffset < 0 || length < 0 || length > claimedLength) {
+            throw new IllegalStateException("no claimed record of " + length + " bytes");
+        }
+        buffer.putInt(data + claimedOffset, length);
+        tail += align(RECORD_HEADER + length);
+        claimedOffset = -1;
+        POSITION.setRelease(buffer, region + TAIL, tail);
+    }
+
+    // Consumer
+
+    // The payload of the oldest record (position 0, limit its length), or null if there is none yet
+    ByteBuffer poll() {
+        while (true) {
+            if (head == cachedTail) {
+                cachedTail = (long) POSITION.getAcquire(buffer, region + TAIL);
+                if (head == cachedTail) {
+                    return null;
+                }
+            }
+            int offset = (int) (head & mask);
+            int length = buffer.getInt(data + offset);
+            if (length == PADDING) {
+                head += capacity - offset;
+                continue;
+            }
+            polledSize = align(RECORD_HEADER + length);
+            return buffer.slice(data + offset + RECORD_HEADER, length).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    // Frees the record returned by the last poll; its buffer must not be used afterwards
+    void release() {
+        if (polledSize < 0) {
+            throw new IllegalStateException("no polled record");
+        }
+        head += polledSize;
+        polledSize = -1;
+        POSITION.setRelease(buffer, region + HEAD, head);
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,126 @@
+package com.simplecalculator.ipc;
+
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.ExpressionCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Client side of a {@link SharedMemoryEndpoint}, usually in another process on the same
+ * host: maps the endpoint's file, writes expressions into its request ring and reads
+ * the results from its response ring, in order.
+ *
+ * {@link #evaluate} does one round trip. To keep the endpoint busy, {@link #submit}
+ * several expressions and then {@link #take} their results; since both rings are
+ * bounded, take results regularly rather than submitting everything first. Not
+ * thread-safe, and only one client may use an endpoint at a time. The mapping is released
+ * when the client is garbage collected.
+ */
+public final class SharedMemoryClient {
+    private final MappedByteBuffer mapping;
+    private final RingBuffer requests;
+    private final RingBuffer responses;
+    private final long endpointPid;
+    private int outstanding;
+
+    public SharedMemoryClient(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < SharedMemoryEndpoint.FILE_HEADER_SIZE) {
+                throw new IOException(file + " is not a shared-memory endpoint");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SharedMemoryEndpoint.FILE_HEADER_SIZE);
+            int capacity = header.getInt(SharedMemoryEndpoint.CAPACITY);
+            if (header.getInt(0) != SharedMemoryEndpoint.MAGIC || header.getInt(4) != SharedMemoryEndpoint.VERSION
+                    || Integer.bitCount(capacity) != 1 || channel.size() != SharedMemoryEndpoint.fileSize(capacity)) {
+                throw new IOException(file + " is not a shared-memory endpoint");
+            }
+            endpointPid = header.getLong(SharedMemoryEndpoint.PID);
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (state() != SharedMemoryEndpoint.READY) {
+                throw new IOException("endpoint " + file + " is not serving");
+            }
+            requests = new RingBuffer(mapping, SharedMemoryEndpoint.FILE_HEADER_SIZE, capacity);
+            responses = new RingBuffer(mapping, SharedMemoryEndpoint.FILE_HEADER_SIZE + RingBuffer.regionSize(capacity), capacity);
+        }
+    }
+
+    // Evaluates one expression; earlier submitted results must have been taken first
+    public EvaluationResult evaluate(CharSequence expression) throws IOException {
+        if (outstanding > 0) {
+            throw new IllegalStateException(outstanding + " submitted results have not been taken");
+        }
+        submit(expression);
+        return take();
+    }
+
+    /**
+     * Queues an expression for evaluation, waiting while the request ring is full.
+     * Throws IllegalArgumentException if the expression is too long for the ring and
+     * IOException if the endpoint has been closed.
+     */
+    public void submit(CharSequence expression) throws IOException {
+        int length = expression.length() * Character.BYTES;
+        if (length > requests.maxLength()) {
+            throw new IllegalArgumentException("expression of " + expression.length() + " characters does not fit in the ring");
+        }
+        ByteBuffer request;
+        int idle = 0;
+        while ((request = requests.claim(length)) == null) {
+            checkOpen(idle);
+            SharedMemoryEndpoint.idle(idle++);
+        }
+        CharBuffer chars = request.asCharBuffer();
+        for (int i = 0; i < expression.length(); i++) {
+            chars.put(i, expression.charAt(i));
+        }
+        requests.commit(length);
+        outstanding++;
+    }
+
+    // The result of the oldest submitted expression, waiting for it if necessary
+    public EvaluationResult take() throws IOException {
+        if (outstanding == 0) {
+            throw new IllegalStateException("no submitted expression");
+        }
+        ByteBuffer response;
+        int idle = 0;
+        while ((response = responses.poll()) == null) {
+            checkOpen(idle);
+            SharedMemoryEndpoint.idle(idle++);
+        }
+        try {
+            return ExpressionCodec.decodeResult(response);
+        } catch (RuntimeException e) {
+            throw new IOException("malformed response", e);
+        } finally {
+            responses.release();
+            outstanding--;
+        }
+    }
+
+    // Submitted expressions whose results have not been taken yet
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    private int state() {
+        return (int) SharedMemoryEndpoint.STATE_FIELD.getAcquire(mapping, SharedMemoryEndpoint.STATE);
+    }
+
+    // Also notices an endpoint process that was killed without closing, once waiting has slowed down
+    private void checkOpen(int idle) throws IOException {
+        if (state() != SharedMemoryEndpoint.READY) {
+            throw new IOException("endpoint closed");
+        }
+        if (idle >= SharedMemoryEndpoint.YIELD_ROUNDS && idle % 1000 == 0
+                && !ProcessHandle.of(endpointPid).map(ProcessHandle::isAlive).orElse(false)) {
+            throw new IOException("endpoint process " + endpointPid + " exited");
+        }
+    }
+}
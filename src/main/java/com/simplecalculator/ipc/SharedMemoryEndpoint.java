@@ -0,0 +1,192 @@
+package com.simplecalculator.ipc;
+
+import com.simplecalculator.model.CalculatorModel;
+import com.simplecalculator.model.EngineWarmup;
+import com.simplecalculator.model.ErrorCode;
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.ExpressionCodec;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates expressions for processes on the same host through a memory-mapped file
+ * instead of a socket. The file holds two {@link RingBuffer}s: clients
+ * ({@link SharedMemoryClient}) append requests to one, and the endpoint's thread
+ * evaluates them in order and appends the results to the other.
+ *
+ * <pre>
+ * file     := magic:i32 version:i32 capacity:i32 state:i32 pid:i64 (padding to 64)
+ *             requests:ring responses:ring
+ * request  := the expression as UTF-16 chars in native byte order
+ * response := an EvaluationResult in ExpressionCodec's binary form
+ * </pre>
+ * Both sides read and write records in place in the mapping: the evaluator parses the
+ * request straight from shared memory (as a {@link java.nio.CharBuffer} view) and
+ * encodes the result straight into the response ring. While requests keep coming, the
+ * endpoint spins on the ring and no system calls are made; when it has been idle for a
+ * while it backs off to yielding and then to short sleeps.
+ *
+ * The rings are single-producer and single-consumer, so an endpoint serves one client
+ * at a time; run one endpoint (file) per client process.
+ *
+ * Usage: SharedMemoryEndpoint file [capacity] [--warm-up]
+ * <p>
+ * With {@code --warm-up} the file is only created once {@link EngineWarmup} has run, so
+ * clients cannot attach before the engine is ready.
+ */
+public final class SharedMemoryEndpoint implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SharedMemoryEndpoint.class.getName());
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    static final int MAGIC = 0x43414C43; // "CALC"
+    static final int VERSION = 1;
+    static final int CAPACITY = 8;
+    static final int STATE = 12;
+    static final int PID = 16;
+    static final int FILE_HEADER_SIZE = 64;
+    static final int STARTING = 0;
+    static final int READY = 1;
+    static final int CLOSED = 2;
+    static final VarHandle STATE_FIELD = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // Idle rounds spent spinning, then yielding, before sleeping between polls
+    private static final int SPIN_ROUNDS = 1000;
+    static final int YIELD_ROUNDS = 1100;
+    private static final long IDLE_SLEEP_NANOS = 50_000;
+
+    private final Path file;
+    private final CalculatorModel model;
+    private final MappedByteBuffer mapping;
+    private final RingBuffer requests;
+    private final RingBuffer responses;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public SharedMemoryEndpoint(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY, new CalculatorModel());
+    }
+
+    /**
+     * Creates (or replaces) {@code file} with two rings of {@code capacity} bytes each, a
+     * power of two between 4 KiB and 512 MiB, and starts evaluating requests with
+     * {@code model}, which the endpoint then uses from its own thread.
+     */
+    public SharedMemoryEndpoint(Path file, int capacity, CalculatorModel model) throws IOException {
+        if (Integer.bitCount(capacity) != 1 || capacity < 4096 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity must be a power of two between 4 KiB and 512 MiB");
+        }
+        this.file = file;
+        this.model = model;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Growing the file zero-fills it, which is the empty state of both rings
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        }
+        mapping.putInt(0, MAGIC);
+        mapping.putInt(4, VERSION);
+        mapping.putInt(CAPACITY, capacity);
+        mapping.putLong(PID, ProcessHandle.current().pid());
+        requests = new RingBuffer(mapping, FILE_HEADER_SIZE, capacity);
+        responses = new RingBuffer(mapping, FILE_HEADER_SIZE + RingBuffer.regionSize(capacity), capacity);
+        STATE_FIELD.setRelease(mapping, STATE, READY);
+
+        thread = new Thread(this::serve, "shared-memory-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Serving expressions through " + file);
+    }
+
+    static long fileSize(int capacity) {
+        return FILE_HEADER_SIZE + 2L * RingBuffer.regionSize(capacity);
+    }
+
+    private void serve() {
+        int idle = 0;
+        while (running) {
+            ByteBuffer request = requests.poll();
+            if (request == null) {
+                idle(idle++);
+                continue;
+            }
+            idle = 0;
+            EvaluationResult result = model.evaluate(request.asCharBuffer());
+            requests.release();
+
+            int size = ExpressionCodec.maxEncodedSize(result);
+            if (size > responses.maxLength()) {
+                result = EvaluationResult.failure(ErrorCode.VALUE_TOO_LARGE, -1);
+                size = ExpressionCodec.maxEncodedSize(result);
+            }
+            ByteBuffer response;
+            // Waits for the client to take earlier results
+            while ((response = responses.claim(size)) == null) {
+                if (!running) {
+                    return;
+                }
+                idle(idle++);
+            }
+            idle = 0;
+            ExpressionCodec.encode(result, response);
+            responses.commit(response.position());
+        }
+    }
+
+    // Waits between polls of an empty (or full) ring, for longer the longer it stays so
+    static void idle(int rounds) {
+        if (rounds < SPIN_ROUNDS) {
+            Thread.onSpinWait();
+        } else if (rounds < YIELD_ROUNDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_SLEEP_NANOS);
+        }
+    }
+
+    // Stops evaluating, tells a waiting client that the endpoint is gone and deletes the file
+    @Override
+    public void close() throws IOException {
+        running = false;
+        STATE_FIELD.setRelease(mapping, STATE, CLOSED);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: SharedMemoryEndpoint file [capacity] [--warm-up]");
+            System.exit(2);
+        }
+        int capacity = DEFAULT_CAPACITY;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--warm-up")) {
+                EngineWarmup.warmUp();
+            } else {
+                capacity = Integer.parseInt(args[i]);
+            }
+        }
+        SharedMemoryEndpoint endpoint = new SharedMemoryEndpoint(Path.of(args[0]), capacity, new CalculatorModel());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                endpoint.close();
+            } catch (IOException e) {
+                logger.warning("Could not delete " + args[0] + ": " + e);
+            }
+        }));
+        endpoint.thread.join();
+    }
+}
@@ -3,18 +3,48 @@ package com.simplecalculator.main;
 import com.simplecalculator.model.CalculatorModel;
 import com.simplecalculator.model.CalculatorModelInterface;
 import com.simplecalculator.view.CalculatorView;
-import com.simplecalculator.view.CalculatorViewInterface;
 import com.simplecalculator.presenter.CalculatorPresenter;
 import javax.swing.*;
+import java.lang.management.ManagementFactory;
 
 public class Calculator {
+    // Set to print startup timings and exit once the calculator is interactive
+    private static final boolean STARTUP_BENCHMARK = Boolean.getBoolean("calculator.startupBenchmark");
+
     public static void main(String[] args) {
+        // The model has no Swing dependencies, so build it before touching the EDT
+        CalculatorModelInterface model = new CalculatorModel();
+
+        SwingUtilities.invokeLater(() -> {
+            // Show a minimal frame (display only) first; buttons, colors and
+            // key bindings are created once the first paint has happened
+            CalculatorView view = new CalculatorView();
+            view.setFirstPaintCallback(() -> {
+                long firstPaint = STARTUP_BENCHMARK ? uptimeMillis() : 0L;
+                @SuppressWarnings("unused")
+                CalculatorPresenter presenter = new CalculatorPresenter(view, model);
+                if (STARTUP_BENCHMARK) {
+                    reportStartup(view, firstPaint);
+                }
+            });
+            view.setVisible(true);
+        });
+    }
+
+    // Milliseconds since the JVM was launched, so class loading and JIT time are included.
+    // Only called in benchmark mode to keep java.management out of the normal boot path.
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static void reportStartup(CalculatorView view, long firstPaint) {
+        // Wait for the repaint triggered by the button grid before measuring "interactive"
         SwingUtilities.invokeLater(() -> {
-            CalculatorModelInterface model = new CalculatorModel();
-            CalculatorViewInterface view = new CalculatorView();
-            @SuppressWarnings("unused")
-            CalculatorPresenter presenter = new CalculatorPresenter(view, model);
-            ((CalculatorView) view).setVisible(true);
+            long interactive = uptimeMillis();
+            System.out.println("startup.firstPaintMillis=" + firstPaint);
+            System.out.println("startup.interactiveMillis=" + interactive);
+            view.dispose();
+            System.exit(0);
         });
     }
 }
@@ -0,0 +1,83 @@
+package com.simplecalculator.main;
+
+import com.simplecalculator.model.CalculatorModel;
+import com.simplecalculator.model.ColumnarEvaluator;
+import com.simplecalculator.model.CompiledExpression;
+
+import java.util.Random;
+
+/**
+ * Compares evaluating one formula over large columns row by row
+ * ({@link CompiledExpression#evaluateDouble}), with the scalar column kernels and with the
+ * default (Vector API, if available) kernels. See scripts/columnar-benchmark.sh.
+ *
+ * Usage: ColumnarBenchmark [rows] [formula over a, b, c]
+ */
+public class ColumnarBenchmark {
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        String formula = args.length > 1 ? args[1] : "(a + b) * c - a / (b + 1) + c * c";
+
+        CompiledExpression expression = new CalculatorModel().compile(formula, "a", "b", "c");
+        Random random = new Random(42);
+        double[][] columns = new double[3][rows];
+        for (double[] column : columns) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = random.nextDouble() * 100;
+            }
+        }
+        double[] results = new double[rows];
+
+        System.out.println("formula: " + formula + ", rows: " + rows
+            + ", vector kernels: " + (ColumnarEvaluator.DEFAULT.isVectorized() ? "yes" : "no"));
+        double perRow = measure("row by row", () -> {
+            double[] bindings = new double[3];
+            for (int i = 0; i < rows; i++) {
+                bindings[0] = columns[0][i];
+                bindings[1] = columns[1][i];
+                bindings[2] = columns[2][i];
+                results[i] = expression.evaluateDouble(bindings);
+            }
+        }, rows, 0);
+        double checksum = sum(results);
+        measure("scalar columns", () -> ColumnarEvaluator.SCALAR.evaluate(expression, columns, results), rows, perRow);
+        check(checksum, results);
+        if (ColumnarEvaluator.DEFAULT.isVectorized()) {
+            measure("vector columns", () -> ColumnarEvaluator.DEFAULT.evaluate(expression, columns, results), rows, perRow);
+            check(checksum, results);
+        }
+    }
+
+    // Best of RUNS after as many warm-up runs; returns nanoseconds per row
+    private static double measure(String label, Runnable run, int rows, double baseline) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2 * RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= RUNS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        double perRow = (double) best / rows;
+        System.out.printf("%-15s %8.2f ms  %6.2f ns/row%s%n", label, best / 1e6, perRow,
+            baseline > 0 ? String.format("  %5.1fx", baseline / perRow) : "");
+        return perRow;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static void check(double expected, double[] results) {
+        if (Double.compare(expected, sum(results)) != 0) {
+            throw new IllegalStateException("columnar results differ from row-by-row evaluation");
+        }
+    }
+}
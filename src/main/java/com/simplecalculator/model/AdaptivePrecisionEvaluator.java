@@ -0,0 +1,444 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Evaluates a compiled expression to a requested number of correct decimal places,
+ * paying for extra precision only where the expression needs it.
+ *
+ * Each pass runs the post-order program at a working precision (significant digits) and
+ * tracks, for every node, an upper bound on the absolute error of its value. If the bound
+ * at the root is too large, the working precision is raised and the program runs again.
+ * Nodes that are exact - constants, and +, -, *, %, min, max, negation and non-negative
+ * integer powers of exact operands, plus divisions and square roots that happen to
+ * terminate - are computed in the first pass and reused by every later one, so only the
+ * subexpressions that contain a rounding operation are re-evaluated.
+ *
+ * A {@link CustomOperator} is treated as exact when its operands are, since nothing is
+ * known about how it propagates an error; applied to an inexact operand it has no bound
+ * and the evaluation ends with {@link ErrorCode#PRECISION_LIMIT}.
+ */
+public class AdaptivePrecisionEvaluator {
+    public static final int DEFAULT_MAX_PRECISION = 2000;
+
+    private static final int INITIAL_GUARD_DIGITS = 8;
+    // Error bounds only need a few digits, always rounded away from zero
+    private static final MathContext ERROR_CONTEXT = new MathContext(4, RoundingMode.UP);
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal EIGHT = BigDecimal.valueOf(8);
+    private static final BigDecimal SMALL_RELATIVE_ERROR = new BigDecimal("0.01");
+
+    private final int maxPrecision;
+
+    public AdaptivePrecisionEvaluator() {
+        this(DEFAULT_MAX_PRECISION);
+    }
+
+    // maxPrecision caps the working precision (significant digits) before giving up
+    public AdaptivePrecisionEvaluator(int maxPrecision) {
+        this.maxPrecision = maxPrecision;
+    }
+
+    /**
+     * Returns the value rounded HALF_UP to {@code digits} decimal places and guaranteed to
+     * be within one unit in the last place of the exact mathematical result, or
+     * {@link ErrorCode#PRECISION_LIMIT} if that needs more than the maximum precision.
+     */
+    public EvaluationResult evaluate(CompiledExpression expression, int digits) {
+        return evaluate(expression, new BigDecimal[0], digits);
+    }
+
+    // As above, with bindings[i] as the (exact) value of variable i
+    public EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings, int digits) {
+        return evaluate(expression, bindings, digits, EvaluationLimits.UNLIMITED);
+    }
+
+    // As above, also failing with VALUE_TOO_LARGE, TIMEOUT or CANCELLED when a limit is reached
+    public EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings, int digits,
+                                     EvaluationLimits limits) {
+        ModelEvents.Evaluate event = new ModelEvents.Evaluate();
+        event.begin();
+        EvaluationResult result = refine(expression, bindings, digits, limits);
+        if (event.shouldCommit()) {
+            event.expressionLength = expression.getSource().length();
+            event.nodeCount = expression.isValid() ? expression.program().length : 0;
+            event.mode = "ADAPTIVE";
+            event.error = ModelEvents.errorName(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    private EvaluationResult refine(CompiledExpression expression, BigDecimal[] bindings, int digits,
+                                    EvaluationLimits limits) {
+        if (!expression.isValid()) {
+            return expression.failure();
+        }
+        ExpressionNode[] program = expression.program();
+        Pass pass = new Pass(program.length, expression.maxStackDepth(), bindings, EvaluationGuard.start(limits));
+        BigDecimal tolerance = BigDecimal.valueOf(5).scaleByPowerOfTen(-digits - 1);
+
+        int precision = digits + INITIAL_GUARD_DIGITS;
+        while (precision <= maxPrecision) {
+            int root = pass.run(program, new MathContext(precision, RoundingMode.HALF_EVEN));
+            if (pass.failure != null) {
+                return EvaluationResult.failure(pass.failure, expression.positions()[pass.failureIndex]);
+            }
+            BigDecimal error = pass.errors[root];
+            if (error != null && error.compareTo(tolerance) <= 0) {
+                return EvaluationResult.success(pass.values[root].setScale(digits, RoundingMode.HALF_UP));
+            }
+            if (error == null) {
+                precision *= 2;
+            } else {
+                // Raise the precision by roughly the number of digits still missing
+                precision += Math.max(magnitude(error) - magnitude(tolerance) + 2, 8);
+            }
+        }
+        return EvaluationResult.failure(ErrorCode.PRECISION_LIMIT, -1);
+    }
+
+    // Per-node state shared by all passes over one program
+    private static final class Pass {
+        final BigDecimal[] values;
+        final BigDecimal[] errors;  // null: no usable bound at this precision
+        final boolean[] exact;
+        final int[] stack;
+        final BigDecimal[] bindings;
+        final EvaluationGuard guard;
+        ErrorCode failure;
+        int failureIndex;
+
+        Pass(int nodes, int maxStackDepth, BigDecimal[] bindings, EvaluationGuard guard) {
+            values = new BigDecimal[nodes];
+            errors = new BigDecimal[nodes];
+            exact = new boolean[nodes];
+            stack = new int[maxStackDepth];
+            this.bindings = bindings;
+            this.guard = guard;
+        }
+
+        // Runs the program once and returns the index of the root node, or -1 with failure set
+        int run(ExpressionNode[] program, MathContext mc) {
+            int top = 0;
+            for (int i = 0; i < program.length; i++) {
+                ExpressionNode node = program[i];
+                int arity = node.getOperandCount();
+                int left = -1;
+                int right = -1;
+                if (arity == 2) {
+                    right = stack[--top];
+                    left = stack[top - 1];
+                } else if (arity == 1) {
+                    left = stack[top - 1];
+                } else {
+                    top++;
+                }
+                stack[top - 1] = i;
+
+                ErrorCode error = (i & EvaluationGuard.CHECK_MASK) == 0 ? guard.checkTime() : null;
+                if (error != null) {
+                    return fail(error, i);
+                }
+                if (exact[i]) {
+                    continue; // computed exactly in an earlier pass
+                }
+                if (node.isVariable()) {
+                    BigDecimal value = DecimalEvaluator.binding(bindings, node.getSlot());
+                    error = value == null ? ErrorCode.UNBOUND_VARIABLE : constant(i, value);
+                } else if (node.isConstant()) {
+                    error = constant(i, node.getValue());
+                } else if (node.getOperator() == Operator.CUSTOM) {
+                    error = custom(i, node.getCustomOperator(), left, right);
+                } else {
+                    try {
+                        error = apply(i, node.getOperator(), left, right, mc);
+                    } catch (CalculationException ex) {
+                        error = ex.getErrorCode(); // timed out or cancelled within a function
+                    }
+                }
+                // Working values are bounded by the working precision; exact ones are not
+                if (error == null && exact[i]) {
+                    error = guard.check(values[i]);
+                }
+                if (error != null) {
+                    return fail(error, i);
+                }
+            }
+            return stack[0];
+        }
+
+        private int fail(ErrorCode error, int index) {
+            failure = error;
+            failureIndex = index;
+            return -1;
+        }
+
+        private ErrorCode constant(int i, BigDecimal value) {
+            values[i] = value;
+            errors[i] = BigDecimal.ZERO;
+            exact[i] = true;
+            return null;
+        }
+
+        private ErrorCode custom(int i, CustomOperator op, int left, int right) {
+            if (!exact[left] || (right >= 0 && !exact[right])) {
+                return inexact(i, null, null);
+            }
+            try {
+                return exactValue(i, DecimalEvaluator.applyCustom(op, values[left], right >= 0 ? values[right] : null));
+            } catch (ArithmeticException ex) {
+                return CustomOperator.errorCode(ex);
+            }
+        }
+
+        private ErrorCode apply(int i, Operator op, int left, int right, MathContext mc) {
+            BigDecimal a = values[left];
+            BigDecimal ea = errors[left];
+            BigDecimal b = right >= 0 ? values[right] : null;
+            BigDecimal eb = right >= 0 ? errors[right] : BigDecimal.ZERO;
+            boolean exactInputs = exact[left] && (right < 0 || exact[right]);
+
+            if (ea == null || eb == null) {
+                return inexact(i, null, null); // an operand has no bound yet
+            }
+            switch (op) {
+                case NEGATE:
+                    return exactInputs ? exactValue(i, a.negate()) : inexact(i, a.negate(), ea);
+                case ADD:
+                case SUBTRACT: {
+                    if (exactInputs) {
+                        return exactValue(i, op == Operator.ADD ? a.add(b) : a.subtract(b));
+                    }
+                    BigDecimal v = op == Operator.ADD ? a.add(b, mc) : a.subtract(b, mc);
+                    return inexact(i, v, sum(ea, eb, ulp(v, mc)));
+                }
+                case MULTIPLY: {
+                    if (exactInputs) {
+                        return exactValue(i, HugeNumbers.multiply(a, b));
+                    }
+                    BigDecimal v = a.multiply(b, mc);
+                    BigDecimal propagated = sum(a.abs().multiply(eb, ERROR_CONTEXT),
+                        b.abs().multiply(ea, ERROR_CONTEXT), ea.multiply(eb, ERROR_CONTEXT));
+                    return inexact(i, v, sum(propagated, ulp(v, mc)));
+                }
+                case MIN:
+                case MAX: {
+                    BigDecimal v = op == Operator.MIN ? a.min(b) : a.max(b);
+                    return exactInputs ? exactValue(i, v) : inexact(i, v, ea.max(eb));
+                }
+                case DIVIDE:
+                    return divide(i, a, ea, b, eb, exactInputs, mc);
+                case MODULO:
+                    return modulo(i, a, ea, b, eb, exactInputs);
+                case POWER:
+                    return power(i, a, ea, b, eb, exact[left], exact[right], mc);
+                case SQRT:
+                    return sqrt(i, a, ea, exactInputs, mc);
+                case LN:
+                    return ln(i, a, ea, mc);
+                case EXP:
+                    return exp(i, a, ea, exactInputs, mc);
+                case SIN:
+                case COS: {
+                    ErrorCode tooLarge = guard.checkFunction(op, a);
+                    if (tooLarge != null) {
+                        return tooLarge;
+                    }
+                    BigDecimal v = op == Operator.SIN ? BigDecimalMath.sinWorking(a, mc, guard) : BigDecimalMath.cosWorking(a, mc, guard);
+                    // |derivative| <= 1; the series has an absolute error of about 10^(digits of x - precision)
+                    BigDecimal series = BigDecimal.ONE.scaleByPowerOfTen(Math.max(0, magnitude(a)) + 1 - mc.getPrecision());
+                    return inexact(i, v, sum(ea, series, ulps(v, mc, EIGHT)));
+                }
+                default:
+                    return inexact(i, null, null);
+            }
+        }
+
+        private ErrorCode divide(int i, BigDecimal a, BigDecimal ea, BigDecimal b, BigDecimal eb,
+                                 boolean exactInputs, MathContext mc) {
+            if (b.signum() == 0 && eb.signum() == 0) {
+                return ErrorCode.DIVISION_BY_ZERO;
+            }
+            BigDecimal bAbs = b.abs();
+            if (bAbs.compareTo(eb) <= 0) {
+                return inexact(i, null, null); // divisor might be zero at this precision
+            }
+            BigDecimal v = a.divide(b, mc);
+            if (exactInputs && v.multiply(b).compareTo(a) == 0) {
+                return exactValue(i, v); // terminating quotient
+            }
+            // |a/b - a'/b'| <= (ea + |q| eb) / (|b| - eb)
+            BigDecimal propagated = ea.add(v.abs().multiply(eb, ERROR_CONTEXT), ERROR_CONTEXT)
+                .divide(bAbs.subtract(eb).round(new MathContext(4, RoundingMode.DOWN)), ERROR_CONTEXT);
+            return inexact(i, v, sum(propagated, ulp(v, mc)));
+        }
+
+        private ErrorCode modulo(int i, BigDecimal a, BigDecimal ea, BigDecimal b, BigDecimal eb, boolean exactInputs) {
+            if (b.signum() == 0 && eb.signum() == 0) {
+                return ErrorCode.DIVISION_BY_ZERO;
+            }
+            if (exactInputs) {
+                return exactValue(i, a.remainder(b));
+            }
+            if (b.abs().compareTo(eb) <= 0) {
+                return inexact(i, null, null);
+            }
+            BigDecimal quotient = a.divideToIntegralValue(b);
+            BigDecimal v = a.subtract(b.multiply(quotient));
+            BigDecimal error = sum(ea, quotient.abs().add(BigDecimal.ONE).multiply(eb, ERROR_CONTEXT));
+            // Near a multiple of b the remainder jumps, so the bound only holds away from those
+            if (v.abs().compareTo(error) <= 0 || b.abs().subtract(v.abs()).compareTo(error.add(eb)) <= 0) {
+                return inexact(i, null, null);
+            }
+            return inexact(i, v, error);
+        }
+
+        private ErrorCode power(int i, BigDecimal a, BigDecimal ea, BigDecimal b, BigDecimal eb,
+                                boolean exactBase, boolean exactExponent, MathContext mc) {
+            if (exactExponent && BigDecimalMath.isInteger(b)) {
+                if (BigDecimalMath.powOverflows(b)) {
+                    return ErrorCode.OVERFLOW;
+                }
+                int n = b.intValueExact();
+                if (exactBase && a.signum() == 0 && n < 0) {
+                    return ErrorCode.DIVISION_BY_ZERO;
+                }
+                if (exactBase && n >= 0) {
+                    ErrorCode tooLarge = guard.checkPower(a, b);
+                    return tooLarge != null ? tooLarge : exactValue(i, BigDecimalMath.powExact(a, n, guard));
+                }
+                BigDecimal aAbs = a.abs();
+                if (aAbs.compareTo(ea) <= 0) {
+                    if (n < 0) {
+                        return inexact(i, null, null);
+                    }
+                    // |true value| <= (|a| + ea)^n, and so is the distance to a rounded result near 0
+                    BigDecimal bound = aAbs.add(ea).pow(n, ERROR_CONTEXT);
+                    BigDecimal v = a.pow(n, mc);
+                    return inexact(i, v, sum(bound, v.abs(), ulp(v, mc)));
+                }
+                BigDecimal v = a.pow(n, mc); // BigDecimal.pow(int, MathContext) is within 2 ulps
+                BigDecimal relative = ea.divide(aAbs.subtract(ea), ERROR_CONTEXT).multiply(BigDecimal.valueOf(Math.abs((long) n)), ERROR_CONTEXT);
+                if (relative.compareTo(SMALL_RELATIVE_ERROR) > 0) {
+                    return inexact(i, null, null);
+                }
+                return inexact(i, v, sum(v.abs().multiply(relative, ERROR_CONTEXT).multiply(TWO), ulps(v, mc, EIGHT)));
+            }
+
+            // Real exponent: a^b = exp(b ln a), defined for a > 0
+            if (a.add(ea).signum() < 0 || (a.signum() == 0 && ea.signum() == 0 && b.signum() <= 0 && eb.signum() == 0)) {
+                return a.signum() == 0 ? ErrorCode.DIVISION_BY_ZERO : ErrorCode.INVALID_ARGUMENT;
+            }
+            if (a.subtract(ea).signum() <= 0) {
+                return inexact(i, null, null);
+            }
+            ErrorCode tooLarge = guard.checkPower(a, b.add(eb));
+            if (tooLarge != null) {
+                return tooLarge;
+            }
+            BigDecimal lnA = BigDecimalMath.lnWorking(a, mc, guard);
+            BigDecimal t = b.multiply(lnA, mc);
+            BigDecimal v = BigDecimalMath.expWorking(t, mc, guard);
+            BigDecimal lnError = sum(ea.divide(a.subtract(ea), ERROR_CONTEXT), lnAllowance(a, lnA, mc));
+            BigDecimal tError = sum(b.abs().add(eb).multiply(lnError, ERROR_CONTEXT),
+                eb.multiply(lnA.abs(), ERROR_CONTEXT), ulp(t, mc));
+            if (tError.compareTo(SMALL_RELATIVE_ERROR) > 0) {
+                return inexact(i, null, null);
+            }
+            return inexact(i, v, sum(v.abs().multiply(tError, ERROR_CONTEXT).multiply(TWO), ulps(v, mc, EIGHT)));
+        }
+
+        private ErrorCode sqrt(int i, BigDecimal a, BigDecimal ea, boolean exactInputs, MathContext mc) {
+            if (a.add(ea).signum() < 0 || (exactInputs && a.signum() < 0)) {
+                return ErrorCode.INVALID_ARGUMENT;
+            }
+            if (exactInputs && a.signum() == 0) {
+                return exactValue(i, BigDecimal.ZERO);
+            }
+            if (a.subtract(ea).signum() <= 0) {
+                return inexact(i, null, null);
+            }
+            BigDecimal v = a.sqrt(mc);
+            if (exactInputs && v.multiply(v).compareTo(a) == 0) {
+                return exactValue(i, v); // perfect square
+            }
+            // |sqrt(a) - sqrt(a')| <= ea / sqrt(a - ea), twice the first-order bound
+            BigDecimal lower = a.subtract(ea).sqrt(new MathContext(4, RoundingMode.DOWN));
+            BigDecimal propagated = ea.signum() == 0 ? BigDecimal.ZERO : ea.divide(lower, ERROR_CONTEXT);
+            return inexact(i, v, sum(propagated, ulps(v, mc, TWO)));
+        }
+
+        private ErrorCode ln(int i, BigDecimal a, BigDecimal ea, MathContext mc) {
+            if (a.add(ea).signum() <= 0) {
+                return ErrorCode.INVALID_ARGUMENT;
+            }
+            if (a.subtract(ea).signum() <= 0) {
+                return inexact(i, null, null);
+            }
+            BigDecimal v = BigDecimalMath.lnWorking(a, mc, guard);
+            BigDecimal propagated = ea.signum() == 0 ? BigDecimal.ZERO : ea.divide(a.subtract(ea), ERROR_CONTEXT);
+            return inexact(i, v, sum(propagated, lnAllowance(a, v, mc)));
+        }
+
+        private ErrorCode exp(int i, BigDecimal a, BigDecimal ea, boolean exactInputs, MathContext mc) {
+            if (exactInputs && a.signum() == 0) {
+                return exactValue(i, BigDecimal.ONE);
+            }
+            ErrorCode tooLarge = guard.checkFunction(Operator.EXP, a.add(ea));
+            if (tooLarge != null) {
+                return tooLarge;
+            }
+            if (ea.compareTo(SMALL_RELATIVE_ERROR) > 0) {
+                return inexact(i, null, null);
+            }
+            BigDecimal v = BigDecimalMath.expWorking(a, mc, guard);
+            // exp(a + e) = exp(a) exp(e), and exp(e) - 1 <= 2e for small e
+            return inexact(i, v, sum(v.abs().multiply(ea, ERROR_CONTEXT).multiply(TWO), ulps(v, mc, EIGHT)));
+        }
+
+        private ErrorCode exactValue(int i, BigDecimal v) {
+            values[i] = v;
+            errors[i] = BigDecimal.ZERO;
+            exact[i] = true;
+            return null;
+        }
+
+        private ErrorCode inexact(int i, BigDecimal v, BigDecimal error) {
+            values[i] = v;
+            errors[i] = error;
+            exact[i] = false;
+            return null;
+        }
+    }
+
+    // lnWorking combines terms of size up to |k| ln 10, so its absolute error scales with them
+    private static BigDecimal lnAllowance(BigDecimal a, BigDecimal lnA, MathContext mc) {
+        int termDigits = String.valueOf(Math.abs(magnitude(a))).length();
+        return sum(BigDecimal.ONE.scaleByPowerOfTen(termDigits + 2 - mc.getPrecision()), ulps(lnA, mc, EIGHT));
+    }
+
+    // Size of one unit in the last place of v at the working precision
+    private static BigDecimal ulp(BigDecimal v, MathContext mc) {
+        return v.signum() == 0 ? BigDecimal.ZERO : BigDecimal.ONE.scaleByPowerOfTen(magnitude(v) - mc.getPrecision());
+    }
+
+    private static BigDecimal ulps(BigDecimal v, MathContext mc, BigDecimal count) {
+        return ulp(v, mc).multiply(count);
+    }
+
+    // Number of digits before the decimal point (negative for values below 0.1)
+    private static int magnitude(BigDecimal v) {
+        return v.precision() - v.scale();
+    }
+
+    private static BigDecimal sum(BigDecimal... terms) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal term : terms) {
+            total = total.add(term, ERROR_CONTEXT);
+        }
+        return total;
+    }
+}
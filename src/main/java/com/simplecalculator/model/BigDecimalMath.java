@@ -0,0 +1,347 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * BigDecimal implementations of the calculator's power and transcendental functions.
+ *
+ * Integer powers use repeated squaring and are exact for non-negative exponents. Everything
+ * else is computed at a bounded working precision (the requested scale plus guard digits)
+ * and rounded once, HALF_UP, to the requested scale - the same rounding used for division.
+ *
+ * The evaluators use package-private variants that take an {@link EvaluationGuard} and poll
+ * it on every step of a series, reduction or squaring loop, so a single sin, exp or power
+ * with a huge argument still ends at the timeout or when the thread is interrupted; they
+ * throw a {@link CalculationException} with {@link ErrorCode#TIMEOUT} or
+ * {@link ErrorCode#CANCELLED} (see {@link EvaluationGuard#poll}). How many digits such a
+ * call may produce is bounded by {@link EvaluationLimits}, checked by the guard up front;
+ * where no limits apply, exp and real powers are refused past {@link #MAX_RESULT_DIGITS}.
+ */
+public final class BigDecimalMath {
+    public static final int DEFAULT_SCALE = 10;
+
+    private static final int GUARD_DIGITS = 10;
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal THREE_QUARTERS = new BigDecimal("0.75");
+    private static final BigDecimal FIVE_QUARTERS = new BigDecimal("1.25");
+    private static final double LN_10 = Math.log(10);
+    // Digits of exp(100000); exp and real powers with larger results are refused without limits
+    static final double MAX_RESULT_DIGITS = 100000 / LN_10;
+    private static final BigDecimal MAX_INT_EXPONENT = BigDecimal.valueOf(Integer.MAX_VALUE);
+    private static final BigDecimal MIN_INT_EXPONENT = BigDecimal.valueOf(Integer.MIN_VALUE + 1);
+
+    private BigDecimalMath() {
+    }
+
+    public static BigDecimal divide(BigDecimal a, BigDecimal b, int scale) {
+        if (b.signum() == 0) throw new ArithmeticException("Division by zero");
+        return a.divide(b, scale, RoundingMode.HALF_UP);
+    }
+
+    // Remainder with the sign of the dividend, like Java's % operator
+    public static BigDecimal mod(BigDecimal a, BigDecimal b) {
+        if (b.signum() == 0) throw new ArithmeticException("Division by zero in modulo");
+        return a.remainder(b);
+    }
+
+    public static BigDecimal pow(BigDecimal base, BigDecimal exponent, int scale) {
+        return pow(base, exponent, scale, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal pow(BigDecimal base, BigDecimal exponent, int scale, EvaluationGuard guard) {
+        if (isInteger(exponent)) {
+            int n;
+            try {
+                n = exponent.intValueExact();
+            } catch (ArithmeticException ex) {
+                throw new ArithmeticException("Exponent out of range: " + exponent.toPlainString());
+            }
+            if (n == Integer.MIN_VALUE) {
+                throw new ArithmeticException("Exponent out of range: " + exponent.toPlainString());
+            }
+            if (n >= 0) {
+                return powExact(base, n, guard);
+            }
+            return divide(BigDecimal.ONE, powExact(base, -n, guard), scale);
+        }
+
+        // Fractional exponent: base^y = exp(y * ln(base))
+        if (base.signum() < 0) {
+            throw new ArithmeticException("Invalid argument: negative base with fractional exponent");
+        }
+        if (base.signum() == 0) {
+            if (exponent.signum() < 0) throw new ArithmeticException("Division by zero");
+            return BigDecimal.ZERO.setScale(scale);
+        }
+        double digits = powDigits(base, exponent);
+        if (guard == EvaluationGuard.UNLIMITED && digits > MAX_RESULT_DIGITS) {
+            throw new ArithmeticException("Overflow: result of power is too large");
+        }
+        int resultDigits = (int) Math.ceil(Math.max(0, digits));
+        MathContext mc = new MathContext(scale + resultDigits + integerDigits(exponent) + GUARD_DIGITS);
+        BigDecimal t = exponent.multiply(lnWorking(base, mc, guard), mc);
+        return expWorking(t, mc, guard).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    // Repeated squaring; exact because BigDecimal multiplication does not round
+    static BigDecimal powExact(BigDecimal base, int n, EvaluationGuard guard) {
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal square = base;
+        while (n > 0) {
+            guard.poll();
+            if ((n & 1) != 0) {
+                result = result.multiply(square);
+            }
+            n >>>= 1;
+            if (n > 0) {
+                square = square.multiply(square);
+            }
+        }
+        return result;
+    }
+
+    // Correctly rounded square root via BigInteger.sqrt on the scaled unscaled value
+    public static BigDecimal sqrt(BigDecimal x, int scale) {
+        if (x.signum() < 0) throw new ArithmeticException("Invalid argument: square root of negative number");
+        if (x.signum() == 0) return BigDecimal.ZERO.setScale(scale);
+
+        // floor(sqrt(x) * 10^t) = floor(sqrt(unscaled * 10^(2t - xScale))), with an even exponent
+        BigInteger unscaled = x.unscaledValue();
+        int xScale = x.scale();
+        if ((xScale & 1) != 0) {
+            unscaled = unscaled.multiply(BigInteger.TEN);
+            xScale++;
+        }
+        int t = scale + 1;
+        int exponent = 2 * t - xScale;
+        BigInteger radicand = exponent >= 0
+            ? unscaled.multiply(BigInteger.TEN.pow(exponent))
+            : unscaled.divide(BigInteger.TEN.pow(-exponent));
+        // Truncating to t digits and rounding to t - 1 gives the correctly rounded HALF_UP result
+        return new BigDecimal(radicand.sqrt(), t).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal exp(BigDecimal x, int scale) {
+        return exp(x, scale, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal exp(BigDecimal x, int scale, EvaluationGuard guard) {
+        if (x.signum() == 0) return BigDecimal.ONE.setScale(scale);
+        double digits = expDigits(x);
+        if (guard == EvaluationGuard.UNLIMITED && digits > MAX_RESULT_DIGITS) {
+            throw new ArithmeticException("Overflow: exp argument is too large");
+        }
+        if (digits < -(scale + 1)) {
+            return BigDecimal.ZERO.setScale(scale);
+        }
+        int resultDigits = (int) Math.ceil(Math.max(0, digits));
+        MathContext mc = new MathContext(scale + resultDigits + GUARD_DIGITS);
+        return expWorking(x, mc, guard).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal ln(BigDecimal x, int scale) {
+        return ln(x, scale, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal ln(BigDecimal x, int scale, EvaluationGuard guard) {
+        if (x.signum() <= 0) throw new ArithmeticException("Invalid argument: logarithm of non-positive number");
+        int magnitude = Math.abs(x.precision() - x.scale());
+        MathContext mc = new MathContext(scale + String.valueOf(magnitude).length() + 1 + GUARD_DIGITS);
+        return lnWorking(x, mc, guard).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal sin(BigDecimal x, int scale) {
+        return sin(x, scale, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal sin(BigDecimal x, int scale, EvaluationGuard guard) {
+        MathContext mc = new MathContext(scale + integerDigits(x) + GUARD_DIGITS);
+        return sinWorking(x, mc, guard).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal cos(BigDecimal x, int scale) {
+        return cos(x, scale, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal cos(BigDecimal x, int scale, EvaluationGuard guard) {
+        MathContext mc = new MathContext(scale + integerDigits(x) + GUARD_DIGITS);
+        return cosWorking(x, mc, guard).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal pi(MathContext mc) {
+        return pi(mc, EvaluationGuard.UNLIMITED);
+    }
+
+    static BigDecimal pi(MathContext mc, EvaluationGuard guard) {
+        // Machin: pi = 16 atan(1/5) - 4 atan(1/239)
+        MathContext work = new MathContext(mc.getPrecision() + 3);
+        BigDecimal pi = atanInverse(5, work, guard).multiply(BigDecimal.valueOf(16))
+            .subtract(atanInverse(239, work, guard).multiply(BigDecimal.valueOf(4)));
+        return pi.round(mc);
+    }
+
+    // Taylor series after reducing the angle into [-pi, pi]
+    static BigDecimal sinWorking(BigDecimal x, MathContext mc, EvaluationGuard guard) {
+        MathContext work = new MathContext(mc.getPrecision() + 2);
+        BigDecimal r = reduceAngle(x, work, guard);
+        BigDecimal r2 = r.multiply(r, work);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+        BigDecimal term = r;
+        BigDecimal sum = r;
+        for (int n = 1; term.abs().compareTo(epsilon) > 0; n++) {
+            guard.poll();
+            term = term.multiply(r2, work).divide(BigDecimal.valueOf((2L * n) * (2L * n + 1)), work).negate();
+            sum = sum.add(term, work);
+        }
+        return sum.round(mc);
+    }
+
+    static BigDecimal cosWorking(BigDecimal x, MathContext mc, EvaluationGuard guard) {
+        MathContext work = new MathContext(mc.getPrecision() + 2);
+        BigDecimal r = reduceAngle(x, work, guard);
+        BigDecimal r2 = r.multiply(r, work);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int n = 1; term.abs().compareTo(epsilon) > 0; n++) {
+            guard.poll();
+            term = term.multiply(r2, work).divide(BigDecimal.valueOf((2L * n - 1) * (2L * n)), work).negate();
+            sum = sum.add(term, work);
+        }
+        return sum.round(mc);
+    }
+
+    // exp by halving the argument into [-1, 1], a Taylor series, then squaring back
+    static BigDecimal expWorking(BigDecimal x, MathContext mc, EvaluationGuard guard) {
+        int halvings = 0;
+        BigDecimal bound = BigDecimal.ONE;
+        while (x.abs().compareTo(bound) > 0) {
+            bound = bound.multiply(TWO);
+            halvings++;
+        }
+        // Each squaring doubles the relative error, so carry a few more digits
+        MathContext work = new MathContext(mc.getPrecision() + halvings / 3 + 2);
+        BigDecimal r = x.divide(bound); // exact: powers of two terminate in decimal
+
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int n = 1; term.abs().compareTo(epsilon) > 0; n++) {
+            guard.poll();
+            term = term.multiply(r, work).divide(BigDecimal.valueOf(n), work);
+            sum = sum.add(term, work);
+        }
+        for (int i = 0; i < halvings; i++) {
+            guard.poll();
+            sum = sum.multiply(sum, work);
+        }
+        return sum.round(mc);
+    }
+
+    // ln(m * 2^-j * 10^k) = ln(m) - j ln 2 + k ln 10, with m in [0.75, 1.5)
+    static BigDecimal lnWorking(BigDecimal x, MathContext mc, EvaluationGuard guard) {
+        int k = x.precision() - x.scale();
+        BigDecimal m = x.movePointLeft(k); // [0.1, 1)
+        int j = 0;
+        while (m.compareTo(THREE_QUARTERS) < 0) {
+            m = m.multiply(TWO);
+            j++;
+        }
+        MathContext work = new MathContext(mc.getPrecision() + 3);
+        BigDecimal result = lnNearOne(m, work, guard);
+        if (k != 0 || j != 0) {
+            BigDecimal ln2 = lnNearOne(TWO, work, guard);
+            if (k != 0) {
+                BigDecimal ln10 = ln2.multiply(BigDecimal.valueOf(3)).add(lnNearOne(FIVE_QUARTERS, work, guard), work);
+                result = result.add(ln10.multiply(BigDecimal.valueOf(k)), work);
+            }
+            if (j != 0) {
+                result = result.subtract(ln2.multiply(BigDecimal.valueOf(j)), work);
+            }
+        }
+        return result.round(mc);
+    }
+
+    // ln(m) = 2 atanh((m - 1) / (m + 1)); converges quickly for m near 1
+    private static BigDecimal lnNearOne(BigDecimal m, MathContext mc, EvaluationGuard guard) {
+        BigDecimal z = m.subtract(BigDecimal.ONE).divide(m.add(BigDecimal.ONE), mc);
+        BigDecimal z2 = z.multiply(z, mc);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+        BigDecimal power = z;
+        BigDecimal sum = z;
+        for (int n = 3; power.abs().compareTo(epsilon) > 0; n += 2) {
+            guard.poll();
+            power = power.multiply(z2, mc);
+            sum = sum.add(power.divide(BigDecimal.valueOf(n), mc), mc);
+        }
+        return sum.multiply(TWO, mc);
+    }
+
+    // atan(1/n) = sum (-1)^i / ((2i + 1) n^(2i + 1))
+    private static BigDecimal atanInverse(int n, MathContext mc, EvaluationGuard guard) {
+        BigDecimal nSquared = BigDecimal.valueOf((long) n * n);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+        BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), mc);
+        BigDecimal sum = power;
+        for (int i = 1; power.compareTo(epsilon) > 0; i++) {
+            guard.poll();
+            power = power.divide(nSquared, mc);
+            BigDecimal term = power.divide(BigDecimal.valueOf(2L * i + 1), mc);
+            sum = (i & 1) != 0 ? sum.subtract(term, mc) : sum.add(term, mc);
+        }
+        return sum;
+    }
+
+    // Reduces an angle into [-pi, pi]; pi carries extra digits for the integer part of x
+    private static BigDecimal reduceAngle(BigDecimal x, MathContext mc, EvaluationGuard guard) {
+        BigDecimal twoPi = pi(new MathContext(mc.getPrecision() + integerDigits(x)), guard).multiply(TWO);
+        if (x.abs().compareTo(twoPi.divide(TWO)) <= 0) {
+            return x;
+        }
+        BigDecimal turns = x.divide(twoPi, 0, RoundingMode.HALF_EVEN);
+        return x.subtract(twoPi.multiply(turns));
+    }
+
+    // Domain checks, so evaluators can reject bad arguments without catching exceptions
+
+    // Integer exponents outside the int range; the size of other powers is up to EvaluationGuard
+    static boolean powOverflows(BigDecimal exponent) {
+        return isInteger(exponent)
+            && (exponent.compareTo(MAX_INT_EXPONENT) > 0 || exponent.compareTo(MIN_INT_EXPONENT) < 0);
+    }
+
+    // Approximate digits before the decimal point of exp(x); negative for small results
+    static double expDigits(BigDecimal x) {
+        return x.doubleValue() / LN_10;
+    }
+
+    // As above for base^exponent with a positive base
+    static double powDigits(BigDecimal base, BigDecimal exponent) {
+        return exponent.doubleValue() * log10Estimate(base);
+    }
+
+    static boolean powUndefined(BigDecimal base, BigDecimal exponent) {
+        if (base.signum() == 0) {
+            return exponent.signum() < 0;
+        }
+        return base.signum() < 0 && !isInteger(exponent);
+    }
+
+    static boolean isInteger(BigDecimal value) {
+        return value.signum() == 0 || value.scale() <= 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+
+    static int integerDigits(BigDecimal x) {
+        return Math.max(0, x.precision() - x.scale());
+    }
+
+    // Approximate log10(|x|) that does not overflow for huge values
+    private static double log10Estimate(BigDecimal x) {
+        int exponent = x.precision() - x.scale() - 1;
+        double leading = x.movePointLeft(exponent).abs().doubleValue();
+        return exponent + Math.log10(leading);
+    }
+}
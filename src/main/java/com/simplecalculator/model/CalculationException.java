@@ -0,0 +1,27 @@
+package com.simplecalculator.model;
+
+/**
+ * Thrown by the exception-based model API when evaluation fails. Extends
+ * ArithmeticException so existing callers keep working, and carries the structured
+ * {@link ErrorCode} so they no longer have to parse the message.
+ */
+public class CalculationException extends ArithmeticException {
+    private static final long serialVersionUID = 1L;
+
+    private final ErrorCode errorCode;
+    private final int position;
+
+    public CalculationException(ErrorCode errorCode, int position) {
+        super(errorCode.format(position));
+        this.errorCode = errorCode;
+        this.position = position;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
@@ -1,153 +1,263 @@
 package com.simplecalculator.model;
 
 import java.math.BigDecimal;
-import java.util.Stack;
+import java.util.ArrayDeque;
 import java.util.logging.Logger;
 
 public class CalculatorModel implements CalculatorModelInterface {
     private static final Logger logger = Logger.getLogger(CalculatorModel.class.getName());
+    private static final String[] NO_VARIABLES = new String[0];
+    public static final int DEFAULT_MAX_HISTORY = 100000;
+    // Longer results are logged abbreviated; converting a huge value to decimal costs more than computing it
+    private static final int LOGGED_DIGITS = 100;
 
-    private BigDecimal result = BigDecimal.ZERO;
-    private String lastCommand = "=";
-    private StringBuilder currentExpression = new StringBuilder();
+    // The session (result, last command, expression so far) is immutable, so recording
+    // an undo step only stores a reference and undo/redo only swap references
+    private SessionState state = SessionState.INITIAL;
+    private final ArrayDeque<SessionState> undoHistory = new ArrayDeque<>();
+    private final ArrayDeque<SessionState> redoHistory = new ArrayDeque<>();
+    private final int maxHistory;
+    private NumericMode numericMode = NumericMode.DECIMAL;
+    private OperatorRegistry operatorRegistry = OperatorRegistry.DEFAULT;
+    private EvaluationLimits limits = EvaluationLimits.DEFAULT;
 
-    // Method to evaluate an expression using Dijkstra's Shunting Yard algorithm
+    public CalculatorModel() {
+        this(DEFAULT_MAX_HISTORY);
+    }
+
+    // maxHistory bounds the undo steps kept; the oldest are dropped first
+    public CalculatorModel(int maxHistory) {
+        this.maxHistory = maxHistory;
+    }
+
+    // Method to evaluate an expression (parsed with Dijkstra's Shunting Yard algorithm).
+    // Throws CalculationException (an ArithmeticException) if the expression is invalid.
     public BigDecimal evaluateExpression(String expression) {
-        // Tokenize by spaces because expressions are built as: "<num> <op> <num> <op> ..."
-        String[] tokens = expression.trim().split("\\s+");
-        Stack<BigDecimal> values = new Stack<>();
-        Stack<Operator> operators = new Stack<>();
+        BigDecimal finalResult = evaluate(expression).getValueOrThrow();
+        logger.info("Evaluated expression: " + expression + " = " + HugeNumbers.abbreviate(finalResult, LOGGED_DIGITS));
+        return finalResult;
+    }
 
-        for (String token : tokens) {
-            if (token.isEmpty()) continue;
+    /**
+     * Evaluates an expression without throwing. Syntax and math errors are returned as an
+     * {@link EvaluationResult} with an {@link ErrorCode} and the character position at fault.
+     */
+    public EvaluationResult evaluate(CharSequence expression) {
+        return compile(expression).evaluate(numericMode, limits);
+    }
 
-            // If token is a number
-            if (isNumber(token)) {
-                values.push(new BigDecimal(token));
-            }
-            // If token is an operator
-            else {
-                Operator op = Operator.fromSymbol(token);
-                if (op != null) {
-                    if (op == Operator.LEFT_PARENTHESIS) {
-                        operators.push(op);
-                    } else if (op == Operator.RIGHT_PARENTHESIS) {
-                        while (!operators.isEmpty() && operators.peek() != Operator.LEFT_PARENTHESIS) {
-                            Operator topOp = operators.pop();
-                            BigDecimal b = values.pop();
-                            BigDecimal a = values.pop();
-                            values.push(applyOperator(topOp, a, b));
-                        }
-                        if (!operators.isEmpty()) {
-                            operators.pop(); // Remove the left parenthesis
-                        }
-                    } else {
-                        while (!operators.isEmpty() && operators.peek() != Operator.LEFT_PARENTHESIS &&
-                               op.getPrecedence() <= operators.peek().getPrecedence()) {
-                            Operator topOp = operators.pop();
-                            BigDecimal b = values.pop();
-                            BigDecimal a = values.pop();
-                            values.push(applyOperator(topOp, a, b));
-                        }
-                        operators.push(op);
-                    }
-                }
-                // Unknown tokens are ignored
-            }
-        }
+    // Selects the number representation used by evaluate, evaluateExpression and calculate
+    public void setNumericMode(NumericMode numericMode) {
+        this.numericMode = numericMode;
+    }
 
-        // Process remaining operators
-        try {
-            while (!operators.isEmpty()) {
-                Operator op = operators.pop();
-                if (values.size() < 2) {
-                    throw new ArithmeticException("Invalid expression: not enough operands for operator '" + op.getSymbol() + "'");
-                }
-                BigDecimal b = values.pop();
-                BigDecimal a = values.pop();
-                values.push(applyOperator(op, a, b));
-            }
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
 
-            if (values.size() != 1) {
-                throw new ArithmeticException("Invalid expression: too many operands or mismatched operators");
-            }
+    // Custom operators and functions accepted by compile, validate and evaluate from now on
+    public void setOperatorRegistry(OperatorRegistry operatorRegistry) {
+        this.operatorRegistry = operatorRegistry;
+    }
 
-            BigDecimal finalResult = values.pop();
-            logger.info("Evaluated expression: " + expression + " = " + finalResult);
-            return finalResult;
-        } catch (Exception ex) {
-            if (ex instanceof ArithmeticException) {
-                throw ex;
-            }
-            throw new ArithmeticException("Expression evaluation failed: " + ex.getMessage());
-        }
+    public OperatorRegistry getOperatorRegistry() {
+        return operatorRegistry;
     }
 
-    // Check if token is a number
-    private boolean isNumber(String token) {
-        try {
-            new BigDecimal(token);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
-        }
+    /**
+     * Bounds the size of expressions and the digits, scale and time their evaluation may
+     * take (see {@link EvaluationLimits}); {@link EvaluationLimits#DEFAULT} unless set.
+     * The maximum length also caps the expression built up by {@link #calculate}.
+     */
+    public void setLimits(EvaluationLimits limits) {
+        this.limits = limits;
     }
 
-    // Apply operator to operands
-    private BigDecimal applyOperator(Operator op, BigDecimal a, BigDecimal b) {
-        switch (op) {
-            case ADD:
-                return a.add(b);
-            case SUBTRACT:
-                return a.subtract(b);
-            case MULTIPLY:
-                return a.multiply(b);
-            case DIVIDE:
-                if (b.compareTo(BigDecimal.ZERO) == 0) throw new ArithmeticException("Division by zero");
-                return a.divide(b, 10, BigDecimal.ROUND_HALF_UP); // Arbitrary precision
-        }
-        return BigDecimal.ZERO;
+    public EvaluationLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Parses an expression once so it can be evaluated repeatedly or by other evaluators
+     * (for example {@link AdaptivePrecisionEvaluator}). Syntax errors are carried by the
+     * returned instance rather than thrown. Compiled expressions come from the shared
+     * {@link ExpressionPool}, so identical text is only parsed once per JVM.
+     */
+    public CompiledExpression compile(CharSequence expression) {
+        return ExpressionPool.shared().compile(expression, operatorRegistry, limits, NO_VARIABLES);
+    }
+
+    /**
+     * Compiles a formula over named variables. Each name is resolved to its index in
+     * {@code variables} here, once; evaluate the result with values in the same order, e.g.
+     * {@code compile("qty * rate", "qty", "rate").evaluate(qty, rate)}.
+     */
+    public CompiledExpression compile(CharSequence expression, String... variables) {
+        return ExpressionPool.shared().compile(expression, operatorRegistry, limits, variables);
+    }
+
+    /**
+     * Evaluates an expression to {@code digits} correct decimal places, raising the working
+     * precision only as far as the expression needs.
+     */
+    public EvaluationResult evaluate(CharSequence expression, int digits) {
+        return new AdaptivePrecisionEvaluator().evaluate(compile(expression), new BigDecimal[0], digits, limits);
+    }
+
+    /**
+     * Checks the syntax of an expression (tokens, parentheses, operand/operator order and
+     * function argument counts) without evaluating it. Much cheaper than {@link #evaluate},
+     * but cannot detect math errors such as division by zero. Compiling uses the same
+     * grammar, so an invalid expression fails to evaluate with the same code and position.
+     */
+    public ValidationResult validate(CharSequence expression) {
+        return ExpressionValidator.validate(expression, NO_VARIABLES, operatorRegistry, limits);
+    }
+
+    // As above, accepting the given variable names
+    public ValidationResult validate(CharSequence expression, String... variables) {
+        return ExpressionValidator.validate(expression, variables, operatorRegistry, limits);
     }
 
     public void calculate(BigDecimal x, String command) {
         logger.info("Calculating with value: " + x + ", command: " + command);
-        if (command.equals("=")) {
-            if (currentExpression.length() > 0) {
-                currentExpression.append(" ").append(x.toPlainString());
-                try {
-                    result = evaluateExpression(currentExpression.toString().trim());
-                    currentExpression.setLength(0);
-                } catch (ArithmeticException ex) {
-                    // For arithmetic errors like division by zero, re-throw with context
-                    throw ex;
-                } catch (Exception ex) {
-                    // If expression evaluation fails, throw a more user-friendly error
-                    throw new ArithmeticException("Invalid mathematical expression. Please check parentheses and operators.");
+        SessionState before = state;
+        try {
+            if (command.equals("=")) {
+                if (!state.expression.isEmpty()) {
+                    // Kept as the current expression if evaluation fails
+                    state = state.withExpression(extend(state.expression, " " + operandText(x)));
+                    try {
+                        BigDecimal value = evaluateExpression(state.expression.toString().trim());
+                        state = new SessionState(value, state.lastCommand, ExpressionText.EMPTY);
+                    } catch (ArithmeticException ex) {
+                        // For arithmetic errors like division by zero, re-throw with context
+                        throw ex;
+                    } catch (Exception ex) {
+                        // If expression evaluation fails, throw a more user-friendly error
+                        throw new ArithmeticException("Invalid mathematical expression. Please check parentheses and operators.");
+                    }
+                } else {
+                    state = new SessionState(x, state.lastCommand, state.expression);
                 }
             } else {
-                result = x;
-            }
-        } else {
-            if (currentExpression.length() > 0) {
-                currentExpression.append(" ");
+                String step = (state.expression.isEmpty() ? "" : " ") + operandText(x) + " " + command;
+                state = new SessionState(state.result, command, extend(state.expression, step));
             }
-            currentExpression.append(x.toPlainString()).append(" ").append(command);
-            lastCommand = command;
+        } finally {
+            record(before);
         }
-        logger.info("Result: " + result);
+        logger.info("Result: " + HugeNumbers.abbreviate(state.result, LOGGED_DIGITS));
+    }
+
+    // Appends a prefix minus, read by the lexer as NEGATE, so "- 5 ^ 2" is -(5^2) like typed text
+    public void negate() {
+        logger.info("Negating the next operand");
+        SessionState before = state;
+        try {
+            String step = state.expression.isEmpty() ? "-" : " -";
+            state = new SessionState(state.result, state.lastCommand, extend(state.expression, step));
+        } finally {
+            record(before);
+        }
+    }
+
+    // Appends a step unless the expression would exceed the length limit
+    private ExpressionText extend(ExpressionText expression, String step) {
+        if (expression.length() + step.length() > limits.getMaxLength()) {
+            throw new CalculationException(ErrorCode.EXPRESSION_TOO_LONG, limits.getMaxLength());
+        }
+        return expression.append(step);
+    }
+
+    // Negative operands are parenthesized so "-2 ^ 2" entered as (-2)^2 is not read as -(2^2)
+    private static String operandText(BigDecimal x) {
+        return x.signum() < 0 ? "(" + x.toPlainString() + ")" : x.toPlainString();
     }
 
     public BigDecimal getResult() {
-        return result;
+        return state.result;
     }
 
     public String getLastCommand() {
-        return lastCommand;
+        return state.lastCommand;
+    }
+
+    // The expression entered since the last "=", e.g. "2 + 3 *"
+    public String getCurrentExpression() {
+        return state.expression.toString();
+    }
+
+    /**
+     * The current expression without copying it. The returned text is immutable and stays
+     * the same instance until the expression changes, so callers polling for changes can
+     * compare it by identity, in constant time, and only call {@code toString()} (which
+     * costs time in proportion to its length) when it did change.
+     */
+    public CharSequence getCurrentExpressionText() {
+        return state.expression;
     }
 
     public void reset() {
-        result = BigDecimal.ZERO;
-        lastCommand = "=";
-        currentExpression.setLength(0);
+        SessionState before = state;
+        state = SessionState.INITIAL;
+        record(before);
+    }
+
+    // Returns to the state before the last calculate or reset; false if there is none
+    public boolean undo() {
+        if (undoHistory.isEmpty()) {
+            return false;
+        }
+        redoHistory.push(state);
+        state = undoHistory.pop();
+        return true;
+    }
+
+    // Re-applies the last undone step; false if there is none
+    public boolean redo() {
+        if (redoHistory.isEmpty()) {
+            return false;
+        }
+        undoHistory.push(state);
+        state = redoHistory.pop();
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undoHistory.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoHistory.isEmpty();
+    }
+
+    private void record(SessionState previous) {
+        if (previous == state) {
+            return;
+        }
+        undoHistory.push(previous);
+        if (undoHistory.size() > maxHistory) {
+            undoHistory.removeLast();
+        }
+        redoHistory.clear();
+    }
+
+    private static final class SessionState {
+        static final SessionState INITIAL = new SessionState(BigDecimal.ZERO, "=", ExpressionText.EMPTY);
+
+        final BigDecimal result;
+        final String lastCommand;
+        final ExpressionText expression;
+
+        SessionState(BigDecimal result, String lastCommand, ExpressionText expression) {
+            this.result = result;
+            this.lastCommand = lastCommand;
+            this.expression = expression;
+        }
+
+        SessionState withExpression(ExpressionText expression) {
+            return new SessionState(result, lastCommand, expression);
+        }
     }
 }
@@ -4,7 +4,12 @@ import java.math.BigDecimal;
 
 public interface CalculatorModelInterface {
     void calculate(BigDecimal x, String command);
+    // Appends a prefix minus, which negates the next operand
+    void negate();
     BigDecimal getResult();
     String getLastCommand();
     void reset();
+    String getCurrentExpression();
+    boolean undo();
+    boolean redo();
 }
@@ -0,0 +1,58 @@
+package com.simplecalculator.model;
+
+/**
+ * Element-wise arithmetic over double columns, the inner loops of
+ * {@link ColumnarEvaluator}. Each method computes
+ * {@code out[i] = a[aFrom + i] op b[bFrom + i]} for i in [0, length); {@code out} may be
+ * the same array as {@code a} or {@code b} when the offsets match.
+ */
+interface ColumnKernels {
+
+    void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length);
+
+    void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length);
+
+    void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length);
+
+    void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length);
+
+    void negate(double[] a, int aFrom, double[] out, int length);
+
+    // Plain loops, which HotSpot may or may not auto-vectorize
+    ColumnKernels SCALAR = new ColumnKernels() {
+        @Override
+        public void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = a[aFrom + i] + b[bFrom + i];
+            }
+        }
+
+        @Override
+        public void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = a[aFrom + i] - b[bFrom + i];
+            }
+        }
+
+        @Override
+        public void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = a[aFrom + i] * b[bFrom + i];
+            }
+        }
+
+        @Override
+        public void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = a[aFrom + i] / b[bFrom + i];
+            }
+        }
+
+        @Override
+        public void negate(double[] a, int aFrom, double[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = -a[aFrom + i];
+            }
+        }
+    };
+}
@@ -0,0 +1,170 @@
+package com.simplecalculator.model;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates one compiled formula over many rows at once, in double precision: variable
+ * slot k reads {@code columns[k][row]} and the formula's value for each row is written to
+ * {@code results[row]}.
+ *
+ * Instead of running the program once per row, each operator is applied to a whole chunk
+ * of rows before the next one, so the inner loops are simple element-wise array loops.
+ * +, -, * and / and unary minus run through {@link ColumnKernels}: on the Vector API
+ * ({@link VectorKernels}) when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, as plain loops otherwise. Other operators
+ * and custom operators fall back to {@link DoubleEvaluator}'s scalar code, one row at a
+ * time. Results are the same as {@link CompiledExpression#evaluateDouble} row by row.
+ */
+public final class ColumnarEvaluator {
+    // Rows per chunk, so that a chunk's intermediate columns stay in cache
+    private static final int CHUNK_ROWS = 1024;
+
+    public static final ColumnarEvaluator SCALAR = new ColumnarEvaluator(ColumnKernels.SCALAR, false);
+    // The Vector API kernels if they can be loaded, else SCALAR
+    public static final ColumnarEvaluator DEFAULT = loadVectorKernels();
+
+    private final ColumnKernels kernels;
+    private final boolean vectorized;
+
+    private ColumnarEvaluator(ColumnKernels kernels, boolean vectorized) {
+        this.kernels = kernels;
+        this.vectorized = vectorized;
+    }
+
+    // Set -Dcalculator.vectorKernels=false to use the scalar loops even if the module is present
+    private static ColumnarEvaluator loadVectorKernels() {
+        if (!Boolean.parseBoolean(System.getProperty("calculator.vectorKernels", "true"))
+            || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            Class<?> type = Class.forName(ColumnarEvaluator.class.getPackageName() + ".VectorKernels");
+            return new ColumnarEvaluator((ColumnKernels) type.getDeclaredConstructor().newInstance(), true);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    // True if +, -, * and / use the Vector API
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Evaluates the expression for rows 0 to {@code results.length - 1}. Every variable's
+     * column must have at least that many values. Throws {@link CalculationException} if
+     * the expression did not compile or a variable has no column; math errors follow
+     * IEEE 754 as in {@link CompiledExpression#evaluateDouble}.
+     */
+    public void evaluate(CompiledExpression expression, double[][] columns, double[] results) {
+        if (!expression.isValid()) {
+            throw new CalculationException(expression.getErrorCode(), expression.getErrorPosition());
+        }
+        ExpressionNode[] program = expression.program();
+        int[] positions = expression.positions();
+        int rows = results.length;
+        int chunk = Math.max(1, Math.min(CHUNK_ROWS, rows));
+
+        // Constants become columns once; variables are read from their columns in place
+        double[] constants = expression.doubleConstants();
+        double[][] constantColumns = new double[program.length][];
+        for (int i = 0; i < program.length; i++) {
+            ExpressionNode node = program[i];
+            if (node.isConstant()) {
+                constantColumns[i] = new double[chunk];
+                Arrays.fill(constantColumns[i], constants[i]);
+            } else if (node.isVariable()) {
+                int slot = node.getSlot();
+                if (slot >= columns.length || columns[slot] == null) {
+                    throw new CalculationException(ErrorCode.UNBOUND_VARIABLE, positions[i]);
+                }
+                if (columns[slot].length < rows) {
+                    throw new IllegalArgumentException("column for '" + node.getName() + "' has "
+                        + columns[slot].length + " values, " + rows + " needed");
+                }
+            }
+        }
+
+        // Stack entry k is stack[k][from[k] ...]; results of operators go to buffers[k]
+        int depth = expression.maxStackDepth();
+        double[][] buffers = new double[depth][chunk];
+        double[][] stack = new double[depth][];
+        int[] from = new int[depth];
+
+        for (int row = 0; row < rows; row += chunk) {
+            int length = Math.min(chunk, rows - row);
+            int top = 0;
+            for (int i = 0; i < program.length; i++) {
+                ExpressionNode node = program[i];
+                Operator op = node.getOperator();
+                if (op == null) {
+                    if (node.isVariable()) {
+                        stack[top] = columns[node.getSlot()];
+                        from[top] = row;
+                    } else {
+                        stack[top] = constantColumns[i];
+                        from[top] = 0;
+                    }
+                    top++;
+                    continue;
+                }
+                int arity = op == Operator.CUSTOM ? node.getOperandCount() : op.getArity();
+                int t = top - arity;
+                double[] out = buffers[t];
+                if (op == Operator.CUSTOM) {
+                    applyCustom(node.getCustomOperator(), arity, stack, from, t, out, length);
+                } else if (arity == 1) {
+                    applyUnary(op, stack[t], from[t], out, length);
+                } else {
+                    applyBinary(op, stack[t], from[t], stack[t + 1], from[t + 1], out, length);
+                }
+                stack[t] = out;
+                from[t] = 0;
+                top = t + 1;
+            }
+            System.arraycopy(stack[0], from[0], results, row, length);
+        }
+    }
+
+    private void applyUnary(Operator op, double[] a, int aFrom, double[] out, int length) {
+        if (op == Operator.NEGATE) {
+            kernels.negate(a, aFrom, out, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            out[i] = DoubleEvaluator.applyOperator(op, a[aFrom + i]);
+        }
+    }
+
+    private void applyBinary(Operator op, double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+        switch (op) {
+            case ADD:
+                kernels.add(a, aFrom, b, bFrom, out, length);
+                break;
+            case SUBTRACT:
+                kernels.subtract(a, aFrom, b, bFrom, out, length);
+                break;
+            case MULTIPLY:
+                kernels.multiply(a, aFrom, b, bFrom, out, length);
+                break;
+            case DIVIDE:
+                kernels.divide(a, aFrom, b, bFrom, out, length);
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    out[i] = DoubleEvaluator.applyOperator(op, a[aFrom + i], b[bFrom + i]);
+                }
+        }
+    }
+
+    private static void applyCustom(CustomOperator op, int arity, double[][] stack, int[] from, int t,
+                                    double[] out, int length) {
+        double[] a = stack[t];
+        int aFrom = from[t];
+        double[] b = arity == 2 ? stack[t + 1] : null;
+        int bFrom = arity == 2 ? from[t + 1] : 0;
+        for (int i = 0; i < length; i++) {
+            out[i] = DoubleEvaluator.applyCustom(op, a[aFrom + i], b != null ? b[bFrom + i] : Double.NaN, arity);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmetic on decimals held as a {@code long} unscaled value and an {@code int} scale,
+ * the representation {@link DecimalEvaluator} uses while values fit in 18-19 digits.
+ *
+ * Every operation returns the unscaled value of exactly the result BigDecimal would
+ * produce (same digits and scale), or {@link #OVERFLOW} if that value does not fit in a
+ * long; the caller then redoes the operation with BigDecimal. OVERFLOW is
+ * {@code Long.MIN_VALUE}, which is therefore never a compact value itself.
+ */
+final class CompactDecimal {
+    static final long OVERFLOW = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private CompactDecimal() {
+    }
+
+    // The unscaled value of a BigDecimal if it is compact, else OVERFLOW
+    static long of(BigDecimal value) {
+        if (value == null || value.unscaledValue().bitLength() > 63) {
+            return OVERFLOW;
+        }
+        return value.unscaledValue().longValue();
+    }
+
+    // Small results come back as the interned literals, like parsed ones
+    static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return DecimalLiterals.valueOf(unscaled, scale);
+    }
+
+    // Significant digits, as BigDecimal.precision() counts them
+    static int digits(long unscaled) {
+        long magnitude = Math.abs(unscaled);
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && magnitude >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    // a.add(b); the result has scale max(aScale, bScale)
+    static long add(long a, int aScale, long b, int bScale) {
+        if (aScale < bScale) {
+            a = scaleUp(a, (long) bScale - aScale);
+        } else if (bScale < aScale) {
+            b = scaleUp(b, (long) aScale - bScale);
+        }
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? OVERFLOW : sum;
+    }
+
+    // a.multiply(b); the caller checks that aScale + bScale is an int
+    static long multiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (high != (low >> 63) || low == OVERFLOW) {
+            return OVERFLOW;
+        }
+        return low;
+    }
+
+    // a.divide(b, scale, HALF_UP) for b != 0; the result has the given scale
+    static long divide(long a, int aScale, long b, int bScale, int scale) {
+        long shift = (long) scale - aScale + bScale;
+        if (shift >= 0) {
+            a = scaleUp(a, shift);
+        } else {
+            b = scaleUp(b, -shift);
+        }
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long quotient = a / b;
+        long remainder = Math.abs(a % b);
+        // Round away from zero when the remainder is at least half the divisor
+        if (remainder != 0 && remainder >= Math.abs(b) - remainder) {
+            quotient += (a < 0) == (b < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    // a.compareTo(b), or Integer.MIN_VALUE if aligning the scales overflows
+    static int compare(long a, int aScale, long b, int bScale) {
+        if (aScale < bScale) {
+            a = scaleUp(a, (long) bScale - aScale);
+        } else if (bScale < aScale) {
+            b = scaleUp(b, (long) aScale - bScale);
+        }
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return Integer.MIN_VALUE;
+        }
+        return Long.compare(a, b);
+    }
+
+    // value * 10^n, or OVERFLOW
+    private static long scaleUp(long value, long n) {
+        if (value == 0) {
+            return 0;
+        }
+        if (n >= POWERS_OF_TEN.length) {
+            return OVERFLOW;
+        }
+        return multiply(value, POWERS_OF_TEN[(int) n]);
+    }
+}
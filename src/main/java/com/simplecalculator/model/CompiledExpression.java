@@ -0,0 +1,236 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An expression parsed once into an {@link ExpressionNode} tree, ready to be evaluated
+ * any number of times. Besides the tree it keeps the nodes in post-order (operands
+ * before their operator), so evaluators can run it with a flat loop and a value stack
+ * of known depth, without recursion. The source position of each program entry's
+ * literal, name or operator is kept alongside, so errors can point back into the text
+ * even though the nodes themselves may be shared with other expressions.
+ *
+ * Variable names are resolved to slots at compile time: the value of the variable
+ * declared at index i is read from {@code bindings[i]}, so one compiled formula can be
+ * evaluated against many bindings without any name lookups.
+ *
+ * A failed compilation is represented by an instance that carries the {@link ErrorCode}
+ * and position; evaluating it returns that failure.
+ */
+public final class CompiledExpression {
+    private static final BigDecimal[] NO_BINDINGS = new BigDecimal[0];
+
+    private final String source;
+    private final String[] variables;
+    private final ExpressionNode root;
+    private final ExpressionNode[] program;
+    private final int[] positions;
+    private final int maxStackDepth;
+    private final ErrorCode errorCode;
+    private final int errorPosition;
+    private final boolean incomplete;
+    // Constants as doubles, indexed like program; built on first evaluateDouble call.
+    // Volatile, so a thread that sees the array also sees the values written into it
+    private volatile double[] doubleConstants;
+    // The tree with + and * chains balanced, built on first parallel evaluation
+    private ExpressionNode balancedRoot;
+
+    CompiledExpression(String source, String[] variables, ExpressionNode root, ExpressionNode[] program, int[] positions,
+                       int maxStackDepth) {
+        this.source = source;
+        this.variables = variables;
+        this.root = root;
+        this.program = program;
+        this.positions = positions;
+        this.maxStackDepth = maxStackDepth;
+        this.errorCode = null;
+        this.errorPosition = -1;
+        this.incomplete = false;
+    }
+
+    CompiledExpression(String source, String[] variables, ErrorCode errorCode, int errorPosition) {
+        this(source, variables, errorCode, errorPosition, false);
+    }
+
+    CompiledExpression(String source, String[] variables, ErrorCode errorCode, int errorPosition, boolean incomplete) {
+        this.source = source;
+        this.variables = variables;
+        this.root = null;
+        this.program = null;
+        this.positions = null;
+        this.maxStackDepth = 0;
+        this.errorCode = errorCode;
+        this.errorPosition = errorPosition;
+        this.incomplete = incomplete;
+    }
+
+    public boolean isValid() {
+        return errorCode == null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // Root of the tree, or null if compilation failed
+    public ExpressionNode getRoot() {
+        return root;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public int getErrorPosition() {
+        return errorPosition;
+    }
+
+    // True if every token was accepted and the text only ended too early: empty, or with an
+    // operator, function name or '(' still waiting (see ExpressionDocument)
+    boolean isIncomplete() {
+        return incomplete;
+    }
+
+    // Declared variable names; the name at index i is bound to slot i
+    public String[] getVariableNames() {
+        return variables.clone();
+    }
+
+    // Slot of the named variable, or -1 if it was not declared
+    public int slotOf(String name) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Evaluates with the calculator's standard semantics (division rounded to scale 10)
+    public EvaluationResult evaluate() {
+        return evaluate(NumericMode.DECIMAL, NO_BINDINGS);
+    }
+
+    public EvaluationResult evaluate(NumericMode mode) {
+        return evaluate(mode, NO_BINDINGS);
+    }
+
+    // bindings[i] is the value of variable i; a missing or null value is UNBOUND_VARIABLE
+    public EvaluationResult evaluate(BigDecimal... bindings) {
+        return evaluate(NumericMode.DECIMAL, bindings);
+    }
+
+    // Expressions of ParallelEvaluator.PARALLEL_THRESHOLD nodes or more use the common ForkJoinPool
+    public EvaluationResult evaluate(NumericMode mode, BigDecimal... bindings) {
+        return evaluate(mode, EvaluationLimits.UNLIMITED, bindings);
+    }
+
+    /**
+     * As above, failing with VALUE_TOO_LARGE, TIMEOUT or CANCELLED (if the calling thread is
+     * interrupted) when a limit is reached. Length, token and depth limits apply when
+     * compiling; see {@link CalculatorModel#setLimits}.
+     */
+    public EvaluationResult evaluate(NumericMode mode, EvaluationLimits limits, BigDecimal... bindings) {
+        return evaluate(mode, EvaluationGuard.start(limits), bindings);
+    }
+
+    // As above, under a guard that may be shared with other evaluations (see ExpressionDocument)
+    EvaluationResult evaluate(NumericMode mode, EvaluationGuard guard, BigDecimal[] bindings) {
+        ModelEvents.Evaluate event = new ModelEvents.Evaluate();
+        event.begin();
+        boolean parallel = root != null && root.size() >= ParallelEvaluator.PARALLEL_THRESHOLD;
+        EvaluationResult result;
+        if (parallel) {
+            result = ParallelEvaluator.evaluate(this, mode, bindings, ForkJoinPool.commonPool(), guard);
+        } else {
+            result = mode == NumericMode.RATIONAL
+                ? RationalEvaluator.evaluate(this, bindings, guard)
+                : DecimalEvaluator.evaluate(this, bindings, guard);
+        }
+        if (event.shouldCommit()) {
+            event.expressionLength = source.length();
+            event.nodeCount = program != null ? program.length : 0;
+            event.mode = mode.name();
+            event.parallel = parallel;
+            event.error = ModelEvents.errorName(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates in double precision, for formulas run against many bindings where speed
+     * matters more than decimal exactness. Math errors follow IEEE 754 (for example 1 / 0
+     * is Infinity and sqrt(-1) is NaN). Throws {@link CalculationException} if the
+     * expression did not compile or a variable has no binding.
+     */
+    public double evaluateDouble(double... bindings) {
+        return DoubleEvaluator.evaluate(this, bindings);
+    }
+
+    /**
+     * Evaluates in double precision for every row of a table: variable slot k reads
+     * {@code columns[k][row]}, and row r's value is stored in {@code results[r]}. Much
+     * faster than calling {@link #evaluateDouble} per row; see {@link ColumnarEvaluator}.
+     */
+    public void evaluateColumns(double[][] columns, double[] results) {
+        ColumnarEvaluator.DEFAULT.evaluate(this, columns, results);
+    }
+
+    // Declared variable names; shared, callers must not modify it
+    String[] variables() {
+        return variables;
+    }
+
+    // Nodes in post-order; shared, callers must not modify it
+    ExpressionNode[] program() {
+        return program;
+    }
+
+    // Source position of each program entry, indexed like program; shared, callers must not modify it
+    int[] positions() {
+        return positions;
+    }
+
+    // Largest number of values on the stack while running the program
+    int maxStackDepth() {
+        return maxStackDepth;
+    }
+
+    double[] doubleConstants() {
+        double[] constants = doubleConstants;
+        if (constants == null) {
+            // Threads that race here compute equal arrays; the volatile write publishes one
+            constants = new double[program.length];
+            for (int i = 0; i < program.length; i++) {
+                if (program[i].isConstant()) {
+                    constants[i] = program[i].getValue().doubleValue();
+                }
+            }
+            doubleConstants = constants;
+        }
+        return constants;
+    }
+
+    ExpressionNode balancedRoot() {
+        ExpressionNode balanced = balancedRoot;
+        if (balanced == null) {
+            // Safe to publish without volatile because every field of ExpressionNode is
+            // final: a thread that sees the reference sees the whole tree. Threads that race
+            // here build equal trees
+            balanced = ParallelEvaluator.balance(program, maxStackDepth);
+            balancedRoot = balanced;
+        }
+        return balanced;
+    }
+
+    EvaluationResult failure() {
+        return EvaluationResult.failure(errorCode, errorPosition);
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? root.toString() : errorCode.format(errorPosition);
+    }
+}
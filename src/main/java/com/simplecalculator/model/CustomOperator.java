@@ -0,0 +1,195 @@
+package com.simplecalculator.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * A user-defined infix operator or function, registered in an {@link OperatorRegistry}.
+ *
+ * Custom operators are resolved when an expression is compiled: each node that applies
+ * one holds the definition itself, so evaluation never looks a symbol up. Built-in
+ * operators keep their switch-based dispatch and never call through this class, so
+ * registering custom operators does not slow them down. Each operator also calls its
+ * implementation from a call site of its own, a hidden class copied from
+ * {@link CustomOperatorSite}, so that call stays monomorphic and the JIT inlines the
+ * implementation however many operators are in use. (The evaluators' call into the
+ * site is one virtual call.) If the template's class file cannot be read, operators
+ * fall back to one shared call site.
+ *
+ * Implementations receive and return BigDecimals (in rational and double mode the
+ * operands are converted). They signal invalid arguments by throwing an
+ * ArithmeticException, reported as {@link ErrorCode#INVALID_ARGUMENT}, or a
+ * {@link CalculationException} carrying its own code.
+ */
+public final class CustomOperator implements OperatorDefinition {
+    private static final Logger logger = Logger.getLogger(CustomOperator.class.getName());
+    // Characters a custom infix symbol may not use: they already mean something
+    private static final String RESERVED = "+-*/%^(),.";
+    // The class file of CustomOperatorSite, or null if it cannot be read
+    private static final byte[] SITE_TEMPLATE = readSiteTemplate();
+
+    private final String symbol;
+    private final int precedence;
+    private final int arity;
+    private final boolean leftAssociative;
+    private final boolean function;
+    private final Site site;
+
+    private CustomOperator(String symbol, int precedence, int arity, boolean leftAssociative, boolean function,
+                           UnaryOperator<BigDecimal> unary, BinaryOperator<BigDecimal> binary) {
+        this.symbol = symbol;
+        this.precedence = precedence;
+        this.arity = arity;
+        this.leftAssociative = leftAssociative;
+        this.function = function;
+        this.site = newSite(unary, binary);
+    }
+
+    /**
+     * An infix operator such as {@code a <> b}. The symbol is made of punctuation other
+     * than + - * / % ^ ( ) , and '.'; precedence is 1 (like +) or higher (2 is *, 4 is ^).
+     */
+    public static CustomOperator infix(String symbol, int precedence, boolean leftAssociative,
+                                       BinaryOperator<BigDecimal> implementation) {
+        if (symbol.isEmpty()) {
+            throw new IllegalArgumentException("Operator symbol must not be empty");
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (Character.isLetterOrDigit(c) || Character.isWhitespace(c) || c == '_' || RESERVED.indexOf(c) >= 0) {
+                throw new IllegalArgumentException("Invalid operator symbol: '" + symbol + "'");
+            }
+        }
+        if (precedence < 1) {
+            throw new IllegalArgumentException("Operator precedence must be at least 1");
+        }
+        return new CustomOperator(symbol, precedence, 2, leftAssociative, false, null, implementation);
+    }
+
+    // A one-argument function, called as name(x)
+    public static CustomOperator function(String name, UnaryOperator<BigDecimal> implementation) {
+        return new CustomOperator(checkName(name), 5, 1, true, true, implementation, null);
+    }
+
+    // A two-argument function, called as name(x, y)
+    public static CustomOperator function(String name, BinaryOperator<BigDecimal> implementation) {
+        return new CustomOperator(checkName(name), 5, 2, true, true, null, implementation);
+    }
+
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public int getPrecedence() {
+        return precedence;
+    }
+
+    @Override
+    public int getArity() {
+        return arity;
+    }
+
+    @Override
+    public boolean isLeftAssociative() {
+        return leftAssociative;
+    }
+
+    @Override
+    public boolean isFunction() {
+        return function;
+    }
+
+    BigDecimal apply(BigDecimal a) {
+        return checkResult(site.apply(a));
+    }
+
+    BigDecimal apply(BigDecimal a, BigDecimal b) {
+        return checkResult(site.apply(a, b));
+    }
+
+    // The code to report for an exception thrown by an implementation
+    static ErrorCode errorCode(ArithmeticException ex) {
+        return ex instanceof CalculationException ? ((CalculationException) ex).getErrorCode() : ErrorCode.INVALID_ARGUMENT;
+    }
+
+    private BigDecimal checkResult(BigDecimal result) {
+        if (result == null) {
+            throw new ArithmeticException("'" + symbol + "' returned no value");
+        }
+        return result;
+    }
+
+    // Defines a hidden copy of CustomOperatorSite calling these implementations
+    private static Site newSite(UnaryOperator<BigDecimal> unary, BinaryOperator<BigDecimal> binary) {
+        if (SITE_TEMPLATE != null) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(SITE_TEMPLATE, new Object[] {unary, binary}, true);
+                return (Site) lookup.lookupClass().getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                logger.warning("Custom operators share one call site: " + ex);
+            }
+        }
+        return new SharedSite(unary, binary);
+    }
+
+    private static byte[] readSiteTemplate() {
+        try (InputStream in = CustomOperator.class.getResourceAsStream("CustomOperatorSite.class")) {
+            return in == null ? null : in.readAllBytes();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static String checkName(String name) {
+        boolean valid = !name.isEmpty() && Character.isLetter(name.charAt(0));
+        for (int i = 1; valid && i < name.length(); i++) {
+            char c = name.charAt(i);
+            valid = Character.isLetterOrDigit(c) || c == '_';
+        }
+        if (!valid || Operator.functionNamed(name, 0, name.length()) != null) {
+            throw new IllegalArgumentException("Invalid function name: '" + name + "'");
+        }
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+
+    // One operator's call into its implementation; the unused arity's method is never called
+    abstract static class Site {
+        abstract BigDecimal apply(BigDecimal a);
+
+        abstract BigDecimal apply(BigDecimal a, BigDecimal b);
+    }
+
+    // The fallback call site, one class shared by every operator
+    private static final class SharedSite extends Site {
+        private final UnaryOperator<BigDecimal> unary;
+        private final BinaryOperator<BigDecimal> binary;
+
+        SharedSite(UnaryOperator<BigDecimal> unary, BinaryOperator<BigDecimal> binary) {
+            this.unary = unary;
+            this.binary = binary;
+        }
+
+        @Override
+        BigDecimal apply(BigDecimal a) {
+            return unary.apply(a);
+        }
+
+        @Override
+        BigDecimal apply(BigDecimal a, BigDecimal b) {
+            return binary.apply(a, b);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.simplecalculator.model;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * The template for one {@link CustomOperator}'s call site. This class is never loaded
+ * as is: {@link CustomOperator} defines a hidden copy of its class file per operator and
+ * passes the implementation as class data. Each copy has its own {@code apply} methods,
+ * with their own type profiles, calling a constant the JIT can inline.
+ */
+final class CustomOperatorSite extends CustomOperator.Site {
+    private static final UnaryOperator<BigDecimal> UNARY;
+    private static final BinaryOperator<BigDecimal> BINARY;
+
+    static {
+        Object[] implementations;
+        try {
+            implementations = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, Object[].class);
+        } catch (IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+        UNARY = cast(implementations[0]);
+        BINARY = cast(implementations[1]);
+    }
+
+    @Override
+    BigDecimal apply(BigDecimal a) {
+        return UNARY.apply(a);
+    }
+
+    @Override
+    BigDecimal apply(BigDecimal a, BigDecimal b) {
+        return BINARY.apply(a, b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object implementation) {
+        return (T) implementation;
+    }
+}
@@ -0,0 +1,264 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Evaluates compiled expressions with the calculator's standard BigDecimal semantics:
+ * +, -, * and % are exact, division and functions round HALF_UP to
+ * {@link BigDecimalMath#DEFAULT_SCALE}. Runs the post-order program with a flat value
+ * stack, and checks every operator's arguments up front so errors are returned, not thrown;
+ * only a timeout or cancellation in the middle of a function ends it with an exception from
+ * {@link EvaluationGuard#poll}, which is caught and returned like the other errors.
+ *
+ * Values that fit in a long are kept on the stack unboxed ({@link CompactDecimal}) and
+ * +, -, *, /, min and max on them never allocate; a value moves to BigDecimal when a
+ * result does not fit or the operator has no compact form. Both give identical results,
+ * down to the scale.
+ */
+final class DecimalEvaluator {
+
+    private DecimalEvaluator() {
+    }
+
+    static EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings) {
+        return evaluate(expression, bindings, EvaluationGuard.UNLIMITED);
+    }
+
+    static EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings, EvaluationGuard guard) {
+        if (!expression.isValid()) {
+            return expression.failure();
+        }
+        ExpressionNode[] program = expression.program();
+        int[] positions = expression.positions();
+        int depth = expression.maxStackDepth();
+        // Stack slot k holds big[k], or if that is null the compact value unscaled[k] / 10^scales[k]
+        BigDecimal[] big = new BigDecimal[depth];
+        long[] unscaled = new long[depth];
+        int[] scales = new int[depth];
+        int top = 0;
+
+        for (int i = 0; i < program.length; i++) {
+            ExpressionNode node = program[i];
+            Operator op = node.getOperator();
+            ErrorCode error = (i & EvaluationGuard.CHECK_MASK) == 0 ? guard.checkTime() : null;
+            if (error != null) {
+                return EvaluationResult.failure(error, positions[i]);
+            }
+            if (op == null) {
+                BigDecimal value;
+                long compact;
+                if (node.isVariable()) {
+                    value = binding(bindings, node.getSlot());
+                    if (value == null) {
+                        return EvaluationResult.failure(ErrorCode.UNBOUND_VARIABLE, positions[i]);
+                    }
+                    compact = CompactDecimal.of(value);
+                } else {
+                    value = node.getValue();
+                    compact = node.compactValue();
+                }
+                if (compact != CompactDecimal.OVERFLOW) {
+                    big[top] = null;
+                    unscaled[top] = compact;
+                    scales[top] = value.scale();
+                } else {
+                    big[top] = value;
+                }
+                top++;
+            } else if (op == Operator.CUSTOM) {
+                int arity = node.getOperandCount();
+                int t = top - arity;
+                try {
+                    big[t] = applyCustom(node.getCustomOperator(), valueAt(big, unscaled, scales, t),
+                        arity == 2 ? valueAt(big, unscaled, scales, t + 1) : null);
+                } catch (ArithmeticException ex) {
+                    return EvaluationResult.failure(CustomOperator.errorCode(ex), positions[i]);
+                }
+                top = t + 1;
+            } else if (op.getArity() == 1) {
+                int t = top - 1;
+                if (op == Operator.NEGATE && big[t] == null) {
+                    unscaled[t] = -unscaled[t]; // cannot overflow, Long.MIN_VALUE is never compact
+                } else {
+                    BigDecimal a = valueAt(big, unscaled, scales, t);
+                    error = checkDomain(op, a, null);
+                    if (error == null) {
+                        error = guard.checkFunction(op, a);
+                    }
+                    if (error != null) {
+                        return EvaluationResult.failure(error, positions[i]);
+                    }
+                    try {
+                        big[t] = applyOperator(op, a, guard);
+                    } catch (CalculationException ex) {
+                        return EvaluationResult.failure(ex.getErrorCode(), positions[i]);
+                    }
+                }
+            } else {
+                int t = --top - 1;
+                if (big[t] != null || big[t + 1] != null || !applyCompact(op, unscaled, scales, t)) {
+                    BigDecimal a = valueAt(big, unscaled, scales, t);
+                    BigDecimal b = valueAt(big, unscaled, scales, t + 1);
+                    error = checkDomain(op, a, b);
+                    if (error == null && op == Operator.POWER) {
+                        error = guard.checkPower(a, b);
+                    }
+                    if (error != null) {
+                        return EvaluationResult.failure(error, positions[i]);
+                    }
+                    try {
+                        big[t] = applyOperator(op, a, b, guard);
+                    } catch (CalculationException ex) {
+                        return EvaluationResult.failure(ex.getErrorCode(), positions[i]);
+                    }
+                }
+            }
+            int t = top - 1;
+            error = big[t] != null ? guard.check(big[t]) : guard.check(unscaled[t], scales[t]);
+            if (error != null) {
+                return EvaluationResult.failure(error, positions[i]);
+            }
+        }
+        return EvaluationResult.success(valueAt(big, unscaled, scales, 0));
+    }
+
+    private static BigDecimal valueAt(BigDecimal[] big, long[] unscaled, int[] scales, int slot) {
+        BigDecimal value = big[slot];
+        return value != null ? value : CompactDecimal.toBigDecimal(unscaled[slot], scales[slot]);
+    }
+
+    /**
+     * Applies a binary operator to the compact values in slots t and t + 1, leaving the
+     * result in slot t. Returns false, changing nothing, if the operator has no compact
+     * implementation or the result does not fit; BigDecimal then computes it instead.
+     */
+    private static boolean applyCompact(Operator op, long[] unscaled, int[] scales, int t) {
+        long a = unscaled[t];
+        long b = unscaled[t + 1];
+        int aScale = scales[t];
+        int bScale = scales[t + 1];
+        long result;
+        int scale;
+        switch (op) {
+            case ADD:
+                result = CompactDecimal.add(a, aScale, b, bScale);
+                scale = Math.max(aScale, bScale);
+                break;
+            case SUBTRACT:
+                result = CompactDecimal.add(a, aScale, -b, bScale);
+                scale = Math.max(aScale, bScale);
+                break;
+            case MULTIPLY:
+                long productScale = (long) aScale + bScale;
+                if (productScale != (int) productScale) {
+                    return false;
+                }
+                result = CompactDecimal.multiply(a, b);
+                scale = (int) productScale;
+                break;
+            case DIVIDE:
+                if (b == 0) {
+                    return false; // reported by checkDomain
+                }
+                result = CompactDecimal.divide(a, aScale, b, bScale, BigDecimalMath.DEFAULT_SCALE);
+                scale = BigDecimalMath.DEFAULT_SCALE;
+                break;
+            case MIN:
+            case MAX:
+                int comparison = CompactDecimal.compare(a, aScale, b, bScale);
+                if (comparison == Integer.MIN_VALUE) {
+                    return false;
+                }
+                // Like BigDecimal.min/max, the first operand wins a tie
+                if (op == Operator.MIN ? comparison > 0 : comparison < 0) {
+                    unscaled[t] = b;
+                    scales[t] = bScale;
+                }
+                return true;
+            default:
+                return false;
+        }
+        if (result == CompactDecimal.OVERFLOW) {
+            return false;
+        }
+        unscaled[t] = result;
+        scales[t] = scale;
+        return true;
+    }
+
+    // The bound value, or null if bindings has none for this slot
+    static BigDecimal binding(BigDecimal[] bindings, int slot) {
+        return slot < bindings.length ? bindings[slot] : null;
+    }
+
+    // Detects arguments the math functions would reject, so no exception is ever thrown for them.
+    // Results too large to compute are left to EvaluationGuard.checkPower and checkFunction.
+    static ErrorCode checkDomain(Operator op, BigDecimal a, BigDecimal b) {
+        switch (op) {
+            case DIVIDE:
+            case MODULO:
+                return b.signum() == 0 ? ErrorCode.DIVISION_BY_ZERO : null;
+            case POWER:
+                if (BigDecimalMath.powUndefined(a, b)) {
+                    return a.signum() == 0 ? ErrorCode.DIVISION_BY_ZERO : ErrorCode.INVALID_ARGUMENT;
+                }
+                return BigDecimalMath.powOverflows(b) ? ErrorCode.OVERFLOW : null;
+            case SQRT:
+                return a.signum() < 0 ? ErrorCode.INVALID_ARGUMENT : null;
+            case LN:
+                return a.signum() <= 0 ? ErrorCode.INVALID_ARGUMENT : null;
+            default:
+                return null;
+        }
+    }
+
+    // Custom operators are kept off the built-in paths below, each with its own call site (see CustomOperator).
+    // b is null for a single-argument function; throws what the implementation throws.
+    static BigDecimal applyCustom(CustomOperator op, BigDecimal a, BigDecimal b) {
+        return b == null ? op.apply(a) : op.apply(a, b);
+    }
+
+    // Apply a unary operator or single-argument function; the guard is polled by the long-running ones
+    static BigDecimal applyOperator(Operator op, BigDecimal a, EvaluationGuard guard) {
+        switch (op) {
+            case NEGATE:
+                return a.negate();
+            case SQRT:
+                return BigDecimalMath.sqrt(a, BigDecimalMath.DEFAULT_SCALE);
+            case LN:
+                return BigDecimalMath.ln(a, BigDecimalMath.DEFAULT_SCALE, guard);
+            case EXP:
+                return BigDecimalMath.exp(a, BigDecimalMath.DEFAULT_SCALE, guard);
+            case SIN:
+                return BigDecimalMath.sin(a, BigDecimalMath.DEFAULT_SCALE, guard);
+            case COS:
+                return BigDecimalMath.cos(a, BigDecimalMath.DEFAULT_SCALE, guard);
+            default:
+                throw new ArithmeticException("Invalid expression: '" + op.getSymbol() + "' is not a unary operator");
+        }
+    }
+
+    // Apply a binary operator or two-argument function
+    static BigDecimal applyOperator(Operator op, BigDecimal a, BigDecimal b, EvaluationGuard guard) {
+        switch (op) {
+            case ADD:
+                return a.add(b);
+            case SUBTRACT:
+                return a.subtract(b);
+            case MULTIPLY:
+                return HugeNumbers.multiply(a, b);
+            case DIVIDE:
+                return BigDecimalMath.divide(a, b, BigDecimalMath.DEFAULT_SCALE);
+            case MODULO:
+                return BigDecimalMath.mod(a, b);
+            case POWER:
+                return BigDecimalMath.pow(a, b, BigDecimalMath.DEFAULT_SCALE, guard);
+            case MIN:
+                return a.min(b);
+            case MAX:
+                return a.max(b);
+            default:
+                throw new ArithmeticException("Invalid expression: '" + op.getSymbol() + "' is not a binary operator");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds BigDecimals straight from the characters of a numeric literal.
+ *
+ * Literals with up to 18 significant digits are accumulated into an unscaled long, so no
+ * intermediate String or char[] is created; longer ones fall back to the BigDecimal(String)
+ * constructor. Out-of-range exponents are reported as null rather than thrown. Small values
+ * at scales 0-2 (0, 1, 10, 100, 0.5, 2.25, ...) are interned and returned as shared instances.
+ */
+final class DecimalLiterals {
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int INTERN_LIMIT = 1024;
+    private static final int INTERN_SCALES = 3;
+
+    // Populated on first use; a benign race, since BigDecimal is immutable
+    private static final BigDecimal[][] INTERNED = new BigDecimal[INTERN_SCALES][INTERN_LIMIT];
+
+    private DecimalLiterals() {
+    }
+
+    /**
+     * Parses digits[.digits][(e|E)[+|-]digits] in {@code text[start, end)}; the caller has
+     * already checked the shape. Returns null if the scale does not fit in an int.
+     */
+    static BigDecimal parse(CharSequence text, int start, int end) {
+        long unscaled = 0;
+        int digits = 0;       // significant digits accumulated, ignoring leading zeros
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean tooLong = false;
+        int i = start;
+
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if ((digits > 0 || c != '0') && ++digits > MAX_LONG_DIGITS) {
+                tooLong = true;
+            }
+            unscaled = unscaled * 10 + (c - '0'); // meaningless once tooLong
+            if (fraction) {
+                fractionDigits++;
+            }
+        }
+
+        long scale = fractionDigits;
+        if (i < end) {
+            // Exponent part: skip the 'e' and an optional sign
+            i++;
+            boolean negative = false;
+            if (text.charAt(i) == '+' || text.charAt(i) == '-') {
+                negative = text.charAt(i) == '-';
+                i++;
+            }
+            long exponent = 0;
+            for (; i < end; i++) {
+                exponent = exponent * 10 + (text.charAt(i) - '0');
+                if (exponent > Integer.MAX_VALUE) {
+                    return null;
+                }
+            }
+            scale += negative ? exponent : -exponent;
+            if (scale > Integer.MAX_VALUE || scale < Integer.MIN_VALUE) {
+                return null;
+            }
+        }
+        if (tooLong) {
+            // The shape and scale are valid, so the String constructor cannot fail here
+            return new BigDecimal(text.subSequence(start, end).toString());
+        }
+        return valueOf(unscaled, (int) scale);
+    }
+
+    // Checks that the literal's scale fits in an int, without building the value
+    static boolean isInRange(CharSequence text, int start, int end) {
+        long scale = 0;
+        boolean fraction = false;
+        int i = start;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else if (c < '0' || c > '9') {
+                break;
+            } else if (fraction) {
+                scale++;
+            }
+        }
+        if (i < end) {
+            i++;
+            boolean negative = false;
+            if (text.charAt(i) == '+' || text.charAt(i) == '-') {
+                negative = text.charAt(i) == '-';
+                i++;
+            }
+            long exponent = 0;
+            for (; i < end; i++) {
+                exponent = exponent * 10 + (text.charAt(i) - '0');
+                if (exponent > Integer.MAX_VALUE) {
+                    return false;
+                }
+            }
+            scale += negative ? exponent : -exponent;
+        }
+        return scale <= Integer.MAX_VALUE && scale >= Integer.MIN_VALUE;
+    }
+
+    // Returns the interned instance for small values, otherwise a new BigDecimal
+    static BigDecimal valueOf(long unscaled, int scale) {
+        if (unscaled >= 0 && unscaled < INTERN_LIMIT && scale >= 0 && scale < INTERN_SCALES) {
+            BigDecimal[] table = INTERNED[scale];
+            BigDecimal value = table[(int) unscaled];
+            if (value == null) {
+                value = BigDecimal.valueOf(unscaled, scale);
+                table[(int) unscaled] = value;
+            }
+            return value;
+        }
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+}
@@ -0,0 +1,109 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Evaluates compiled expressions in double precision. Runs the same post-order program as
+ * {@link DecimalEvaluator} over a primitive stack, with constants converted to double once
+ * per compiled expression, so repeated evaluation against new bindings allocates only the
+ * stack. Math errors are not checked and follow IEEE 754.
+ */
+final class DoubleEvaluator {
+
+    private DoubleEvaluator() {
+    }
+
+    static double evaluate(CompiledExpression expression, double[] bindings) {
+        if (!expression.isValid()) {
+            throw new CalculationException(expression.getErrorCode(), expression.getErrorPosition());
+        }
+        ExpressionNode[] program = expression.program();
+        int[] positions = expression.positions();
+        double[] constants = expression.doubleConstants();
+        double[] stack = new double[expression.maxStackDepth()];
+        int top = 0;
+
+        for (int i = 0; i < program.length; i++) {
+            ExpressionNode node = program[i];
+            Operator op = node.getOperator();
+            if (op == null) {
+                if (node.isVariable()) {
+                    int slot = node.getSlot();
+                    if (slot >= bindings.length) {
+                        throw new CalculationException(ErrorCode.UNBOUND_VARIABLE, positions[i]);
+                    }
+                    stack[top++] = bindings[slot];
+                } else {
+                    stack[top++] = constants[i];
+                }
+            } else if (op == Operator.CUSTOM) {
+                int arity = node.getOperandCount();
+                stack[top - arity] = applyCustom(node.getCustomOperator(), stack[top - arity], arity == 2 ? stack[top - 1] : Double.NaN, arity);
+                top -= arity - 1;
+            } else if (op.getArity() == 1) {
+                stack[top - 1] = applyOperator(op, stack[top - 1]);
+            } else {
+                double b = stack[--top];
+                stack[top - 1] = applyOperator(op, stack[top - 1], b);
+            }
+        }
+        return stack[0];
+    }
+
+    // Custom operators work on BigDecimals; NaN and infinite operands, or a rejected argument, give NaN
+    static double applyCustom(CustomOperator op, double a, double b, int arity) {
+        if (!Double.isFinite(a) || (arity == 2 && !Double.isFinite(b))) {
+            return Double.NaN;
+        }
+        try {
+            BigDecimal result = arity == 1
+                ? op.apply(BigDecimal.valueOf(a))
+                : op.apply(BigDecimal.valueOf(a), BigDecimal.valueOf(b));
+            return result.doubleValue();
+        } catch (ArithmeticException ex) {
+            return Double.NaN;
+        }
+    }
+
+    static double applyOperator(Operator op, double a) {
+        switch (op) {
+            case NEGATE:
+                return -a;
+            case SQRT:
+                return Math.sqrt(a);
+            case LN:
+                return Math.log(a);
+            case EXP:
+                return Math.exp(a);
+            case SIN:
+                return Math.sin(a);
+            case COS:
+                return Math.cos(a);
+            default:
+                throw new ArithmeticException("Invalid expression: '" + op.getSymbol() + "' is not a unary operator");
+        }
+    }
+
+    static double applyOperator(Operator op, double a, double b) {
+        switch (op) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return a / b;
+            case MODULO:
+                return a % b;
+            case POWER:
+                return Math.pow(a, b);
+            case MIN:
+                return Math.min(a, b);
+            case MAX:
+                return Math.max(a, b);
+            default:
+                throw new ArithmeticException("Invalid expression: '" + op.getSymbol() + "' is not a binary operator");
+        }
+    }
+}
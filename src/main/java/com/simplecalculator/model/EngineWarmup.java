@@ -0,0 +1,183 @@
+package com.simplecalculator.model;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Runs the expression engine on a synthetic corpus so the JIT compiles its hot paths
+ * before real traffic arrives, instead of during the first few thousand requests.
+ *
+ * Each round generates fresh expressions (so parsing is exercised and not just served
+ * from the {@link ExpressionPool}) using every operator and function, syntax and math
+ * errors, long-overflowing values and, every few rounds, an expression large enough for
+ * {@link ParallelEvaluator}. They are evaluated in both {@link NumericMode}s, validated,
+ * evaluated to a number of digits and run as a compiled formula with bindings and in
+ * double precision. Rounds continue until the JIT's total compilation time has stopped
+ * growing for a while, or the time budget runs out.
+ *
+ * Headless entry points call {@link #warmUp} before accepting work; other code can
+ * check {@link #isReady} or register a hook with {@link #onReady}.
+ */
+public final class EngineWarmup {
+    private static final Logger logger = Logger.getLogger(EngineWarmup.class.getName());
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(10);
+    // Rounds always run, enough for every path to pass the tiered compilation thresholds
+    private static final int MIN_ROUNDS = 100;
+    // Consecutive rounds without new compilation time that count as stable
+    private static final int STABLE_ROUNDS = 20;
+    private static final int PARALLEL_EVERY = 25;
+    private static final String[] BINARY = {"+", "-", "*", "/", "%"};
+    private static final String[] FUNCTIONS = {"sqrt", "ln", "exp", "sin", "cos"};
+
+    private static final List<Runnable> readyHooks = new ArrayList<>();
+    private static volatile boolean ready;
+    // Keeps results alive so the warm-up work cannot be optimized away
+    private static volatile int sink;
+
+    private EngineWarmup() {
+    }
+
+    // True once a warm-up has finished
+    public static boolean isReady() {
+        return ready;
+    }
+
+    // Runs hook once the engine is warmed up: right away if it already is, else on the warming thread
+    public static void onReady(Runnable hook) {
+        synchronized (readyHooks) {
+            if (!ready) {
+                readyHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    public static long warmUp() {
+        return warmUp(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Warms up the engine on the calling thread for at most {@code budget} (but at least one
+     * round), then marks it ready and runs the hooks. Returns the number of expressions evaluated.
+     */
+    public static synchronized long warmUp(Duration budget) {
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean timed = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+        CalculatorModel decimal = new CalculatorModel();
+        CalculatorModel rational = new CalculatorModel();
+        rational.setNumericMode(NumericMode.RATIONAL);
+        CompiledExpression formula = decimal.compile("x * y + x / (y + 1) - min(x, y) ^ 2", "x", "y");
+        Random random = new Random(42);
+        long evaluations = 0;
+        long compilationTime = -1;
+        int stable = 0;
+        int round = 0;
+        // At least one round, however short the budget; a cold JVM can spend it all loading classes
+        do {
+            List<String> corpus = corpus(random, round % PARALLEL_EVERY == PARALLEL_EVERY - 1);
+            int hash = 0;
+            for (String expression : corpus) {
+                hash += digest(decimal.evaluate(expression));
+                hash += digest(rational.evaluate(expression));
+                hash += decimal.validate(expression).isValid() ? 1 : 0;
+            }
+            hash += digest(decimal.evaluate(corpus.get(0), 20));
+            BigDecimal x = BigDecimal.valueOf(random.nextInt(1000), 2);
+            BigDecimal y = BigDecimal.valueOf(random.nextInt(1000) + 1);
+            hash += digest(formula.evaluate(x, y));
+            hash += Double.hashCode(formula.evaluateDouble(x.doubleValue(), y.doubleValue()));
+            sink += hash;
+            evaluations += 2L * corpus.size() + 3;
+
+            if (++round < MIN_ROUNDS) {
+                continue;
+            }
+            if (!timed) {
+                break;
+            }
+            long total = jit.getTotalCompilationTime();
+            stable = total == compilationTime ? stable + 1 : 0;
+            compilationTime = total;
+            if (stable >= STABLE_ROUNDS) {
+                break;
+            }
+        } while (System.nanoTime() < deadline);
+        logger.info("Engine warmed up with " + evaluations + " evaluations in " + round + " rounds, "
+            + (System.nanoTime() - start) / 1_000_000 + " ms"
+            + (timed ? " (JIT compilation time " + jit.getTotalCompilationTime() + " ms)" : ""));
+        markReady();
+        return evaluations;
+    }
+
+    // One round of synthetic expressions; the first is an error-free mix of everything
+    static List<String> corpus(Random random, boolean includeParallel) {
+        List<String> corpus = new ArrayList<>();
+        String a = number(random);
+        String b = number(random);
+        String c = number(random);
+        corpus.add("(" + a + " + " + b + ") * " + c + " - " + b + " / (" + c + " % 7 + 1) + max(" + a + ", " + c
+            + ") ^ 2 + sqrt(" + b + ") - -" + a);
+        for (String operator : BINARY) {
+            corpus.add(a + " " + operator + " " + b);
+            corpus.add("(" + a + operator + c + ")" + operator + "-" + b);
+        }
+        corpus.add(a + " ^ " + random.nextInt(12));
+        corpus.add("-" + b + " ^ 3 * (2 ^ -" + random.nextInt(5) + ")");
+        corpus.add("min(" + a + ", " + b + ") + max(" + b + ", -" + c + ")");
+        for (String function : FUNCTIONS) {
+            // Small arguments, so exp does not spend the round on a huge power
+            corpus.add(function + "(" + random.nextInt(100) + " / " + (random.nextInt(50) + 1) + ")");
+        }
+        // Past the range of long, so compact arithmetic falls back to BigDecimal
+        corpus.add("9999999999" + random.nextInt(10) + " * 99999999999 * " + a);
+        corpus.add(a + "." + random.nextInt(1000) + " * " + b + ".5 / 3");
+        // Math and syntax errors
+        corpus.add(a + " / (" + b + " - " + b + ")");
+        corpus.add("sqrt(-" + b + ")");
+        corpus.add("ln(0)");
+        corpus.add("(" + a + " + " + b);
+        corpus.add(a + " + * " + b);
+        corpus.add("unknown(" + a + ")");
+        corpus.add(a + " $ " + b);
+        corpus.add("max(" + a + ")");
+        corpus.add("");
+        if (includeParallel) {
+            StringBuilder sum = new StringBuilder(a);
+            for (int i = 0; i < ParallelEvaluator.PARALLEL_THRESHOLD / 2 + 1; i++) {
+                sum.append(i % 2 == 0 ? " + " : " * ").append(random.nextInt(100));
+            }
+            corpus.add(sum.toString());
+        }
+        return corpus;
+    }
+
+    private static int digest(EvaluationResult result) {
+        return result.isSuccess() ? result.getValue().signum() : result.getErrorCode().ordinal();
+    }
+
+    private static String number(Random random) {
+        return String.valueOf(random.nextInt(100_000) + 1);
+    }
+
+    private static void markReady() {
+        List<Runnable> hooks;
+        synchronized (readyHooks) {
+            ready = true;
+            hooks = new ArrayList<>(readyHooks);
+            readyHooks.clear();
+        }
+        for (Runnable hook : hooks) {
+            hook.run();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.simplecalculator.model;
+
+/**
+ * Reasons an expression can fail to evaluate. Syntax errors point at the offending token;
+ * math errors point at the operator or function that could not be applied.
+ */
+public enum ErrorCode {
+    EMPTY_EXPRESSION("empty expression", true),
+    UNEXPECTED_CHARACTER("unexpected character", true),
+    UNKNOWN_FUNCTION("unknown function", true),
+    UNKNOWN_VARIABLE("unknown variable", true),
+    MALFORMED_NUMBER("malformed number", true),
+    NUMBER_OUT_OF_RANGE("number out of range", true),
+    EXPECTED_PARENTHESIS("expected '(' after function", true),
+    MISMATCHED_PARENTHESES("mismatched parentheses", true),
+    MISPLACED_COMMA("misplaced comma", true),
+    WRONG_ARGUMENT_COUNT("wrong number of function arguments", true),
+    MISSING_OPERAND("not enough operands for operator", true),
+    TOO_MANY_OPERANDS("too many operands or mismatched operators", true),
+    UNBOUND_VARIABLE("Variable has no value", false),
+    CIRCULAR_REFERENCE("Circular reference", false),
+    DIVISION_BY_ZERO("Division by zero", false),
+    INVALID_ARGUMENT("Invalid argument", false),
+    OVERFLOW("Overflow: result is too large", false),
+    PRECISION_LIMIT("Requested precision could not be reached", false),
+    // Resource limits (see EvaluationLimits)
+    EXPRESSION_TOO_LONG("expression too long", true),
+    TOO_MANY_TOKENS("too many tokens", true),
+    NESTED_TOO_DEEPLY("parentheses nested too deeply", true),
+    VALUE_TOO_LARGE("Intermediate value exceeds the precision limit", false),
+    TIMEOUT("Evaluation timed out", false),
+    CANCELLED("Evaluation cancelled", false);
+
+    private final String description;
+    private final boolean syntaxError;
+
+    ErrorCode(String description, boolean syntaxError) {
+        this.description = description;
+        this.syntaxError = syntaxError;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isSyntaxError() {
+        return syntaxError;
+    }
+
+    // Builds the human-readable message; only called when somebody asks for it
+    public String format(int position) {
+        String message = syntaxError ? "Invalid expression: " + description : description;
+        return position >= 0 ? message + " at position " + position : message;
+    }
+}
@@ -0,0 +1,169 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Enforces {@link EvaluationLimits} during one evaluation. Created on the evaluating
+ * thread, which it remembers, so tasks running on other threads (see
+ * {@link ParallelEvaluator}) still see that thread being interrupted. Immutable, so one
+ * guard can be shared by all of an evaluation's tasks.
+ *
+ * Evaluators call {@link #checkTime()} when {@code (i & CHECK_MASK) == 0} for node index
+ * i, and {@link #check(BigDecimal)} (or its compact variant) on every value they compute.
+ * Before a power, sin, cos or exp they call {@link #checkPower} or {@link #checkFunction},
+ * which estimate the digits the call would work with; during it, {@link BigDecimalMath}
+ * calls {@link #poll()} on every step of its loops, and the evaluators report the
+ * exception it throws at the operator's position.
+ */
+final class EvaluationGuard {
+    static final EvaluationGuard UNLIMITED = new EvaluationGuard(EvaluationLimits.UNLIMITED, null, 0L);
+    // Time and interruption are polled once per CHECK_MASK + 1 nodes
+    static final int CHECK_MASK = 255;
+
+    private static final double LOG10_2 = Math.log10(2);
+    // Plenty for estimating the digits of a power with a fractional exponent
+    private static final MathContext ESTIMATE_CONTEXT = new MathContext(17);
+
+    private final EvaluationLimits limits;
+    private final Thread owner;
+    private final long deadline;
+
+    private EvaluationGuard(EvaluationLimits limits, Thread owner, long deadline) {
+        this.limits = limits;
+        this.owner = owner;
+        this.deadline = deadline;
+    }
+
+    // Starts the clock for an evaluation on the current thread
+    static EvaluationGuard start(EvaluationLimits limits) {
+        if (limits == EvaluationLimits.UNLIMITED) {
+            return UNLIMITED;
+        }
+        long timeout = limits.timeoutNanos();
+        return new EvaluationGuard(limits, Thread.currentThread(), timeout == 0 ? 0L : System.nanoTime() + timeout);
+    }
+
+    // CANCELLED if the evaluating thread was interrupted, TIMEOUT past the deadline, else null
+    ErrorCode checkTime() {
+        if (owner == null) {
+            return null;
+        }
+        if (owner.isInterrupted()) {
+            return ErrorCode.CANCELLED;
+        }
+        if (deadline != 0L && System.nanoTime() - deadline > 0) {
+            return ErrorCode.TIMEOUT;
+        }
+        return null;
+    }
+
+    // For loops within one operation: throws a CalculationException with the code checkTime() returns
+    void poll() {
+        ErrorCode error = checkTime();
+        if (error != null) {
+            throw new CalculationException(error, -1);
+        }
+    }
+
+    // VALUE_TOO_LARGE if the value has too many digits or too large a scale, else null
+    ErrorCode check(BigDecimal value) {
+        if (owner == null) {
+            return null;
+        }
+        if (HugeNumbers.digits(value) > limits.getMaxPrecision() || Math.abs((long) value.scale()) > limits.getMaxScale()) {
+            return ErrorCode.VALUE_TOO_LARGE;
+        }
+        return null;
+    }
+
+    // As above for a compact value (see CompactDecimal)
+    ErrorCode check(long unscaled, int scale) {
+        if (owner == null) {
+            return null;
+        }
+        if (CompactDecimal.digits(unscaled) > limits.getMaxPrecision() || Math.abs((long) scale) > limits.getMaxScale()) {
+            return ErrorCode.VALUE_TOO_LARGE;
+        }
+        return null;
+    }
+
+    ErrorCode check(Rational value) {
+        if (owner == null) {
+            return null;
+        }
+        return value.bitLength() * LOG10_2 > limits.getMaxPrecision() ? ErrorCode.VALUE_TOO_LARGE : null;
+    }
+
+    /**
+     * Estimates the digits of base^exponent before computing it: |exponent| times those of
+     * the base for an integer exponent, else those of exp(exponent ln base). Arguments the
+     * power is undefined for must have been rejected already.
+     */
+    ErrorCode checkPower(BigDecimal base, BigDecimal exponent) {
+        if (base.signum() == 0) {
+            return null;
+        }
+        if (!BigDecimalMath.isInteger(exponent)) {
+            return checkResultDigits(BigDecimalMath.powDigits(base, exponent));
+        }
+        if (owner == null) {
+            return null;
+        }
+        int bits = base.unscaledValue().abs().bitLength() - 1;
+        return estimate(bits * LOG10_2 + Math.abs((long) base.scale()), exponent.doubleValue());
+    }
+
+    ErrorCode checkPower(Rational base, Rational exponent) {
+        if (base.signum() == 0) {
+            return null;
+        }
+        if (!exponent.isInteger()) {
+            return checkPower(base.toBigDecimal(ESTIMATE_CONTEXT), exponent.toBigDecimal(ESTIMATE_CONTEXT));
+        }
+        if (owner == null) {
+            return null;
+        }
+        return estimate((base.bitLength() - 1) * LOG10_2, exponent.toBigDecimal(0, RoundingMode.UNNECESSARY).doubleValue());
+    }
+
+    /**
+     * Estimates the work of a function before computing it: sin and cos reduce their
+     * argument with pi to as many digits as its integer part has, and exp(x) has about
+     * x / ln 10 digits. Other operators are not checked.
+     */
+    ErrorCode checkFunction(Operator op, BigDecimal argument) {
+        switch (op) {
+            case SIN:
+            case COS:
+                return owner != null && BigDecimalMath.integerDigits(argument) > limits.getMaxPrecision()
+                    ? ErrorCode.VALUE_TOO_LARGE : null;
+            case EXP:
+                return checkResultDigits(BigDecimalMath.expDigits(argument));
+            default:
+                return null;
+        }
+    }
+
+    // Only the integer part matters for the estimates
+    ErrorCode checkFunction(Operator op, Rational argument) {
+        if (op != Operator.SIN && op != Operator.COS && op != Operator.EXP) {
+            return null;
+        }
+        return checkFunction(op, argument.toBigDecimal(0, RoundingMode.DOWN));
+    }
+
+    // Results of exp and real powers: bounded by the precision limit, or by a fixed cap without limits
+    private ErrorCode checkResultDigits(double digits) {
+        if (owner == null) {
+            return digits > BigDecimalMath.MAX_RESULT_DIGITS ? ErrorCode.OVERFLOW : null;
+        }
+        return digits > limits.getMaxPrecision() ? ErrorCode.VALUE_TOO_LARGE : null;
+    }
+
+    // The result has about |exponent| times as many digits as the base (1 has none to spare)
+    private ErrorCode estimate(double baseDigits, double exponent) {
+        return Math.abs(exponent) * baseDigits > limits.getMaxPrecision() ? ErrorCode.VALUE_TOO_LARGE : null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.simplecalculator.model;
+
+import java.time.Duration;
+
+/**
+ * Bounds on the resources one expression may use, so a malicious or buggy expression
+ * cannot pin a core or exhaust the heap of a shared process.
+ * <ul>
+ *   <li>source length, token count and parenthesis nesting are checked when compiling
+ *       (and validating), reported as {@link ErrorCode#EXPRESSION_TOO_LONG},
+ *       {@link ErrorCode#TOO_MANY_TOKENS} and {@link ErrorCode#NESTED_TOO_DEEPLY};</li>
+ *   <li>the precision (significant digits) and scale of every value are checked as it is
+ *       computed; the results of powers and exp, and the digits of pi that sin and cos
+ *       need for their argument, are estimated before they are computed. All are reported
+ *       as {@link ErrorCode#VALUE_TOO_LARGE};</li>
+ *   <li>the timeout and the interrupt status of the calling thread are polled every few
+ *       hundred nodes and on every step of the loops inside sin, cos, exp, ln and powers,
+ *       reported as {@link ErrorCode#TIMEOUT} and {@link ErrorCode#CANCELLED}. Only the
+ *       basic arithmetic of one node runs to completion once started.</li>
+ * </ul>
+ * Instances are immutable; the {@code with} methods return a modified copy.
+ */
+public final class EvaluationLimits {
+    // No limits at all; the behavior of the API before limits existed
+    public static final EvaluationLimits UNLIMITED = new EvaluationLimits(
+        Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0L);
+
+    // Generous for interactive and formula use, with no timeout
+    public static final EvaluationLimits DEFAULT = new EvaluationLimits(
+        10_000_000, 2_000_000, 10_000, 100_000, 100_000, 0L);
+
+    // DEFAULT, but allowing values of up to ten million digits (see HugeNumbers)
+    public static final EvaluationLimits HUGE_NUMBERS = DEFAULT.withMaxPrecision(10_000_000);
+
+    private final int maxLength;
+    private final int maxTokens;
+    private final int maxDepth;
+    private final int maxPrecision;
+    private final int maxScale;
+    private final long timeoutNanos;
+
+    private EvaluationLimits(int maxLength, int maxTokens, int maxDepth, int maxPrecision, int maxScale,
+                             long timeoutNanos) {
+        this.maxLength = maxLength;
+        this.maxTokens = maxTokens;
+        this.maxDepth = maxDepth;
+        this.maxPrecision = maxPrecision;
+        this.maxScale = maxScale;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    // Characters of source text; also bounds the expression CalculatorModel.calculate builds up
+    public EvaluationLimits withMaxLength(int maxLength) {
+        return new EvaluationLimits(positive(maxLength), maxTokens, maxDepth, maxPrecision, maxScale, timeoutNanos);
+    }
+
+    public EvaluationLimits withMaxTokens(int maxTokens) {
+        return new EvaluationLimits(maxLength, positive(maxTokens), maxDepth, maxPrecision, maxScale, timeoutNanos);
+    }
+
+    // Parentheses (including those of function calls) open at the same time
+    public EvaluationLimits withMaxDepth(int maxDepth) {
+        return new EvaluationLimits(maxLength, maxTokens, positive(maxDepth), maxPrecision, maxScale, timeoutNanos);
+    }
+
+    // Significant digits of any constant or intermediate value
+    public EvaluationLimits withMaxPrecision(int maxPrecision) {
+        return new EvaluationLimits(maxLength, maxTokens, maxDepth, positive(maxPrecision), maxScale, timeoutNanos);
+    }
+
+    // Absolute BigDecimal scale of any constant or intermediate value
+    public EvaluationLimits withMaxScale(int maxScale) {
+        return new EvaluationLimits(maxLength, maxTokens, maxDepth, maxPrecision, positive(maxScale), timeoutNanos);
+    }
+
+    // Wall time of one evaluation; null or zero for none
+    public EvaluationLimits withTimeout(Duration timeout) {
+        long nanos = timeout == null ? 0L : timeout.toNanos();
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        return new EvaluationLimits(maxLength, maxTokens, maxDepth, maxPrecision, maxScale, nanos);
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxPrecision() {
+        return maxPrecision;
+    }
+
+    public int getMaxScale() {
+        return maxScale;
+    }
+
+    // The timeout, or null if there is none
+    public Duration getTimeout() {
+        return timeoutNanos == 0 ? null : Duration.ofNanos(timeoutNanos);
+    }
+
+    long timeoutNanos() {
+        return timeoutNanos;
+    }
+
+    private static int positive(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationLimits[length=" + maxLength + ", tokens=" + maxTokens + ", depth=" + maxDepth
+            + ", precision=" + maxPrecision + ", scale=" + maxScale
+            + ", timeout=" + (timeoutNanos == 0 ? "none" : getTimeout()) + "]";
+    }
+}
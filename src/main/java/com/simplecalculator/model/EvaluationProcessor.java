@@ -0,0 +1,411 @@
+package com.simplecalculator.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Evaluates a stream of expressions as a {@link Flow.Processor}: subscribe it to a
+ * publisher of expression text and subscribe a consumer of {@link Result}s to it.
+ *
+ * Expressions are evaluated on an {@link Executor} by at most {@code parallelism} tasks at
+ * a time. A free task takes up to {@code batchSize} waiting expressions at once, so under
+ * load the per-task overhead is paid per batch while a lone expression still starts right
+ * away. Results are delivered in input order, or as soon as they are ready when
+ * {@code ordered} is false.
+ *
+ * Buffering is bounded: the processor requests at most {@code parallelism * batchSize * 2}
+ * expressions from upstream beyond those it has delivered, so a slow subscriber stops the
+ * producer instead of filling a queue. Evaluation errors are ordinary results; the stream
+ * itself only fails if upstream fails (after the results received so far are delivered),
+ * on an invalid request or if the executor rejects a task. One subscriber per processor.
+ */
+public final class EvaluationProcessor implements Flow.Processor<String, EvaluationProcessor.Result> {
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    // An expression, its position in the input stream and its outcome
+    public static final class Result {
+        private final long index;
+        private final String expression;
+        private final EvaluationResult evaluation;
+
+        Result(long index, String expression, EvaluationResult evaluation) {
+            this.index = index;
+            this.expression = expression;
+            this.evaluation = evaluation;
+        }
+
+        // 0 for the first expression received, 1 for the second, ...
+        public long getIndex() {
+            return index;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        public EvaluationResult getEvaluation() {
+            return evaluation;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + expression + " = " + evaluation;
+        }
+    }
+
+    private final NumericMode mode;
+    private final OperatorRegistry registry;
+    private final EvaluationLimits limits;
+    private final Executor executor;
+    private final int parallelism;
+    private final int batchSize;
+    private final boolean ordered;
+    // Expressions received but not yet delivered, at most
+    private final int capacity;
+
+    // All state below is guarded by this
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super Result> downstream;
+    private long upstreamRequested;    // requested from upstream and not yet received
+    private long demand;               // requested by downstream and not yet delivered
+    private long received;
+    // Expressions not yet handed to a task (evaluation is null)
+    private final ArrayDeque<Result> waiting = new ArrayDeque<>();
+    private int evaluating;
+    private int runningTasks;
+    // Finished results: by index modulo capacity when ordered, in completion order otherwise
+    private final Result[] window;
+    private final ArrayDeque<Result> finished;
+    private long nextIndex;
+    private int finishedCount;
+    private boolean upstreamDone;
+    private Throwable failure;
+    // Set when results can no longer be delivered in full; finished results are dropped
+    private boolean aborted;
+    private boolean terminated;
+    private boolean delivering;
+
+    // Evaluates in decimal mode with the default limits on the common pool, in input order
+    public EvaluationProcessor() {
+        this(NumericMode.DECIMAL, OperatorRegistry.DEFAULT, EvaluationLimits.DEFAULT, ForkJoinPool.commonPool(),
+            Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE, true);
+    }
+
+    public EvaluationProcessor(NumericMode mode, OperatorRegistry registry, EvaluationLimits limits,
+                               Executor executor, int parallelism, int batchSize, boolean ordered) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("parallelism and batchSize must be positive");
+        }
+        this.mode = Objects.requireNonNull(mode);
+        this.registry = Objects.requireNonNull(registry);
+        this.limits = Objects.requireNonNull(limits);
+        this.executor = Objects.requireNonNull(executor);
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+        this.capacity = Math.multiplyExact(Math.multiplyExact(parallelism, batchSize), 2);
+        this.window = ordered ? new Result[capacity] : null;
+        this.finished = ordered ? null : new ArrayDeque<>();
+    }
+
+    // Upstream side
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream == null && !upstreamDone && !terminated) {
+                upstream = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel(); // already subscribed, or cancelled downstream
+            return;
+        }
+        refill();
+    }
+
+    @Override
+    public void onNext(String expression) {
+        Objects.requireNonNull(expression);
+        synchronized (this) {
+            if (upstreamDone || terminated) {
+                return;
+            }
+            upstreamRequested--;
+            waiting.add(new Result(received++, expression, null));
+        }
+        dispatch();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = throwable;
+            }
+            upstreamDone = true;
+        }
+        deliver();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        deliver();
+    }
+
+    // Downstream side
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+        Objects.requireNonNull(subscriber);
+        boolean accepted;
+        synchronized (this) {
+            accepted = downstream == null;
+            if (accepted) {
+                downstream = subscriber;
+            }
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("EvaluationProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                EvaluationProcessor.this.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                EvaluationProcessor.this.cancel();
+            }
+        });
+        refill();
+        deliver();
+    }
+
+    private void request(long n) {
+        if (n <= 0) {
+            abort(new IllegalArgumentException("non-positive request: " + n));
+        } else {
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+        }
+        deliver();
+    }
+
+    private void cancel() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            terminated = true;
+            waiting.clear();
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    // Fails the stream: stops upstream and drops everything not yet delivered
+    private void abort(Throwable error) {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            if (!aborted) {
+                failure = error;
+                aborted = true;
+            }
+            upstreamDone = true;
+            waiting.clear();
+            if (ordered) {
+                Arrays.fill(window, null);
+            } else {
+                finished.clear();
+            }
+            finishedCount = 0;
+            subscription = upstream;
+            upstream = null;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    // Evaluation
+
+    // Starts tasks for waiting expressions while fewer than parallelism are running
+    private void dispatch() {
+        while (true) {
+            Result[] batch;
+            synchronized (this) {
+                if (terminated || waiting.isEmpty() || runningTasks >= parallelism) {
+                    return;
+                }
+                batch = new Result[Math.min(batchSize, waiting.size())];
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = waiting.poll();
+                }
+                evaluating += batch.length;
+                runningTasks++;
+            }
+            try {
+                executor.execute(() -> evaluate(batch));
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    evaluating -= batch.length;
+                    runningTasks--;
+                }
+                abort(e);
+                deliver();
+                return;
+            }
+        }
+    }
+
+    private void evaluate(Result[] batch) {
+        Result[] results = new Result[batch.length];
+        RuntimeException error = null;
+        for (int i = 0; i < batch.length && error == null; i++) {
+            Result item = batch[i];
+            try {
+                CompiledExpression compiled = ExpressionPool.shared().compile(item.expression, registry, limits);
+                results[i] = new Result(item.index, item.expression, compiled.evaluate(mode, limits));
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            abort(error);
+        }
+        synchronized (this) {
+            evaluating -= batch.length;
+            runningTasks--;
+            if (!terminated && !aborted) {
+                for (Result result : results) {
+                    if (ordered) {
+                        window[(int) (result.index % capacity)] = result;
+                    } else {
+                        finished.add(result);
+                    }
+                    finishedCount++;
+                }
+            }
+        }
+        dispatch();
+        deliver();
+    }
+
+    // Delivery
+
+    /**
+     * Hands finished results to the subscriber while it has demand, then signals
+     * completion once everything received has been delivered. Only one thread delivers at
+     * a time; others just leave their results for it.
+     */
+    private void deliver() {
+        Flow.Subscriber<? super Result> subscriber;
+        synchronized (this) {
+            if (delivering || downstream == null || terminated) {
+                return;
+            }
+            delivering = true;
+            subscriber = downstream;
+        }
+        boolean delivered = false;
+        while (true) {
+            Result next = null;
+            Throwable error = null;
+            boolean complete = false;
+            synchronized (this) {
+                if (terminated) {
+                    delivering = false;
+                    return;
+                }
+                if (demand > 0) {
+                    next = takeFinished();
+                }
+                if (next != null) {
+                    demand--;
+                } else if (upstreamDone && waiting.isEmpty() && evaluating == 0 && finishedCount == 0) {
+                    terminated = true;
+                    complete = true;
+                    error = failure;
+                } else {
+                    delivering = false;
+                    break;
+                }
+            }
+            if (complete) {
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+                return;
+            }
+            subscriber.onNext(next);
+            delivered = true;
+        }
+        if (delivered) {
+            refill();
+        }
+    }
+
+    private Result takeFinished() {
+        Result next;
+        if (ordered) {
+            int slot = (int) (nextIndex % capacity);
+            next = window[slot];
+            if (next == null) {
+                return null;
+            }
+            window[slot] = null;
+            nextIndex++;
+        } else {
+            next = finished.poll();
+            if (next == null) {
+                return null;
+            }
+        }
+        finishedCount--;
+        return next;
+    }
+
+    // Requests more expressions from upstream, keeping at most capacity undelivered
+    private void refill() {
+        Flow.Subscription subscription;
+        long n;
+        synchronized (this) {
+            if (upstream == null || downstream == null || upstreamDone || terminated) {
+                return;
+            }
+            long held = waiting.size() + evaluating + finishedCount;
+            n = capacity - held - upstreamRequested;
+            // Request in batches rather than one expression at a time, unless upstream is idle
+            if (n <= 0 || (n < batchSize && upstreamRequested > 0)) {
+                return;
+            }
+            upstreamRequested += n;
+            subscription = upstream;
+        }
+        subscription.request(n);
+    }
+}
@@ -0,0 +1,63 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of evaluating an expression: either a value, or an {@link ErrorCode} with the
+ * character position it refers to. Rejecting input this way costs no stack trace; use
+ * {@link #getValueOrThrow()} where an exception is what the caller expects.
+ */
+public final class EvaluationResult {
+    private final BigDecimal value;
+    private final ErrorCode errorCode;
+    private final int position;
+
+    private EvaluationResult(BigDecimal value, ErrorCode errorCode, int position) {
+        this.value = value;
+        this.errorCode = errorCode;
+        this.position = position;
+    }
+
+    public static EvaluationResult success(BigDecimal value) {
+        return new EvaluationResult(value, null, -1);
+    }
+
+    public static EvaluationResult failure(ErrorCode errorCode, int position) {
+        return new EvaluationResult(null, errorCode, position);
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+
+    // The computed value, or null if evaluation failed
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    // The failure reason, or null on success
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    // Character offset of the failure in the expression, or -1 if not tied to a position
+    public int getPosition() {
+        return position;
+    }
+
+    public String getMessage() {
+        return errorCode == null ? null : errorCode.format(position);
+    }
+
+    public BigDecimal getValueOrThrow() {
+        if (errorCode != null) {
+            throw new CalculationException(errorCode, position);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? String.valueOf(value) : getMessage();
+    }
+}
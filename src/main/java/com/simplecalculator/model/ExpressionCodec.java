@@ -0,0 +1,317 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of compiled expressions and evaluation results, so they can be
+ * passed between processes without re-parsing. Everything is read from and written to a
+ * {@link ByteBuffer} directly, at its current position.
+ *
+ * <pre>
+ * expression := version:u8 status:u8 source variables (constants program | error)
+ * source     := text
+ * variables  := count:varint text*
+ * constants  := count:varint decimal*           (each distinct value once)
+ * program    := count:varint (opcode:u8 [index:varint | symbol:text] position:varint)*
+ *               opcode 0 = constant (index into constants), 1 = variable (slot),
+ *               2 + Operator.ordinal() = operator; nodes in post-order. A custom
+ *               operator (Operator.CUSTOM) is followed by its symbol, looked up in
+ *               the decoder's OperatorRegistry
+ * error      := code:u8 position:zigzag         (status 1: failed compilation)
+ * result     := 0:u8 decimal | 1:u8 code:u8 position:zigzag
+ * decimal    := scale:zigzag tag:varint, then unscaled:zigzag if tag = 0,
+ *               else tag - 1 bytes of the two's complement unscaled value
+ * text       := length:varint char:varint*
+ * </pre>
+ * Varints are unsigned LEB128; zigzag values are signed varints. Malformed input is
+ * reported as an {@link IllegalArgumentException}, a too-small buffer by the usual
+ * {@link java.nio.BufferOverflowException} / {@link java.nio.BufferUnderflowException}.
+ */
+public final class ExpressionCodec {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int OP_CONSTANT = 0;
+    private static final int OP_VARIABLE = 1;
+    private static final int OP_OPERATOR = 2;
+    private static final Operator[] OPERATORS = Operator.values();
+    private static final ErrorCode[] ERROR_CODES = ErrorCode.values();
+
+    private ExpressionCodec() {
+    }
+
+    public static void encode(CompiledExpression expression, ByteBuffer out) {
+        out.put((byte) FORMAT_VERSION);
+        out.put((byte) (expression.isValid() ? 0 : 1));
+        writeText(expression.getSource(), out);
+        String[] variables = expression.variables();
+        writeVarint(variables.length, out);
+        for (String variable : variables) {
+            writeText(variable, out);
+        }
+        if (!expression.isValid()) {
+            out.put((byte) expression.getErrorCode().ordinal());
+            writeZigzag(expression.getErrorPosition(), out);
+            return;
+        }
+
+        ExpressionNode[] program = expression.program();
+        int[] positions = expression.positions();
+        List<BigDecimal> constants = new ArrayList<>();
+        int[] constantIndex = constantPool(program, constants);
+        writeVarint(constants.size(), out);
+        for (BigDecimal constant : constants) {
+            encode(constant, out);
+        }
+        writeVarint(program.length, out);
+        for (int i = 0; i < program.length; i++) {
+            ExpressionNode node = program[i];
+            if (node.isConstant()) {
+                out.put((byte) OP_CONSTANT);
+                writeVarint(constantIndex[i], out);
+            } else if (node.isVariable()) {
+                out.put((byte) OP_VARIABLE);
+                writeVarint(node.getSlot(), out);
+            } else {
+                out.put((byte) (OP_OPERATOR + node.getOperator().ordinal()));
+                if (node.getOperator() == Operator.CUSTOM) {
+                    writeText(node.getCustomOperator().getSymbol(), out);
+                }
+            }
+            writeVarint(positions[i], out);
+        }
+    }
+
+    public static CompiledExpression decodeExpression(ByteBuffer in) {
+        return decodeExpression(in, OperatorRegistry.DEFAULT);
+    }
+
+    // Custom operators are resolved by symbol in registry; an unknown symbol is malformed input
+    public static CompiledExpression decodeExpression(ByteBuffer in, OperatorRegistry registry) {
+        int version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported expression format version: " + version);
+        }
+        int status = in.get();
+        String source = readText(in);
+        String[] variables = new String[readCount(in)];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = readText(in);
+        }
+        if (status != 0) {
+            return new CompiledExpression(source, variables, errorCode(in.get()), readPosition(in));
+        }
+
+        BigDecimal[] constants = new BigDecimal[readCount(in)];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = decodeDecimal(in);
+        }
+        ExpressionNode[] program = new ExpressionNode[readCount(in)];
+        int[] positions = new int[program.length];
+        ExpressionNode[] stack = new ExpressionNode[program.length];
+        int top = 0;
+        int maxStackDepth = 0;
+        for (int i = 0; i < program.length; i++) {
+            int opcode = in.get() & 0xFF;
+            ExpressionNode node;
+            if (opcode == OP_CONSTANT || opcode == OP_VARIABLE) {
+                int index = readVarint(in);
+                positions[i] = readVarint(in);
+                if (opcode == OP_CONSTANT) {
+                    check(index < constants.length, "constant index out of range");
+                    node = ExpressionNode.constant(constants[index]);
+                } else {
+                    check(index < variables.length, "variable slot out of range");
+                    node = ExpressionNode.variable(variables[index], index);
+                }
+            } else {
+                check(opcode - OP_OPERATOR < OPERATORS.length, "unknown opcode " + opcode);
+                Operator op = OPERATORS[opcode - OP_OPERATOR];
+                CustomOperator custom = null;
+                if (op == Operator.CUSTOM) {
+                    String symbol = readText(in);
+                    custom = registry.lookup(symbol);
+                    check(custom != null, "unknown custom operator '" + symbol + "'");
+                }
+                OperatorDefinition definition = custom != null ? custom : op;
+                positions[i] = readVarint(in);
+                check(definition.getArity() > 0 && top >= definition.getArity(),
+                    "operator '" + definition.getSymbol() + "' lacks operands");
+                if (custom != null) {
+                    ExpressionNode[] operands = new ExpressionNode[custom.getArity()];
+                    for (int j = operands.length - 1; j >= 0; j--) {
+                        operands[j] = stack[--top];
+                    }
+                    node = ExpressionNode.custom(custom, operands);
+                } else if (op.getArity() == 1) {
+                    node = ExpressionNode.unary(op, stack[--top]);
+                } else {
+                    ExpressionNode right = stack[--top];
+                    node = ExpressionNode.binary(op, stack[--top], right);
+                }
+            }
+            stack[top++] = node;
+            maxStackDepth = Math.max(maxStackDepth, top);
+            program[i] = node;
+        }
+        check(top == 1, "program does not leave exactly one value");
+        return new CompiledExpression(source, variables, stack[0], program, positions, maxStackDepth);
+    }
+
+    public static void encode(BigDecimal value, ByteBuffer out) {
+        writeZigzag(value.scale(), out);
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            writeVarint(0, out);
+            writeZigzag(unscaled.longValue(), out);
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            writeVarint(bytes.length + 1, out);
+            out.put(bytes);
+        }
+    }
+
+    public static BigDecimal decodeDecimal(ByteBuffer in) {
+        long scale = readZigzag(in);
+        check(scale >= Integer.MIN_VALUE && scale <= Integer.MAX_VALUE, "scale out of range");
+        int tag = readCount(in);
+        if (tag == 0) {
+            return DecimalLiterals.valueOf(readZigzag(in), (int) scale);
+        }
+        byte[] bytes = new byte[tag - 1];
+        check(bytes.length > 0, "empty unscaled value");
+        in.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), (int) scale);
+    }
+
+    public static void encode(EvaluationResult result, ByteBuffer out) {
+        if (result.isSuccess()) {
+            out.put((byte) 0);
+            encode(result.getValue(), out);
+        } else {
+            out.put((byte) 1);
+            out.put((byte) result.getErrorCode().ordinal());
+            writeZigzag(result.getPosition(), out);
+        }
+    }
+
+    // Upper bound on the bytes encode(result, out) writes, for callers that must reserve space first
+    public static int maxEncodedSize(EvaluationResult result) {
+        if (!result.isSuccess()) {
+            return 7;
+        }
+        // status, scale and tag varints, then the unscaled value as a varint or as bytes
+        return 11 + Math.max(10, result.getValue().unscaledValue().bitLength() / 8 + 1);
+    }
+
+    public static EvaluationResult decodeResult(ByteBuffer in) {
+        int status = in.get();
+        if (status == 0) {
+            return EvaluationResult.success(decodeDecimal(in));
+        }
+        check(status == 1, "unknown result status " + status);
+        ErrorCode code = errorCode(in.get());
+        return EvaluationResult.failure(code, readPosition(in));
+    }
+
+    // Assigns each distinct constant (by value and scale) one pool index
+    private static int[] constantPool(ExpressionNode[] program, List<BigDecimal> constants) {
+        Map<BigDecimal, Integer> indexes = new HashMap<>();
+        int[] constantIndex = new int[program.length];
+        for (int i = 0; i < program.length; i++) {
+            if (program[i].isConstant()) {
+                Integer index = indexes.get(program[i].getValue());
+                if (index == null) {
+                    index = constants.size();
+                    indexes.put(program[i].getValue(), index);
+                    constants.add(program[i].getValue());
+                }
+                constantIndex[i] = index;
+            }
+        }
+        return constantIndex;
+    }
+
+    private static ErrorCode errorCode(byte ordinal) {
+        check(ordinal >= 0 && ordinal < ERROR_CODES.length, "unknown error code " + ordinal);
+        return ERROR_CODES[ordinal];
+    }
+
+    private static void writeText(String text, ByteBuffer out) {
+        writeVarint(text.length(), out);
+        for (int i = 0; i < text.length(); i++) {
+            writeVarint(text.charAt(i), out);
+        }
+    }
+
+    private static String readText(ByteBuffer in) {
+        int length = readCount(in);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int c = readVarint(in);
+            check(c <= Character.MAX_VALUE, "character out of range");
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    private static void writeVarint(long value, ByteBuffer out) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void writeZigzag(long value, ByteBuffer out) {
+        writeVarint((value << 1) ^ (value >> 63), out);
+    }
+
+    private static long readVarintLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed encoding: varint too long");
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = readVarintLong(in);
+        check(value >= 0 && value <= Integer.MAX_VALUE, "value out of range");
+        return (int) value;
+    }
+
+    // A count of items still to be read, which cannot exceed the bytes left
+    private static int readCount(ByteBuffer in) {
+        int count = readVarint(in);
+        check(count <= in.remaining() + 1, "count exceeds input");
+        return count;
+    }
+
+    private static long readZigzag(ByteBuffer in) {
+        long value = readVarintLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Error positions are -1 when unknown
+    private static int readPosition(ByteBuffer in) {
+        long position = readZigzag(in);
+        check(position >= -1 && position <= Integer.MAX_VALUE, "position out of range");
+        return (int) position;
+    }
+
+    private static void check(boolean condition, String problem) {
+        if (!condition) {
+            throw new IllegalArgumentException("Malformed encoding: " + problem);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.simplecalculator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Compiles expression text into a {@link CompiledExpression} using Dijkstra's Shunting
+ * Yard algorithm. Instead of computing values, each reduction builds an
+ * {@link ExpressionNode}; since reductions happen in evaluation order, appending every
+ * new node to a list yields the post-order program as a by-product.
+ *
+ * Every token is first checked by an {@link ExpressionValidator}, so operands and
+ * operators must alternate ("2 3 +" is rejected rather than read as postfix) and syntax
+ * errors are reported exactly as {@link CalculatorModel#validate} reports them.
+ */
+final class ExpressionCompiler {
+    private final ExpressionLexer lexer;
+    private final ExpressionValidator grammar;
+    private final String[] variables;
+    // Hash-conses the nodes built, if set
+    private final ExpressionPool pool;
+    private final Stack<ExpressionNode> nodes = new Stack<>();
+    // One entry per node on the stack: the position of the first token of its text
+    private final IntStack nodeStarts = new IntStack();
+    private final Stack<OperatorDefinition> operators = new Stack<>();
+    private final IntStack operatorPositions = new IntStack();
+    // One entry per open parenthesis: number of comma-separated arguments seen so far
+    private final IntStack argumentCounts = new IntStack();
+    private final List<ExpressionNode> program = new ArrayList<>();
+    // Source position of each program entry's literal, name or operator
+    private final IntStack positions = new IntStack();
+    private int maxStackDepth;
+    private int tokens;
+    private int reductions;
+    // Phase timings, only taken while a Parse event is being recorded
+    private boolean timed;
+    private long tokenizationNanos;
+    private long reductionNanos;
+
+    // Set by reduce() when the operator on top of the stack cannot be applied
+    private ErrorCode error;
+    private int errorPosition;
+    // Set when every token was accepted but the text ended too early
+    private boolean incomplete;
+
+    private ExpressionCompiler(CharSequence expression, String[] variables, OperatorRegistry registry,
+                               EvaluationLimits limits, ExpressionPool pool) {
+        this.lexer = new ExpressionLexer(expression, true, registry);
+        this.grammar = new ExpressionValidator(expression.length(), variables, limits);
+        this.variables = variables;
+        this.pool = pool;
+    }
+
+    // variables[i] is bound to slot i; any other name is an UNKNOWN_VARIABLE error
+    static CompiledExpression compile(CharSequence expression, String[] variables) {
+        return compile(expression, variables, OperatorRegistry.DEFAULT, EvaluationLimits.UNLIMITED, null);
+    }
+
+    static CompiledExpression compile(CharSequence expression, String[] variables, ExpressionPool pool) {
+        return compile(expression, variables, OperatorRegistry.DEFAULT, EvaluationLimits.UNLIMITED, pool);
+    }
+
+    /**
+     * Custom operators are resolved here, and each node applying one holds its definition.
+     * The length, token and nesting limits are enforced here; the others when evaluating.
+     */
+    static CompiledExpression compile(CharSequence expression, String[] variables, OperatorRegistry registry,
+                                      EvaluationLimits limits, ExpressionPool pool) {
+        if (expression.length() > limits.getMaxLength()) {
+            // Checked before the text is copied, so an oversized input costs nothing
+            return new CompiledExpression("", variables, ErrorCode.EXPRESSION_TOO_LONG, limits.getMaxLength());
+        }
+        String source = expression.toString();
+        ExpressionCompiler compiler = new ExpressionCompiler(expression, variables, registry, limits, pool);
+        ModelEvents.Parse event = new ModelEvents.Parse();
+        compiler.timed = event.isEnabled();
+        event.begin();
+        ExpressionNode root = compiler.parse();
+        if (event.shouldCommit()) {
+            event.expressionLength = source.length();
+            event.tokenCount = compiler.tokens;
+            event.reductions = compiler.reductions;
+            event.tokenizationTime = compiler.tokenizationNanos;
+            event.reductionTime = compiler.reductionNanos;
+            event.error = root == null ? compiler.error.name() : null;
+            event.commit();
+        }
+        if (root == null) {
+            return new CompiledExpression(source, variables, compiler.error, compiler.errorPosition, compiler.incomplete);
+        }
+        return new CompiledExpression(source, variables, root,
+            compiler.program.toArray(new ExpressionNode[0]), compiler.positions.toArray(), compiler.maxStackDepth);
+    }
+
+    // Returns the root node, or null with error/errorPosition set
+    private ExpressionNode parse() {
+        for (ExpressionLexer.TokenType type = nextToken(); type != ExpressionLexer.TokenType.END; type = nextToken()) {
+            tokens++;
+            // Also enforces the token, nesting and variable rules, so the cases below only build nodes
+            if (!grammar.accept(type, lexer)) {
+                return fail(grammar.errorCode(), grammar.errorPosition());
+            }
+
+            switch (type) {
+                case NUMBER:
+                    push(ExpressionNode.constant(lexer.number()), lexer.tokenStart(), lexer.tokenStart());
+                    break;
+                case VARIABLE:
+                    int slot = lexer.indexIn(variables);
+                    push(ExpressionNode.variable(variables[slot], slot), lexer.tokenStart(), lexer.tokenStart());
+                    break;
+                case FUNCTION:
+                case LEFT_PARENTHESIS:
+                    operators.push(lexer.definition());
+                    operatorPositions.push(lexer.tokenStart());
+                    if (type == ExpressionLexer.TokenType.LEFT_PARENTHESIS) {
+                        argumentCounts.push(1);
+                    }
+                    break;
+                case COMMA:
+                    while (!operators.isEmpty() && operators.peek() != Operator.LEFT_PARENTHESIS) {
+                        if (!reduce()) return null;
+                    }
+                    if (operators.isEmpty()) {
+                        return fail(ErrorCode.MISPLACED_COMMA, lexer.tokenStart());
+                    }
+                    argumentCounts.incrementTop();
+                    break;
+                case RIGHT_PARENTHESIS:
+                    while (!operators.isEmpty() && operators.peek() != Operator.LEFT_PARENTHESIS) {
+                        if (!reduce()) return null;
+                    }
+                    if (operators.isEmpty()) {
+                        return fail(ErrorCode.MISMATCHED_PARENTHESES, lexer.tokenStart());
+                    }
+                    operators.pop(); // Remove the left parenthesis
+                    int parenthesis = operatorPositions.pop();
+                    int arguments = argumentCounts.pop();
+                    if (!operators.isEmpty() && operators.peek().isFunction()) {
+                        if (arguments != operators.peek().getArity()) {
+                            return fail(ErrorCode.WRONG_ARGUMENT_COUNT, operatorPositions.peek());
+                        }
+                        if (!reduce()) return null;
+                    } else if (arguments != 1) {
+                        return fail(ErrorCode.MISPLACED_COMMA, parenthesis);
+                    }
+                    break;
+                case OPERATOR:
+                    OperatorDefinition op = lexer.definition();
+                    // Prefix operators bind to what follows, so they never reduce the stack
+                    if (op.getArity() == 2) {
+                        while (!operators.isEmpty() && operators.peek() != Operator.LEFT_PARENTHESIS &&
+                               (op.getPrecedence() < operators.peek().getPrecedence() ||
+                                (op.getPrecedence() == operators.peek().getPrecedence() && op.isLeftAssociative()))) {
+                            if (!reduce()) return null;
+                        }
+                    }
+                    operators.push(op);
+                    operatorPositions.push(lexer.tokenStart());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        incomplete = true;
+        if (!grammar.finish()) {
+            return fail(grammar.errorCode(), grammar.errorPosition());
+        }
+
+        // Process remaining operators
+        while (!operators.isEmpty()) {
+            if (operators.peek() == Operator.LEFT_PARENTHESIS || operators.peek().isFunction()) {
+                return fail(ErrorCode.MISMATCHED_PARENTHESES, operatorPositions.peek());
+            }
+            if (!reduce()) return null;
+        }
+
+        if (nodes.isEmpty()) {
+            return fail(ErrorCode.EMPTY_EXPRESSION, 0);
+        }
+        if (nodes.size() != 1) {
+            // Not reached once the grammar has accepted the text; reported at the first surplus operand
+            incomplete = false;
+            return fail(ErrorCode.TOO_MANY_OPERANDS, nodeStarts.get(1));
+        }
+        return nodes.pop();
+    }
+
+    private ExpressionLexer.TokenType nextToken() {
+        if (!timed) {
+            return lexer.next();
+        }
+        long start = System.nanoTime();
+        ExpressionLexer.TokenType type = lexer.next();
+        tokenizationNanos += System.nanoTime() - start;
+        return type;
+    }
+
+    private boolean reduce() {
+        reductions++;
+        if (!timed) {
+            return reduceTop();
+        }
+        long start = System.nanoTime();
+        boolean reduced = reduceTop();
+        reductionNanos += System.nanoTime() - start;
+        return reduced;
+    }
+
+    // Pop the top operator and combine as many operand nodes as it takes
+    private boolean reduceTop() {
+        OperatorDefinition op = operators.pop();
+        int position = operatorPositions.pop();
+        if (nodes.size() < op.getArity()) {
+            fail(ErrorCode.MISSING_OPERAND, position);
+            return false;
+        }
+        if (op instanceof CustomOperator) {
+            ExpressionNode[] operands = new ExpressionNode[op.getArity()];
+            for (int i = operands.length - 1; i >= 0; i--) {
+                operands[i] = popNode();
+            }
+            push(ExpressionNode.custom((CustomOperator) op, operands), position, position);
+        } else if (op.getArity() == 1) {
+            push(ExpressionNode.unary((Operator) op, popNode()), position, position);
+        } else {
+            ExpressionNode right = popNode();
+            // Infix operators start with their left operand
+            int start = nodeStarts.peek();
+            ExpressionNode left = popNode();
+            push(ExpressionNode.binary((Operator) op, left, right), position, start);
+        }
+        return true;
+    }
+
+    // position is that of the node's own token, start that of the first token of its text
+    private void push(ExpressionNode node, int position, int start) {
+        if (pool != null) {
+            node = pool.intern(node);
+        }
+        nodes.push(node);
+        nodeStarts.push(start);
+        program.add(node);
+        positions.push(position);
+        maxStackDepth = Math.max(maxStackDepth, nodes.size());
+    }
+
+    private ExpressionNode popNode() {
+        nodeStarts.pop();
+        return nodes.pop();
+    }
+
+    private ExpressionNode fail(ErrorCode code, int position) {
+        error = code;
+        errorPosition = position;
+        return null;
+    }
+}
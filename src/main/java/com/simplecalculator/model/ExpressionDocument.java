@@ -0,0 +1,1007 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An editable expression that is re-parsed and re-evaluated incrementally, for long
+ * expressions that change a little at a time (typing, backspace, inserting in the
+ * middle). Results are those of {@link CalculatorModel#evaluate} in the document's
+ * {@link NumericMode}: the same value and scale, and the same error and position.
+ *
+ * The text is kept split at its top-level binary '+' and '-' into terms, each compiled on
+ * its own (through the {@link ExpressionPool}) and evaluated at most once; since addition
+ * and subtraction are exact, the value is the sum of the terms' values, whatever the
+ * grouping. Terms are held in blocks of up to {@value #MAX_BLOCK} that cache their
+ * partial sums. An edit re-lexes from the term before the change until the tokens line
+ * up again with an old term boundary (usually one or two terms on); only the terms in
+ * between are compiled again, and only their blocks are summed again.
+ *
+ * A parenthesized group with at least {@value #MIN_GROUP} characters inside is kept the
+ * same way, as a sequence of terms of its own: its term is compiled with the group
+ * replaced by a variable, bound to the group's cached value. An edit inside a group
+ * that adds or removes no parenthesis is handled within the group, and re-lexing a term
+ * reuses the groups it did not touch, so products and nested groups are not compiled
+ * again as a whole either. Edits and evaluations therefore cost time in proportion to
+ * the damaged terms plus the number of blocks, not to the length of the expression.
+ *
+ * The split is kept while the text has syntax errors. Each term reports its own error
+ * and the document reports the one the whole text would: the first error a token
+ * causes, else the one at the end of the text. A '(' that nothing closes stays in its
+ * term; only a ')' that closes a '(' of an earlier term (or the reverse) changes the
+ * split, and re-lexes the terms in between. Text over the length, token or nesting
+ * limits is compiled whole, as is a misplaced comma that may belong to an open call.
+ *
+ * With custom infix operators whose precedence is not above '+', the text is kept whole,
+ * and so it is in {@link NumericMode#RATIONAL}, where only the final value is rounded
+ * and rounded terms would not add up to it. Not thread-safe.
+ */
+public final class ExpressionDocument {
+    private static final int MAX_BLOCK = 128;
+    private static final int MIN_GROUP = 64;
+    // Groups nested deeper than this stay in the text of their term
+    private static final int MAX_GROUP_LEVEL = 32;
+    private static final String[] NO_VARIABLES = new String[0];
+    private static final BigDecimal[] NO_BINDINGS = new BigDecimal[0];
+    private static final Group[] NO_GROUPS = new Group[0];
+
+    private final NumericMode mode;
+    private final OperatorRegistry registry;
+    private final EvaluationLimits limits;
+    private final boolean splitting;
+    private final StringBuilder text = new StringBuilder();
+    private final Sequence root = new Sequence(0);
+    private EvaluationResult result;
+    private int reparsedTerms;
+
+    // A syntax error, at a position relative to the start of the term or sequence it was found in
+    private static final class Fault {
+        final ErrorCode code;
+        final int position;
+        // Only the end of the text is at fault (see CompiledExpression.isIncomplete)
+        final boolean incomplete;
+
+        Fault(ErrorCode code, int position, boolean incomplete) {
+            this.code = code;
+            this.position = position;
+            this.incomplete = incomplete;
+        }
+    }
+
+    // A parenthesized group kept as a sequence of its own
+    private static final class Group {
+        // Offset of the '(' within the term, and length including both parentheses
+        int start;
+        int length;
+        final Sequence inner;
+
+        Group(int start, int length, Sequence inner) {
+            this.start = start;
+            this.length = length;
+            this.inner = inner;
+        }
+    }
+
+    // A top-level '+' or '-' (none for the first term) and the operand text after it
+    private final class Term {
+        int length;
+        // Offset of the operand text within the term
+        final int operand;
+        final boolean negative;
+        // Tokens outside the groups, counting their parentheses
+        final int ownTokens;
+        int tokens;
+        // ')' that close nothing in the term, and '(' still open at its end
+        final int strays;
+        final int unclosed;
+        final int depth;
+        final Group[] groups;
+        // The variables standing for the groups in the compiled text
+        final String[] placeholders;
+        CompiledExpression compiled;
+        Fault fault;
+        // Cached unless the evaluation timed out or was cancelled
+        EvaluationResult value;
+
+        Term(int length, int operand, boolean negative, int ownTokens, int strays, int unclosed, int depth,
+             Group[] groups, String[] placeholders) {
+            this.length = length;
+            this.operand = operand;
+            this.negative = negative;
+            this.ownTokens = ownTokens;
+            this.strays = strays;
+            this.unclosed = unclosed;
+            this.depth = depth;
+            this.groups = groups;
+            this.placeholders = placeholders;
+            countTokens();
+        }
+
+        void countTokens() {
+            tokens = ownTokens;
+            for (Group group : groups) {
+                tokens += group.inner.tokens();
+            }
+        }
+
+        // The compiled text's error, or else the first error inside a group
+        void findFault() {
+            Fault found = null;
+            if (!compiled.isValid()) {
+                ErrorCode code = compiled.getErrorCode();
+                int position = compiled.getErrorPosition();
+                if (code == ErrorCode.EMPTY_EXPRESSION && operand > 0) {
+                    // Nothing after the sign, which the whole text reports as its last operator
+                    found = new Fault(ErrorCode.MISSING_OPERAND, 0, true);
+                } else {
+                    found = new Fault(code, position < 0 ? -1 : operand + textOffset(position), compiled.isIncomplete());
+                }
+            }
+            for (Group group : groups) {
+                Fault inner = group.inner.fault();
+                if (inner == null) {
+                    continue;
+                }
+                // A group that ends too early fails at its ')', as in the whole text
+                Fault mapped = inner.incomplete
+                    ? new Fault(inner.code == ErrorCode.EXPECTED_PARENTHESIS ? inner.code : ErrorCode.MISSING_OPERAND,
+                        group.start + group.length - 1, false)
+                    : new Fault(inner.code, group.start + 1 + inner.position, false);
+                if (found == null || found.incomplete || mapped.position < found.position) {
+                    found = mapped;
+                }
+                break;
+            }
+            fault = found;
+        }
+
+        // The value of the operand (positions relative to the term), or null to evaluate the whole text
+        EvaluationResult value(EvaluationGuard guard) {
+            if (value != null) {
+                return value;
+            }
+            BigDecimal[] bindings = NO_BINDINGS;
+            EvaluationResult[] inner = null;
+            if (groups.length > 0) {
+                bindings = new BigDecimal[groups.length];
+                inner = new EvaluationResult[groups.length];
+                for (int i = 0; i < groups.length; i++) {
+                    inner[i] = groups[i].inner.value(guard);
+                    if (inner[i] == null) {
+                        return null;
+                    }
+                    // Left unbound on failure: the compiled text reports whichever fails first
+                    bindings[i] = inner[i].isSuccess() ? inner[i].getValue() : null;
+                }
+            }
+            EvaluationResult evaluated = compiled.evaluate(mode, guard, bindings);
+            if (!evaluated.isSuccess() && evaluated.getPosition() >= 0) {
+                int group = evaluated.getErrorCode() == ErrorCode.UNBOUND_VARIABLE ? groupAt(evaluated.getPosition()) : -1;
+                if (group >= 0) {
+                    EvaluationResult failed = inner[group];
+                    int position = failed.getPosition() < 0 ? -1 : groups[group].start + 1 + failed.getPosition();
+                    evaluated = EvaluationResult.failure(failed.getErrorCode(), position);
+                } else {
+                    evaluated = EvaluationResult.failure(evaluated.getErrorCode(),
+                        operand + textOffset(evaluated.getPosition()));
+                }
+            }
+            ErrorCode error = evaluated.isSuccess() ? null : evaluated.getErrorCode();
+            if (error != ErrorCode.TIMEOUT && error != ErrorCode.CANCELLED) {
+                value = evaluated;
+            }
+            return evaluated;
+        }
+
+        // Maps a position in the compiled text to one in the operand text
+        private int textOffset(int position) {
+            int shift = 0;
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i].start - operand - shift >= position) {
+                    break;
+                }
+                shift += groups[i].length - 2 - placeholders[i].length();
+            }
+            return position + shift;
+        }
+
+        // The group whose placeholder is at a position in the compiled text, or -1
+        private int groupAt(int position) {
+            int shift = 0;
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i].start - operand - shift + 1 == position) {
+                    return i;
+                }
+                shift += groups[i].length - 2 - placeholders[i].length();
+            }
+            return -1;
+        }
+    }
+
+    private static final class Block {
+        final List<Term> terms = new ArrayList<>();
+        int length;
+        int tokens;
+        // Terms whose error a token causes, and terms that only end too early
+        int broken;
+        int incomplete;
+        int unclosed;
+        int strays;
+        int depth;
+        // Sum of the terms' signed values, or null if not computed since the last change
+        BigDecimal sum;
+
+        void update() {
+            length = 0;
+            tokens = 0;
+            broken = 0;
+            incomplete = 0;
+            unclosed = 0;
+            strays = 0;
+            depth = 0;
+            for (Term term : terms) {
+                length += term.length;
+                tokens += term.tokens;
+                if (term.fault != null) {
+                    if (term.fault.incomplete) {
+                        incomplete++;
+                    } else {
+                        broken++;
+                    }
+                }
+                unclosed += term.unclosed;
+                strays += term.strays > 0 ? 1 : 0;
+                depth = Math.max(depth, term.depth);
+            }
+            sum = null;
+        }
+    }
+
+    // Terms summed: the whole text, or the inside of a group
+    private final class Sequence {
+        final int level;
+        final List<Block> blocks = new ArrayList<>();
+        // Cached results, reset by every edit inside
+        EvaluationResult value;
+        Fault fault;
+        boolean faultFound;
+
+        Sequence(int level) {
+            this.level = level;
+        }
+
+        int length() {
+            int length = 0;
+            for (Block block : blocks) {
+                length += block.length;
+            }
+            return length;
+        }
+
+        int tokens() {
+            int tokens = 0;
+            for (Block block : blocks) {
+                tokens += block.tokens;
+            }
+            return tokens;
+        }
+
+        int depth() {
+            int depth = 0;
+            for (Block block : blocks) {
+                depth = Math.max(depth, block.depth);
+            }
+            return depth;
+        }
+
+        int unclosed() {
+            int unclosed = 0;
+            for (Block block : blocks) {
+                unclosed += block.unclosed;
+            }
+            return unclosed;
+        }
+
+        // Splits text[base, end) into terms
+        void build(int base, int end) {
+            OldTerms none = new OldTerms(blocks, 0, 0, base, end, 0);
+            List<Term> terms = split(base, base, end, base, none, new OldGroups(blocks, 0, 0, base, end, end, 0), -1, false);
+            splice(0, 0, 0, terms);
+        }
+
+        // Applies an edit of the text within [base, base + length()) and updates the terms
+        void edit(int base, int offset, int removed, CharSequence replacement) {
+            value = null;
+            faultFound = false;
+            if (!blocks.isEmpty()) {
+                int[] location = locate(offset - base);
+                Block block = blocks.get(location[0]);
+                Term term = block.terms.get(location[1]);
+                int termStart = base + location[2];
+                for (int i = 0; i < term.groups.length; i++) {
+                    Group group = term.groups[i];
+                    int innerStart = termStart + group.start + 1;
+                    if (offset >= innerStart && offset + removed < termStart + group.start + group.length
+                            && !hasParenthesis(text, offset, offset + removed) && !hasParenthesis(replacement, 0, replacement.length())) {
+                        int delta = replacement.length() - removed;
+                        group.inner.edit(innerStart, offset, removed, replacement);
+                        group.length += delta;
+                        for (int j = i + 1; j < term.groups.length; j++) {
+                            term.groups[j].start += delta;
+                        }
+                        term.length += delta;
+                        term.countTokens();
+                        term.value = null;
+                        term.findFault();
+                        block.update();
+                        return;
+                    }
+                }
+            }
+            relex(base, offset, removed, replacement);
+        }
+
+        // Re-lexes from the start of the term before the one containing the edit
+        private void relex(int base, int offset, int removed, CharSequence replacement) {
+            int end = base + length();
+            int blockIndex = 0;
+            int termIndex = 0;
+            int regionStart = base;
+            int lastStray = -1;
+            int[] unclosed = null;
+            if (!blocks.isEmpty()) {
+                int[] location = locate(offset - base);
+                blockIndex = location[0];
+                termIndex = location[1];
+                regionStart = base + location[2];
+                if (termIndex > 0) {
+                    termIndex--;
+                    regionStart -= blocks.get(blockIndex).terms.get(termIndex).length;
+                } else if (blockIndex > 0) {
+                    blockIndex--;
+                    termIndex = blocks.get(blockIndex).terms.size() - 1;
+                    regionStart -= blocks.get(blockIndex).terms.get(termIndex).length;
+                }
+                lastStray = lastStray(base);
+                unclosed = firstUnclosed(blockIndex, termIndex);
+            }
+            text.replace(offset, offset + removed, replacement.toString());
+            int delta = replacement.length() - removed;
+            end += delta;
+            int damageEnd = offset + replacement.length();
+
+            // Old terms from the region start on, by their start in the edited text
+            OldTerms old = new OldTerms(blocks, blockIndex, termIndex, regionStart, offset + removed, delta);
+            OldGroups reusable = new OldGroups(blocks, blockIndex, termIndex, regionStart, offset, offset + removed, delta);
+            List<Term> terms = split(base, regionStart, end, damageEnd, old, reusable, lastStray, unclosed != null);
+            if (terms == null) {
+                // A ')' typed here closes a '(' of an earlier term: re-lex from that term
+                blockIndex = unclosed[0];
+                termIndex = unclosed[1];
+                regionStart = base + unclosed[2];
+                old = new OldTerms(blocks, blockIndex, termIndex, regionStart, offset + removed, delta);
+                reusable = new OldGroups(blocks, blockIndex, termIndex, regionStart, offset, offset + removed, delta);
+                terms = split(base, regionStart, end, damageEnd, old, reusable, lastStray, false);
+            }
+            if (!old.converged) {
+                old.consumeRest();
+            }
+            splice(blockIndex, termIndex, old.consumed, terms);
+        }
+
+        /**
+         * Splits text[regionStart, end) into terms, stopping where an old term past damageEnd
+         * starts. Past an unclosed '(' that is only allowed if no old term from there on has a
+         * stray ')' that could close it. Returns null (when restartable) at a stray ')', which
+         * may close a '(' of an earlier term.
+         */
+        private List<Term> split(int base, int regionStart, int end, int damageEnd, OldTerms old, OldGroups reusable,
+                                 int lastStray, boolean restartable) {
+            List<Term> terms = new ArrayList<>();
+            int from = regionStart;
+            ExpressionLexer lexer = lexer(from, end, regionStart > base);
+            ExpressionLexer.TokenType previous = null;
+            int depth = 0;
+            int termStart = regionStart;
+            int operand = 0;
+            boolean negative = false;
+            int tokens = 0;
+            int strays = 0;
+            int maxDepth = 0;
+            List<Group> groups = new ArrayList<>();
+            List<String> names = null;
+            for (ExpressionLexer.TokenType type = lexer.next(); type != ExpressionLexer.TokenType.END; type = lexer.next()) {
+                int start = from + lexer.tokenStart();
+                Operator op = lexer.operator();
+                if (op == Operator.ADD || op == Operator.SUBTRACT) {
+                    if (start > termStart && start >= damageEnd && old.skipTo(start)
+                            && (depth == 0 || old.oldStart > lastStray)) {
+                        old.converged = true;
+                        break; // the old terms from here on are still valid
+                    }
+                    if (depth == 0) {
+                        if (start > termStart) {
+                            terms.add(term(termStart, start - termStart, operand, negative, tokens, strays, 0, maxDepth,
+                                groups, names));
+                            termStart = start;
+                            tokens = 0;
+                            strays = 0;
+                            maxDepth = 0;
+                            groups = new ArrayList<>();
+                            names = null;
+                        }
+                        negative = op == Operator.SUBTRACT;
+                        operand = from + lexer.tokenEnd() - termStart;
+                    }
+                } else if (type == ExpressionLexer.TokenType.LEFT_PARENTHESIS) {
+                    Group group = depth == 0 && previous != ExpressionLexer.TokenType.FUNCTION
+                        ? group(start, end, reusable) : null;
+                    if (group != null) {
+                        // Lexing goes on after the group, which the parentheses keep apart from its surroundings
+                        group.start = start - termStart;
+                        groups.add(group);
+                        tokens += 2;
+                        maxDepth = Math.max(maxDepth, 1 + group.inner.depth());
+                        from = start + group.length;
+                        lexer = lexer(from, end, true);
+                        previous = ExpressionLexer.TokenType.RIGHT_PARENTHESIS;
+                        continue;
+                    }
+                    depth++;
+                    maxDepth = Math.max(maxDepth, depth);
+                } else if (type == ExpressionLexer.TokenType.RIGHT_PARENTHESIS) {
+                    if (depth > 0) {
+                        depth--;
+                    } else if (restartable) {
+                        return null;
+                    } else {
+                        strays++;
+                    }
+                } else if (type == ExpressionLexer.TokenType.VARIABLE) {
+                    if (names == null) {
+                        names = new ArrayList<>();
+                    }
+                    names.add(text.substring(start, from + lexer.tokenEnd()));
+                }
+                previous = type;
+                tokens++;
+            }
+            int regionEnd = old.converged ? old.oldStart + old.delta : end;
+            if (regionEnd > termStart) {
+                terms.add(term(termStart, regionEnd - termStart, operand, negative, tokens, strays, depth, maxDepth,
+                    groups, names));
+            }
+            return terms;
+        }
+
+        // The group opened by the '(' at open: one reused from before the edit, or a new one if it is long enough
+        private Group group(int open, int end, OldGroups reusable) {
+            if (level >= MAX_GROUP_LEVEL) {
+                return null;
+            }
+            Group old = reusable.take(open);
+            if (old != null) {
+                return new Group(0, old.length, old.inner);
+            }
+            int close = closing(open, end);
+            if (close < 0 || close - open - 1 < MIN_GROUP) {
+                return null;
+            }
+            Sequence inner = new Sequence(level + 1);
+            inner.build(open + 1, close);
+            return new Group(0, close - open + 1, inner);
+        }
+
+        // Compiles a term lexed at termStart
+        private Term term(int termStart, int length, int operand, boolean negative, int ownTokens, int strays,
+                          int unclosed, int depth, List<Group> groups, List<String> names) {
+            Group[] grouped = groups.isEmpty() ? NO_GROUPS : groups.toArray(new Group[0]);
+            String[] placeholders = placeholders(grouped.length, names);
+            Term term = new Term(length, operand, negative, ownTokens, strays, unclosed, depth, grouped, placeholders);
+            StringBuilder source = new StringBuilder();
+            int from = termStart + operand;
+            for (int i = 0; i < grouped.length; i++) {
+                int open = termStart + grouped[i].start;
+                source.append(text, from, open + 1).append(placeholders[i]);
+                from = open + grouped[i].length - 1;
+            }
+            source.append(text, from, termStart + length);
+            term.compiled = ExpressionPool.shared().compile(source, registry, limits, placeholders);
+            term.findFault();
+            reparsedTerms++;
+            return term;
+        }
+
+        /**
+         * The error the text of this sequence has on its own, relative to its start: the first
+         * error a token causes, else the last term's own ending, else the innermost '(' left open.
+         */
+        Fault fault() {
+            if (!faultFound) {
+                fault = findFault();
+                faultFound = true;
+            }
+            return fault;
+        }
+
+        private Fault findFault() {
+            if (blocks.isEmpty()) {
+                return new Fault(ErrorCode.EMPTY_EXPRESSION, 0, true);
+            }
+            int blockStart = 0;
+            for (Block block : blocks) {
+                if (block.broken > 0) {
+                    int termStart = blockStart;
+                    for (Term term : block.terms) {
+                        if (term.fault != null && !term.fault.incomplete) {
+                            return new Fault(term.fault.code, shift(term.fault.position, termStart), false);
+                        }
+                        termStart += term.length;
+                    }
+                }
+                blockStart += block.length;
+            }
+            Block lastBlock = blocks.get(blocks.size() - 1);
+            Term last = lastBlock.terms.get(lastBlock.terms.size() - 1);
+            if (last.fault != null && last.fault.code != ErrorCode.MISMATCHED_PARENTHESES) {
+                return new Fault(last.fault.code, shift(last.fault.position, blockStart - last.length), true);
+            }
+            for (int b = blocks.size() - 1; b >= 0; b--) {
+                Block block = blocks.get(b);
+                blockStart -= block.length;
+                if (block.incomplete > 0) {
+                    int termStart = blockStart + block.length;
+                    for (int t = block.terms.size() - 1; t >= 0; t--) {
+                        Term term = block.terms.get(t);
+                        termStart -= term.length;
+                        if (term.fault != null) {
+                            return new Fault(term.fault.code, shift(term.fault.position, termStart), true);
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * The sum of the terms, with error positions relative to the start of the sequence;
+         * null if the whole text must be evaluated instead. Only valid without a fault().
+         */
+        EvaluationResult value(EvaluationGuard guard) {
+            if (value != null) {
+                return value;
+            }
+            BigDecimal total = null;
+            int blockStart = 0;
+            for (Block block : blocks) {
+                if (block.sum == null) {
+                    int termStart = blockStart;
+                    BigDecimal sum = null;
+                    for (Term term : block.terms) {
+                        EvaluationResult evaluated = term.value(guard);
+                        if (evaluated == null) {
+                            return null;
+                        }
+                        if (!evaluated.isSuccess()) {
+                            return EvaluationResult.failure(evaluated.getErrorCode(), shift(evaluated.getPosition(), termStart));
+                        }
+                        BigDecimal signed = term.negative ? evaluated.getValue().negate() : evaluated.getValue();
+                        sum = sum == null ? signed : sum.add(signed);
+                        termStart += term.length;
+                    }
+                    block.sum = sum;
+                }
+                total = total == null ? block.sum : total.add(block.sum);
+                blockStart += block.length;
+            }
+            if (guard.check(total) != null) {
+                // Which operator went over the limit depends on the grouping; ask the whole text
+                return null;
+            }
+            return value = EvaluationResult.success(total);
+        }
+
+        // Block index, term index and start offset of the term containing offset (the last term at the end)
+        private int[] locate(int offset) {
+            int start = 0;
+            for (int b = 0; b < blocks.size(); b++) {
+                Block block = blocks.get(b);
+                boolean last = b == blocks.size() - 1;
+                if (offset < start + block.length || last) {
+                    for (int t = 0; t < block.terms.size(); t++) {
+                        Term term = block.terms.get(t);
+                        if (offset < start + term.length || t == block.terms.size() - 1) {
+                            return new int[] {b, t, start};
+                        }
+                        start += term.length;
+                    }
+                }
+                start += block.length;
+            }
+            throw new IllegalStateException("no terms");
+        }
+
+        // Start of the last term with a stray ')', or -1
+        private int lastStray(int base) {
+            int blockStart = base + length();
+            for (int b = blocks.size() - 1; b >= 0; b--) {
+                Block block = blocks.get(b);
+                blockStart -= block.length;
+                if (block.strays > 0) {
+                    int termStart = blockStart + block.length;
+                    for (int t = block.terms.size() - 1; t >= 0; t--) {
+                        termStart -= block.terms.get(t).length;
+                        if (block.terms.get(t).strays > 0) {
+                            return termStart;
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // Block index, term index and start offset of the first term with an unclosed '(' before the given one, or null
+        private int[] firstUnclosed(int blockIndex, int termIndex) {
+            int start = 0;
+            for (int b = 0; b <= blockIndex; b++) {
+                Block block = blocks.get(b);
+                if (block.unclosed > 0) {
+                    int termStart = start;
+                    for (int t = 0; t < block.terms.size() && (b < blockIndex || t < termIndex); t++) {
+                        if (block.terms.get(t).unclosed > 0) {
+                            return new int[] {b, t, termStart};
+                        }
+                        termStart += block.terms.get(t).length;
+                    }
+                }
+                start += block.length;
+            }
+            return null;
+        }
+
+        // Replaces count terms from (blockIndex, termIndex) on with the new terms
+        private void splice(int blockIndex, int termIndex, int count, List<Term> replacement) {
+            if (blocks.isEmpty()) {
+                blocks.add(new Block());
+            }
+            blocks.get(blockIndex).terms.addAll(termIndex, replacement);
+            int b = blockIndex;
+            int t = termIndex + replacement.size();
+            while (count > 0) {
+                List<Term> terms = blocks.get(b).terms;
+                int removed = Math.min(count, terms.size() - t);
+                terms.subList(t, t + removed).clear();
+                count -= removed;
+                if (count > 0) {
+                    b++;
+                    t = 0;
+                }
+            }
+            // Rebalance the touched blocks, back to front so indexes stay valid
+            for (int i = b; i >= blockIndex; i--) {
+                Block block = blocks.get(i);
+                if (block.terms.isEmpty()) {
+                    blocks.remove(i);
+                    continue;
+                }
+                if (block.terms.size() < MAX_BLOCK / 4 && i + 1 < blocks.size()
+                        && block.terms.size() + blocks.get(i + 1).terms.size() <= MAX_BLOCK) {
+                    Block next = blocks.remove(i + 1);
+                    block.terms.addAll(next.terms);
+                }
+                // Split from the back, so the pieces end up in order after block i
+                while (block.terms.size() > MAX_BLOCK) {
+                    Block rest = new Block();
+                    List<Term> moved = block.terms.subList(block.terms.size() - MAX_BLOCK / 2, block.terms.size());
+                    rest.terms.addAll(moved);
+                    moved.clear();
+                    rest.update();
+                    blocks.add(i + 1, rest);
+                }
+                block.update();
+            }
+        }
+    }
+
+    public ExpressionDocument() {
+        this(OperatorRegistry.DEFAULT, EvaluationLimits.DEFAULT);
+    }
+
+    public ExpressionDocument(OperatorRegistry registry, EvaluationLimits limits) {
+        this(NumericMode.DECIMAL, registry, limits);
+    }
+
+    public ExpressionDocument(NumericMode mode, OperatorRegistry registry, EvaluationLimits limits) {
+        this.mode = mode;
+        this.registry = registry;
+        this.limits = limits;
+        boolean looser = false;
+        for (CustomOperator operator : registry.getOperators()) {
+            looser |= !operator.isFunction() && operator.getPrecedence() <= Operator.ADD.getPrecedence();
+        }
+        this.splitting = !looser && mode == NumericMode.DECIMAL;
+    }
+
+    public NumericMode getNumericMode() {
+        return mode;
+    }
+
+    public OperatorRegistry getOperatorRegistry() {
+        return registry;
+    }
+
+    public EvaluationLimits getLimits() {
+        return limits;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    // Terms re-lexed and compiled by the last edit, in groups too
+    public int getReparsedTerms() {
+        return reparsedTerms;
+    }
+
+    public void setText(CharSequence replacement) {
+        replace(0, text.length(), replacement);
+    }
+
+    public void insert(int offset, CharSequence inserted) {
+        replace(offset, 0, inserted);
+    }
+
+    public void append(CharSequence appended) {
+        replace(text.length(), 0, appended);
+    }
+
+    public void delete(int offset, int length) {
+        replace(offset, length, "");
+    }
+
+    /**
+     * Replaces {@code length} characters at {@code offset} with {@code replacement}.
+     * Throws IndexOutOfBoundsException if the range is not within the text.
+     */
+    public void replace(int offset, int length, CharSequence replacement) {
+        if (offset < 0 || length < 0 || offset > text.length() - length) {
+            throw new IndexOutOfBoundsException("range " + offset + "+" + length + " outside text of length " + text.length());
+        }
+        if (length == 0 && replacement.length() == 0) {
+            return;
+        }
+        result = null;
+        if (!splitting) {
+            text.replace(offset, offset + length, replacement.toString());
+            reparsedTerms = text.length() > 0 ? 1 : 0;
+            return;
+        }
+        reparsedTerms = 0;
+        root.edit(0, offset, length, replacement);
+    }
+
+    /**
+     * The value of the text in the document's mode, or its error. Only terms changed since the
+     * last call are evaluated; the result is cached until the next edit.
+     */
+    public EvaluationResult evaluate() {
+        if (result != null) {
+            return result;
+        }
+        if (!splitting || root.blocks.isEmpty() || text.length() > limits.getMaxLength()
+                || root.tokens() > limits.getMaxTokens() || root.depth() + root.unclosed() > limits.getMaxDepth()) {
+            return result = evaluateWhole();
+        }
+        Fault fault = root.fault();
+        if (fault != null) {
+            if (fault.code == ErrorCode.MISPLACED_COMMA && root.unclosed() > 0) {
+                // The comma may belong to a call left open in an earlier term
+                return result = evaluateWhole();
+            }
+            return result = EvaluationResult.failure(fault.code, fault.position);
+        }
+        EvaluationResult value = root.value(EvaluationGuard.start(limits));
+        return result = value != null ? value : evaluateWhole();
+    }
+
+    private EvaluationResult evaluateWhole() {
+        return ExpressionPool.shared().compile(text, registry, limits, NO_VARIABLES).evaluate(mode, limits);
+    }
+
+    private ExpressionLexer lexer(int start, int end, boolean afterOperand) {
+        ExpressionLexer lexer = new ExpressionLexer(new Range(text, start, end), false, registry);
+        if (afterOperand) {
+            lexer.continueAfterOperand();
+        }
+        return lexer;
+    }
+
+    // Offset of the ')' closing the '(' at open, or -1 if there is none before end. Parentheses
+    // are always tokens of their own, so no lexing is needed
+    private int closing(int open, int end) {
+        int depth = 0;
+        for (int i = open; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Variable names for the groups of a term, unlike its own names and the registry's functions
+    private String[] placeholders(int count, List<String> names) {
+        if (count == 0) {
+            return NO_VARIABLES;
+        }
+        String prefix = "g";
+        String[] placeholders = new String[count];
+        for (int i = 0; i < count; i++) {
+            placeholders[i] = prefix + i;
+            if ((names != null && names.contains(placeholders[i])) || registry.lookup(placeholders[i]) != null) {
+                prefix += "g";
+                i = -1;
+            }
+        }
+        return placeholders;
+    }
+
+    private static boolean hasParenthesis(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int shift(int position, int offset) {
+        return position < 0 ? -1 : offset + position;
+    }
+
+    // Walks the old terms from the start of the re-lexed region, to find where lexing can stop
+    private static final class OldTerms {
+        private final List<Block> blocks;
+        private final int unchangedFrom;
+        final int delta;
+        int block;
+        int term;
+        // Start of the current old term, in the text before the edit
+        int oldStart;
+        // Old terms passed so far, which the re-lexed terms replace
+        int consumed;
+        boolean converged;
+
+        OldTerms(List<Block> blocks, int block, int term, int oldStart, int unchangedFrom, int delta) {
+            this.blocks = blocks;
+            this.block = block;
+            this.term = term;
+            this.oldStart = oldStart;
+            this.unchangedFrom = unchangedFrom;
+            this.delta = delta;
+        }
+
+        // True if an old term past the edit starts at position (in the edited text)
+        boolean skipTo(int position) {
+            while (block < blocks.size()) {
+                if (oldStart >= unchangedFrom) {
+                    int start = oldStart + delta;
+                    if (start == position && consumed > 0) {
+                        return true;
+                    }
+                    if (start > position) {
+                        return false;
+                    }
+                }
+                advance();
+            }
+            return false;
+        }
+
+        void consumeRest() {
+            while (block < blocks.size()) {
+                advance();
+            }
+        }
+
+        private void advance() {
+            List<Term> terms = blocks.get(block).terms;
+            oldStart += terms.get(term).length;
+            consumed++;
+            if (++term == terms.size()) {
+                block++;
+                term = 0;
+            }
+        }
+    }
+
+    // Walks the groups of the old terms from the start of the re-lexed region, to reuse those the edit missed
+    private static final class OldGroups {
+        private final List<Block> blocks;
+        private final int editStart;
+        private final int editEnd;
+        private final int delta;
+        private int block;
+        private int term;
+        private int group;
+        private int termStart;
+
+        OldGroups(List<Block> blocks, int block, int term, int termStart, int editStart, int editEnd, int delta) {
+            this.blocks = blocks;
+            this.block = block;
+            this.term = term;
+            this.termStart = termStart;
+            this.editStart = editStart;
+            this.editEnd = editEnd;
+            this.delta = delta;
+        }
+
+        // The old group whose '(' is now at position, if its text was not edited
+        Group take(int position) {
+            while (block < blocks.size()) {
+                List<Term> terms = blocks.get(block).terms;
+                Term current = terms.get(term);
+                while (group < current.groups.length) {
+                    Group old = current.groups[group];
+                    int start = termStart + old.start;
+                    int now = start + old.length <= editStart ? start : start >= editEnd ? start + delta : -1;
+                    if (now > position) {
+                        return null;
+                    }
+                    group++;
+                    if (now == position) {
+                        return old;
+                    }
+                }
+                termStart += current.length;
+                group = 0;
+                if (++term == terms.size()) {
+                    block++;
+                    term = 0;
+                }
+            }
+            return null;
+        }
+    }
+
+    // The text from start to end, without copying it
+    private static final class Range implements CharSequence {
+        private final StringBuilder text;
+        private final int start;
+        private final int end;
+
+        Range(StringBuilder text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Character-level tokenizer for calculator expressions.
+ *
+ * Works as a cursor: {@link #next()} advances to the next token and the accessors describe
+ * the current one, so no token objects are created. Spaces between tokens are optional.
+ * A '-' in prefix position (start, after an operator, '(' or ',') is reported as
+ * {@link Operator#NEGATE}; a prefix '+' is skipped. A name that is not a function and is
+ * not followed by '(' is a {@link TokenType#VARIABLE}. Lexical errors are reported as an
+ * {@link TokenType#ERROR} token with an {@link ErrorCode}, never by throwing.
+ *
+ * Names and symbols registered in an {@link OperatorRegistry} are reported as FUNCTION and
+ * OPERATOR tokens whose {@link #definition()} is the {@link CustomOperator}; built-in names
+ * always win, and of several matching custom symbols the longest is taken.
+ */
+final class ExpressionLexer {
+
+    enum TokenType {
+        NUMBER,
+        OPERATOR,
+        FUNCTION,
+        VARIABLE,
+        LEFT_PARENTHESIS,
+        RIGHT_PARENTHESIS,
+        COMMA,
+        END,
+        ERROR
+    }
+
+    private final CharSequence input;
+    private final int length;
+    private final boolean parseNumbers;
+    private final OperatorRegistry registry;
+    private int position;
+
+    private TokenType type;
+    private int tokenStart;
+    private Operator operator;
+    private CustomOperator custom;
+    private BigDecimal number;
+    private ErrorCode errorCode;
+
+    ExpressionLexer(CharSequence input) {
+        this(input, true);
+    }
+
+    // With parseNumbers false, NUMBER tokens are only range-checked and number() is null
+    ExpressionLexer(CharSequence input, boolean parseNumbers) {
+        this(input, parseNumbers, OperatorRegistry.DEFAULT);
+    }
+
+    ExpressionLexer(CharSequence input, boolean parseNumbers, OperatorRegistry registry) {
+        this.input = input;
+        this.length = input.length();
+        this.parseNumbers = parseNumbers;
+        this.registry = registry;
+    }
+
+    TokenType next() {
+        while (true) {
+            skipWhitespace();
+            tokenStart = position;
+            operator = null;
+            custom = null;
+            number = null;
+
+            if (position >= length) {
+                return type = TokenType.END;
+            }
+
+            char c = input.charAt(position);
+            if (isDigit(c) || c == '.') {
+                if (!scanNumber()) {
+                    return fail(ErrorCode.MALFORMED_NUMBER);
+                }
+                if (parseNumbers) {
+                    number = DecimalLiterals.parse(input, tokenStart, position);
+                    if (number == null) {
+                        return fail(ErrorCode.NUMBER_OUT_OF_RANGE);
+                    }
+                } else if (!DecimalLiterals.isInRange(input, tokenStart, position)) {
+                    return fail(ErrorCode.NUMBER_OUT_OF_RANGE);
+                }
+                return type = TokenType.NUMBER;
+            }
+            if (Character.isLetter(c)) {
+                while (position < length && isNameChar(input.charAt(position))) {
+                    position++;
+                }
+                operator = Operator.functionNamed(input, tokenStart, position);
+                if (operator != null) {
+                    return type = TokenType.FUNCTION;
+                }
+                custom = registry.functionNamed(input, tokenStart, position);
+                if (custom != null) {
+                    operator = Operator.CUSTOM;
+                    return type = TokenType.FUNCTION;
+                }
+                if (isCall()) {
+                    return fail(ErrorCode.UNKNOWN_FUNCTION);
+                }
+                return type = TokenType.VARIABLE;
+            }
+
+            position++;
+            switch (c) {
+                case '(':
+                    operator = Operator.LEFT_PARENTHESIS;
+                    return type = TokenType.LEFT_PARENTHESIS;
+                case ')':
+                    operator = Operator.RIGHT_PARENTHESIS;
+                    return type = TokenType.RIGHT_PARENTHESIS;
+                case ',':
+                    return type = TokenType.COMMA;
+                case '+':
+                    if (isPrefixPosition()) {
+                        continue; // unary plus is a no-op
+                    }
+                    operator = Operator.ADD;
+                    return type = TokenType.OPERATOR;
+                case '-':
+                    operator = isPrefixPosition() ? Operator.NEGATE : Operator.SUBTRACT;
+                    return type = TokenType.OPERATOR;
+                case '*':
+                    operator = Operator.MULTIPLY;
+                    return type = TokenType.OPERATOR;
+                case '/':
+                    operator = Operator.DIVIDE;
+                    return type = TokenType.OPERATOR;
+                case '%':
+                    operator = Operator.MODULO;
+                    return type = TokenType.OPERATOR;
+                case '^':
+                    operator = Operator.POWER;
+                    return type = TokenType.OPERATOR;
+                default:
+                    custom = registry.infixAt(input, tokenStart);
+                    if (custom == null) {
+                        return fail(ErrorCode.UNEXPECTED_CHARACTER);
+                    }
+                    position = tokenStart + custom.getSymbol().length();
+                    operator = Operator.CUSTOM;
+                    return type = TokenType.OPERATOR;
+            }
+        }
+    }
+
+    // Reads a sign at the start of the input as binary, for input that continues after an operand
+    void continueAfterOperand() {
+        type = TokenType.NUMBER;
+    }
+
+    TokenType type() {
+        return type;
+    }
+
+    // Offset of the first character of the current token
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    // Offset just past the current token
+    int tokenEnd() {
+        return position;
+    }
+
+    // Operator.CUSTOM for a registered operator or function; see definition()
+    Operator operator() {
+        return operator;
+    }
+
+    // The current token's operator, built-in or custom
+    OperatorDefinition definition() {
+        return custom != null ? custom : operator;
+    }
+
+    // Set when operator() is Operator.CUSTOM
+    CustomOperator customOperator() {
+        return custom;
+    }
+
+    BigDecimal number() {
+        return number;
+    }
+
+    // Index of the current VARIABLE token's name in names, or -1; compares chars in place
+    int indexIn(String[] names) {
+        int tokenLength = position - tokenStart;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() != tokenLength) {
+                continue;
+            }
+            int j = 0;
+            while (j < tokenLength && name.charAt(j) == input.charAt(tokenStart + j)) {
+                j++;
+            }
+            if (j == tokenLength) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Set when the current token is ERROR
+    ErrorCode errorCode() {
+        return errorCode;
+    }
+
+    // Advances past digits[.digits][(e|E)[+|-]digits]; false if there were no digits
+    private boolean scanNumber() {
+        boolean digits = false;
+        while (position < length && isDigit(input.charAt(position))) {
+            position++;
+            digits = true;
+        }
+        if (position < length && input.charAt(position) == '.') {
+            position++;
+            while (position < length && isDigit(input.charAt(position))) {
+                position++;
+                digits = true;
+            }
+        }
+        if (!digits) {
+            return false;
+        }
+        if (position < length && (input.charAt(position) == 'e' || input.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < length && (input.charAt(exponent) == '+' || input.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            // Only an exponent if digits follow, otherwise leave the letter for the next token
+            if (exponent < length && isDigit(input.charAt(exponent))) {
+                position = exponent;
+                while (position < length && isDigit(input.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        return true;
+    }
+
+    // True if the name just scanned is followed by '(' (ignoring spaces)
+    private boolean isCall() {
+        int i = position;
+        while (i < length && Character.isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i < length && input.charAt(i) == '(';
+    }
+
+    // A sign is unary when it cannot follow an operand
+    private boolean isPrefixPosition() {
+        return type == null || type == TokenType.OPERATOR || type == TokenType.FUNCTION
+            || type == TokenType.LEFT_PARENTHESIS || type == TokenType.COMMA;
+    }
+
+    private void skipWhitespace() {
+        while (position < length && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Names start with a letter and continue with letters, digits or '_'
+    private static boolean isNameChar(char c) {
+        return Character.isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private TokenType fail(ErrorCode code) {
+        errorCode = code;
+        return type = TokenType.ERROR;
+    }
+}
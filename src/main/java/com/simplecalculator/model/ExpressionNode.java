@@ -0,0 +1,152 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable node of a compiled expression tree: a constant, a variable, or an
+ * {@link Operator} applied to one or two operand nodes. Variables are resolved to a slot
+ * index when the expression is compiled, so evaluation reads {@code bindings[slot]}
+ * instead of looking the name up. Nodes carry no source positions, so one node can stand
+ * for identical subexpressions anywhere in any text (see {@link ExpressionPool}); the
+ * positions that errors point to are kept by {@link CompiledExpression}, per program entry.
+ *
+ * A node applying a {@link CustomOperator} has the operator {@link Operator#CUSTOM} and
+ * holds the definition, so evaluators only need one extra case for all custom operators.
+ */
+public final class ExpressionNode {
+    private static final ExpressionNode[] NO_OPERANDS = new ExpressionNode[0];
+
+    private final Operator operator;
+    private final CustomOperator custom;
+    private final BigDecimal value;
+    // The constant's unscaled value if it fits in a long (see CompactDecimal), else OVERFLOW
+    private final long compactValue;
+    private final ExpressionNode[] operands;
+    private final String name;
+    private final int slot;
+    private final int size;
+
+    private ExpressionNode(Operator operator, BigDecimal value, ExpressionNode[] operands,
+                           String name, int slot) {
+        this(operator, null, value, operands, name, slot);
+    }
+
+    private ExpressionNode(Operator operator, CustomOperator custom, BigDecimal value, ExpressionNode[] operands,
+                           String name, int slot) {
+        this.operator = operator;
+        this.custom = custom;
+        this.value = value;
+        this.compactValue = CompactDecimal.of(value);
+        this.operands = operands;
+        this.name = name;
+        this.slot = slot;
+        int nodes = 1;
+        for (ExpressionNode operand : operands) {
+            nodes += operand.size;
+        }
+        this.size = nodes;
+    }
+
+    public static ExpressionNode constant(BigDecimal value) {
+        return new ExpressionNode(null, value, NO_OPERANDS, null, -1);
+    }
+
+    public static ExpressionNode variable(String name, int slot) {
+        return new ExpressionNode(null, null, NO_OPERANDS, name, slot);
+    }
+
+    public static ExpressionNode unary(Operator operator, ExpressionNode operand) {
+        return new ExpressionNode(operator, null, new ExpressionNode[] {operand}, null, -1);
+    }
+
+    public static ExpressionNode binary(Operator operator, ExpressionNode left, ExpressionNode right) {
+        return new ExpressionNode(operator, null, new ExpressionNode[] {left, right}, null, -1);
+    }
+
+    public static ExpressionNode custom(CustomOperator operator, ExpressionNode[] operands) {
+        if (operands.length != operator.getArity()) {
+            throw new IllegalArgumentException("'" + operator.getSymbol() + "' takes " + operator.getArity() + " operands");
+        }
+        return new ExpressionNode(Operator.CUSTOM, operator, null, operands.clone(), null, -1);
+    }
+
+    // The same operator applied to other operands
+    ExpressionNode withOperands(ExpressionNode... replacement) {
+        return new ExpressionNode(operator, custom, value, replacement, name, slot);
+    }
+
+    public boolean isConstant() {
+        return operator == null && name == null;
+    }
+
+    public boolean isVariable() {
+        return name != null;
+    }
+
+    // The applied operator, or null for a constant or variable
+    public Operator getOperator() {
+        return operator;
+    }
+
+    // The definition applied when the operator is CUSTOM, otherwise null
+    public CustomOperator getCustomOperator() {
+        return custom;
+    }
+
+    // The constant's value, or null for an operator node
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    long compactValue() {
+        return compactValue;
+    }
+
+    // The variable's name, or null
+    public String getName() {
+        return name;
+    }
+
+    // Index of the variable's value in the bindings array, or -1
+    public int getSlot() {
+        return slot;
+    }
+
+    public int getOperandCount() {
+        return operands.length;
+    }
+
+    public ExpressionNode getOperand(int index) {
+        return operands[index];
+    }
+
+    // Number of nodes in this subtree, including this one
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        if (name != null) {
+            return name;
+        }
+        if (operator == null) {
+            return value.toPlainString();
+        }
+        OperatorDefinition definition = custom != null ? custom : operator;
+        if (definition.isFunction()) {
+            StringBuilder text = new StringBuilder(definition.getSymbol()).append('(');
+            for (int i = 0; i < operands.length; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(operands[i]);
+            }
+            return text.append(')').toString();
+        }
+        if (operator == Operator.NEGATE) {
+            return "(-" + operands[0] + ")";
+        }
+        return "(" + operands[0] + " " + definition.getSymbol() + " " + operands[1] + ")";
+    }
+}
@@ -0,0 +1,282 @@
+package com.simplecalculator.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of compiled expressions, so a formula evaluated by many
+ * {@link CalculatorModel}s (or many times by one) is parsed once per JVM.
+ *
+ * Two tables are kept, both holding their values through weak references so the pool
+ * never keeps anything alive on its own:
+ * <ul>
+ *   <li>compiled expressions by source text, variable names, operator registry and
+ *       limits; the most recently used ones are also held strongly, so hot formulas survive garbage collection;</li>
+ *   <li>hash-consed tree nodes: the compiler asks the pool for each node it builds and
+ *       gets back an existing identical one if there is one, so identical subexpressions
+ *       are stored once, wherever they appear in whichever formula. Nodes carry no source
+ *       positions (each {@link CompiledExpression} keeps its own), so error positions stay
+ *       exact. This table is a concurrent map, so compilers on several threads intern
+ *       nodes without taking the pool's lock.</li>
+ * </ul>
+ * Memory is bounded by the maximum number of entries in each table and the longest
+ * source text that is pooled; beyond those limits expressions are simply compiled
+ * without pooling. The shared pool reads its limits from the system properties
+ * {@code calculator.pool.maxExpressions}, {@code calculator.pool.retained},
+ * {@code calculator.pool.maxNodes} and {@code calculator.pool.maxSourceLength}.
+ */
+public final class ExpressionPool {
+    private static final ExpressionPool SHARED = new ExpressionPool(
+        Integer.getInteger("calculator.pool.maxExpressions", 10000),
+        Integer.getInteger("calculator.pool.retained", 256),
+        Integer.getInteger("calculator.pool.maxNodes", 100000),
+        Integer.getInteger("calculator.pool.maxSourceLength", 4096));
+
+    private final int maxExpressions;
+    private final int maxNodes;
+    private final int maxSourceLength;
+
+    private final Map<ExpressionKey, Entry<ExpressionKey, CompiledExpression>> expressions = new HashMap<>();
+    private final ReferenceQueue<CompiledExpression> expressionQueue = new ReferenceQueue<>();
+    // Strong references to the most recently used expressions, in access order
+    private final LinkedHashMap<ExpressionKey, CompiledExpression> retained;
+
+    private final ConcurrentHashMap<NodeKey, Entry<NodeKey, ExpressionNode>> nodes = new ConcurrentHashMap<>();
+    private final ReferenceQueue<ExpressionNode> nodeQueue = new ReferenceQueue<>();
+
+    private long hits;
+    private long misses;
+
+    public ExpressionPool(int maxExpressions, int retained, int maxNodes, int maxSourceLength) {
+        this.maxExpressions = maxExpressions;
+        this.maxNodes = maxNodes;
+        this.maxSourceLength = maxSourceLength;
+        this.retained = new LinkedHashMap<ExpressionKey, CompiledExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ExpressionKey, CompiledExpression> eldest) {
+                return size() > retained;
+            }
+        };
+    }
+
+    public static ExpressionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the compiled form of the expression with the given variables, compiling it
+     * only if no identical one is pooled.
+     */
+    public CompiledExpression compile(CharSequence expression, String... variables) {
+        return compile(expression, OperatorRegistry.DEFAULT, variables);
+    }
+
+    // As above, with the custom operators of registry (compared by identity) available
+    public CompiledExpression compile(CharSequence expression, OperatorRegistry registry, String... variables) {
+        return compile(expression, registry, EvaluationLimits.UNLIMITED, variables);
+    }
+
+    // As above, enforcing the compile-time limits (the limits instance is part of the key)
+    public CompiledExpression compile(CharSequence expression, OperatorRegistry registry, EvaluationLimits limits,
+                                      String... variables) {
+        if (expression.length() > maxSourceLength) {
+            return ExpressionCompiler.compile(expression, variables.clone(), registry, limits, null);
+        }
+        ModelEvents.PoolLookup event = new ModelEvents.PoolLookup();
+        event.begin();
+        ExpressionKey key = new ExpressionKey(expression.toString(), variables, registry, limits);
+        CompiledExpression found;
+        synchronized (this) {
+            Entry<ExpressionKey, CompiledExpression> entry = expressions.get(key);
+            found = entry != null ? entry.get() : null;
+            if (found != null) {
+                hits++;
+                retained.put(key, found);
+            } else {
+                misses++;
+            }
+        }
+        if (event.shouldCommit()) {
+            event.expressionLength = key.source.length();
+            event.hit = found != null;
+            event.commit();
+        }
+        if (found != null) {
+            return found;
+        }
+
+        // Compile outside the lock; if another thread got there first, use its instance
+        CompiledExpression compiled = ExpressionCompiler.compile(key.source, key.variables, registry, limits, this);
+        synchronized (this) {
+            purge();
+            Entry<ExpressionKey, CompiledExpression> entry = expressions.get(key);
+            CompiledExpression pooled = entry != null ? entry.get() : null;
+            if (pooled != null) {
+                return pooled;
+            }
+            if (expressions.size() < maxExpressions) {
+                expressions.put(key, new Entry<>(key, compiled, expressionQueue));
+                retained.put(key, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    /**
+     * Returns a pooled node identical to the given one (same operator, value and scale,
+     * variable and operand instances), adding it if there is none. The node limit is
+     * checked before adding, so threads interning at the same time may overshoot it
+     * slightly.
+     */
+    ExpressionNode intern(ExpressionNode node) {
+        NodeKey key = new NodeKey(node);
+        Entry<NodeKey, ExpressionNode> entry = nodes.get(key);
+        ExpressionNode pooled = entry != null ? entry.get() : null;
+        if (pooled != null) {
+            return pooled;
+        }
+        if (nodes.size() >= maxNodes) {
+            purgeNodes();
+            if (nodes.size() >= maxNodes) {
+                return node;
+            }
+        }
+        // Keeps an entry another thread added meanwhile, unless its node has been collected
+        entry = nodes.merge(key, new Entry<>(key, node, nodeQueue), (old, added) -> old.get() != null ? old : added);
+        pooled = entry.get();
+        return pooled != null ? pooled : node;
+    }
+
+    // Number of pooled expressions and nodes that are still reachable
+    public synchronized int expressionCount() {
+        purge();
+        return expressions.size();
+    }
+
+    public int nodeCount() {
+        purgeNodes();
+        return nodes.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        expressions.clear();
+        retained.clear();
+        nodes.clear();
+        purge();
+    }
+
+    // Drops entries whose value has been garbage collected; callers hold the lock
+    @SuppressWarnings("unchecked")
+    private void purge() {
+        Object cleared;
+        while ((cleared = expressionQueue.poll()) != null) {
+            Entry<ExpressionKey, CompiledExpression> entry = (Entry<ExpressionKey, CompiledExpression>) cleared;
+            expressions.remove(entry.key, entry);
+        }
+        purgeNodes();
+    }
+
+    // The node part of purge, which needs no lock
+    @SuppressWarnings("unchecked")
+    private void purgeNodes() {
+        Object cleared;
+        while ((cleared = nodeQueue.poll()) != null) {
+            Entry<NodeKey, ExpressionNode> entry = (Entry<NodeKey, ExpressionNode>) cleared;
+            nodes.remove(entry.key, entry);
+        }
+    }
+
+    // Weak reference to a pooled value that remembers its key, for purging
+    private static final class Entry<K, V> extends WeakReference<V> {
+        final K key;
+
+        Entry(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private static final class ExpressionKey {
+        final String source;
+        final String[] variables;
+        final OperatorRegistry registry;
+        final EvaluationLimits limits;
+        private final int hash;
+
+        ExpressionKey(String source, String[] variables, OperatorRegistry registry, EvaluationLimits limits) {
+            this.source = source;
+            this.variables = variables.clone();
+            this.registry = registry;
+            this.limits = limits;
+            this.hash = (source.hashCode() * 31 + Arrays.hashCode(variables)) * 31
+                + System.identityHashCode(registry) * 17 + System.identityHashCode(limits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExpressionKey)) return false;
+            ExpressionKey other = (ExpressionKey) o;
+            return source.equals(other.source) && Arrays.equals(variables, other.variables)
+                && registry == other.registry && limits == other.limits;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Shallow structural identity: operands are compared by reference, as they are already interned
+    private static final class NodeKey {
+        final Operator operator;
+        final CustomOperator custom;
+        final BigDecimal value;
+        final String name;
+        final int slot;
+        final ExpressionNode left;
+        final ExpressionNode right;
+        private final int hash;
+
+        NodeKey(ExpressionNode node) {
+            this.operator = node.getOperator();
+            this.custom = node.getCustomOperator();
+            this.value = node.getValue();
+            this.name = node.getName();
+            this.slot = node.getSlot();
+            this.left = node.getOperandCount() > 0 ? node.getOperand(0) : null;
+            this.right = node.getOperandCount() > 1 ? node.getOperand(1) : null;
+            this.hash = Objects.hash(operator, System.identityHashCode(custom), value, name, slot,
+                System.identityHashCode(left), System.identityHashCode(right));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey)) return false;
+            NodeKey other = (NodeKey) o;
+            // BigDecimal.equals also compares the scale, which affects results
+            return operator == other.operator && custom == other.custom && Objects.equals(value, other.value)
+                && Objects.equals(name, other.name) && slot == other.slot
+                && left == other.left && right == other.right;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
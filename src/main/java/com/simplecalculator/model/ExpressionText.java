@@ -0,0 +1,68 @@
+package com.simplecalculator.model;
+
+/**
+ * Immutable, append-only text built from fragments. Appending creates one node that
+ * points at the text it extends, so every earlier version stays valid and shares all of
+ * its characters with the newer ones; this is what lets {@link CalculatorModel} keep its
+ * whole undo history without copying the expression at each step.
+ *
+ * As a CharSequence it is read with {@link #toString}, which copies the fragments once;
+ * {@link #charAt} walks back through the fragments to the one holding the character.
+ */
+final class ExpressionText implements CharSequence {
+    static final ExpressionText EMPTY = new ExpressionText(null, "");
+
+    private final ExpressionText previous;
+    private final String fragment;
+    private final int length;
+
+    private ExpressionText(ExpressionText previous, String fragment) {
+        this.previous = previous;
+        this.fragment = fragment;
+        this.length = (previous == null ? 0 : previous.length) + fragment.length();
+    }
+
+    ExpressionText append(String text) {
+        return text.isEmpty() ? this : new ExpressionText(this, text);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " outside text of length " + length);
+        }
+        int start = length;
+        for (ExpressionText node = this; ; node = node.previous) {
+            start -= node.fragment.length();
+            if (index >= start) {
+                return node.fragment.charAt(index - start);
+            }
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    // Copies the fragments back to front into an array of the final size
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        int end = length;
+        for (ExpressionText node = this; node != null; node = node.previous) {
+            end -= node.fragment.length();
+            node.fragment.getChars(0, node.fragment.length(), chars, end);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,188 @@
+package com.simplecalculator.model;
+
+/**
+ * Syntax check without evaluation: runs the lexer (without building number values) and
+ * a single counting pass that tracks whether an operand or an operator is expected, the
+ * open parentheses and the argument count of each function call. No BigDecimal arithmetic
+ * is done, so it is much cheaper than evaluating; math errors such as division by zero
+ * can only be found by evaluating.
+ *
+ * The same pass is the grammar of {@link ExpressionCompiler}, which feeds it every token
+ * before building nodes, so validating and compiling accept the same expressions and
+ * report syntax errors with the same code at the same position.
+ */
+final class ExpressionValidator {
+    private final int length;
+    private final String[] variables;
+    private final EvaluationLimits limits;
+    // One entry per open parenthesis: its position, the arguments it expects (0 if it is
+    // not a function call) and the arguments seen so far
+    private final IntStack openPositions = new IntStack();
+    private final IntStack expectedArguments = new IntStack();
+    private final IntStack seenArguments = new IntStack();
+
+    private boolean expectOperand = true;
+    private boolean sawToken;
+    private int tokens;
+    private int lastOperator = -1;
+    private int functionPosition = -1;
+    private OperatorDefinition function;
+
+    // Set when a token (or the end of the text) does not fit the grammar
+    private ErrorCode error;
+    private int errorPosition;
+
+    // A grammar check of a text of the given length; names other than variables are UNKNOWN_VARIABLE
+    ExpressionValidator(int length, String[] variables, EvaluationLimits limits) {
+        this.length = length;
+        this.variables = variables;
+        this.limits = limits;
+    }
+
+    // Names other than those in variables are reported as UNKNOWN_VARIABLE, as the compiler does
+    static ValidationResult validate(CharSequence expression, String[] variables) {
+        return validate(expression, variables, OperatorRegistry.DEFAULT, EvaluationLimits.UNLIMITED);
+    }
+
+    // Also enforces the length, token and nesting limits, as the compiler does
+    static ValidationResult validate(CharSequence expression, String[] variables, OperatorRegistry registry,
+                                     EvaluationLimits limits) {
+        if (expression.length() > limits.getMaxLength()) {
+            return ValidationResult.invalid(ErrorCode.EXPRESSION_TOO_LONG, limits.getMaxLength());
+        }
+        ExpressionLexer lexer = new ExpressionLexer(expression, false, registry);
+        ExpressionValidator grammar = new ExpressionValidator(expression.length(), variables, limits);
+        for (ExpressionLexer.TokenType type = lexer.next(); type != ExpressionLexer.TokenType.END; type = lexer.next()) {
+            if (!grammar.accept(type, lexer)) {
+                return ValidationResult.invalid(grammar.error, grammar.errorPosition);
+            }
+        }
+        if (!grammar.finish()) {
+            return ValidationResult.invalid(grammar.error, grammar.errorPosition);
+        }
+        return ValidationResult.VALID;
+    }
+
+    ErrorCode errorCode() {
+        return error;
+    }
+
+    int errorPosition() {
+        return errorPosition;
+    }
+
+    // Checks the lexer's current token; false (with the error set) if it cannot come here
+    boolean accept(ExpressionLexer.TokenType type, ExpressionLexer lexer) {
+        int position = lexer.tokenStart();
+        if (type == ExpressionLexer.TokenType.ERROR) {
+            return fail(lexer.errorCode(), position);
+        }
+        if (++tokens > limits.getMaxTokens()) {
+            return fail(ErrorCode.TOO_MANY_TOKENS, position);
+        }
+        if (function != null && type != ExpressionLexer.TokenType.LEFT_PARENTHESIS) {
+            return fail(ErrorCode.EXPECTED_PARENTHESIS, position);
+        }
+        sawToken = true;
+
+        switch (type) {
+            case NUMBER:
+                if (!expectOperand) {
+                    return fail(ErrorCode.TOO_MANY_OPERANDS, position);
+                }
+                expectOperand = false;
+                break;
+            case VARIABLE:
+                if (lexer.indexIn(variables) < 0) {
+                    return fail(ErrorCode.UNKNOWN_VARIABLE, position);
+                }
+                if (!expectOperand) {
+                    return fail(ErrorCode.TOO_MANY_OPERANDS, position);
+                }
+                expectOperand = false;
+                break;
+            case FUNCTION:
+                if (!expectOperand) {
+                    return fail(ErrorCode.TOO_MANY_OPERANDS, position);
+                }
+                function = lexer.definition();
+                functionPosition = position;
+                break;
+            case LEFT_PARENTHESIS:
+                if (!expectOperand) {
+                    return fail(ErrorCode.TOO_MANY_OPERANDS, position);
+                }
+                if (openPositions.size() >= limits.getMaxDepth()) {
+                    return fail(ErrorCode.NESTED_TOO_DEEPLY, position);
+                }
+                // A function's parenthesis is reported at the function name
+                openPositions.push(function != null ? functionPosition : position);
+                expectedArguments.push(function != null ? function.getArity() : 0);
+                seenArguments.push(1);
+                function = null;
+                break;
+            case COMMA:
+                if (expectOperand) {
+                    return fail(ErrorCode.MISSING_OPERAND, position);
+                }
+                if (openPositions.isEmpty() || expectedArguments.peek() == 0) {
+                    return fail(ErrorCode.MISPLACED_COMMA, position);
+                }
+                seenArguments.incrementTop();
+                // One argument too many for the function, reported at its name
+                if (seenArguments.peek() > expectedArguments.peek()) {
+                    return fail(ErrorCode.WRONG_ARGUMENT_COUNT, openPositions.peek());
+                }
+                expectOperand = true;
+                break;
+            case RIGHT_PARENTHESIS:
+                if (openPositions.isEmpty()) {
+                    return fail(ErrorCode.MISMATCHED_PARENTHESES, position);
+                }
+                if (expectOperand) {
+                    return fail(ErrorCode.MISSING_OPERAND, position);
+                }
+                int open = openPositions.pop();
+                if (seenArguments.pop() != Math.max(expectedArguments.pop(), 1)) {
+                    return fail(ErrorCode.WRONG_ARGUMENT_COUNT, open);
+                }
+                break;
+            case OPERATOR:
+                // The lexer only emits NEGATE where an operand is expected
+                if (lexer.definition().getArity() == 2) {
+                    if (expectOperand) {
+                        return fail(ErrorCode.MISSING_OPERAND, position);
+                    }
+                    expectOperand = true;
+                }
+                lastOperator = position;
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    // Checks that the text may end after the tokens accepted so far; false (with the error set) if not
+    boolean finish() {
+        if (function != null) {
+            return fail(ErrorCode.EXPECTED_PARENTHESIS, length);
+        }
+        if (!sawToken) {
+            return fail(ErrorCode.EMPTY_EXPRESSION, 0);
+        }
+        if (expectOperand) {
+            return fail(ErrorCode.MISSING_OPERAND, lastOperator >= 0 ? lastOperator : length);
+        }
+        if (!openPositions.isEmpty()) {
+            return fail(ErrorCode.MISMATCHED_PARENTHESES, openPositions.peek());
+        }
+        return true;
+    }
+
+    private boolean fail(ErrorCode code, int position) {
+        error = code;
+        errorPosition = position;
+        return false;
+    }
+}
@@ -0,0 +1,222 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Arithmetic and formatting for numbers with hundreds of thousands of digits, where
+ * BigInteger's own algorithms run on a single core.
+ * <ul>
+ *   <li>{@link #multiply} splits operands above {@link #PARALLEL_MULTIPLY_BITS} Karatsuba
+ *       style and computes the three half-size products as ForkJoin tasks; smaller products
+ *       are left to BigInteger (Toom-Cook 3 at that size).</li>
+ *   <li>{@link #toPlainString} converts to decimal by divide and conquer: the value is split
+ *       by 10^(k * 2^n) into halves that are converted in parallel straight into one char
+ *       array, with the powers of ten computed once by squaring.</li>
+ *   <li>{@link #abbreviate} renders only the leading digits and the exponent, which takes
+ *       one division instead of a full conversion.</li>
+ * </ul>
+ * Below the thresholds every method does exactly what the plain BigDecimal call does.
+ * Tasks run in the common {@link ForkJoinPool}.
+ */
+public final class HugeNumbers {
+    // Products with both operands at least this long are computed in parallel (about 40,000 digits)
+    public static final int PARALLEL_MULTIPLY_BITS = 1 << 17;
+    // Values with at least this many bits are converted to decimal in parallel (about 80,000 digits)
+    static final int PARALLEL_CONVERSION_BITS = 1 << 18;
+    // Digits converted by BigInteger.toString at the leaves of the conversion
+    private static final int LEAF_DIGITS = 8192;
+    private static final double LOG10_2 = Math.log10(2);
+
+    private HugeNumbers() {
+    }
+
+    /**
+     * Significant digits of the value. Exact below 2^63; above, estimated from the bit
+     * length (at most one too many), since BigDecimal.precision() has to compute a power
+     * of ten as large as the value.
+     */
+    public static int digits(BigDecimal value) {
+        int bits = value.unscaledValue().bitLength();
+        return bits < 63 ? value.precision() : (int) (bits * LOG10_2) + 1;
+    }
+
+    // a * b, with the same value and scale as a.multiply(b)
+    public static BigDecimal multiply(BigDecimal a, BigDecimal b) {
+        BigInteger x = a.unscaledValue();
+        if (x.bitLength() < PARALLEL_MULTIPLY_BITS) {
+            return a.multiply(b);
+        }
+        BigInteger y = b.unscaledValue();
+        if (y.bitLength() < PARALLEL_MULTIPLY_BITS) {
+            return a.multiply(b);
+        }
+        return new BigDecimal(multiply(x, y), Math.addExact(a.scale(), b.scale()));
+    }
+
+    public static BigInteger multiply(BigInteger a, BigInteger b) {
+        if (Math.min(a.bitLength(), b.bitLength()) < PARALLEL_MULTIPLY_BITS) {
+            return a.multiply(b);
+        }
+        BigInteger product = ForkJoinPool.commonPool().invoke(new Product(a.abs(), b.abs()));
+        return a.signum() == b.signum() ? product : product.negate();
+    }
+
+    // Karatsuba step over non-negative operands: a*b = z2 * 2^2h + (z1 - z2 - z0) * 2^h + z0
+    private static final class Product extends RecursiveTask<BigInteger> {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger a;
+        private final BigInteger b;
+
+        Product(BigInteger a, BigInteger b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (Math.min(a.bitLength(), b.bitLength()) < PARALLEL_MULTIPLY_BITS) {
+                return a.multiply(b);
+            }
+            int half = (Math.max(a.bitLength(), b.bitLength()) / 2 + 31) & ~31; // keep word alignment
+            BigInteger a1 = a.shiftRight(half);
+            BigInteger a0 = a.subtract(a1.shiftLeft(half));
+            BigInteger b1 = b.shiftRight(half);
+            BigInteger b0 = b.subtract(b1.shiftLeft(half));
+
+            Product high = new Product(a1, b1);
+            Product low = new Product(a0, b0);
+            high.fork();
+            low.fork();
+            BigInteger middle = new Product(a0.add(a1), b0.add(b1)).compute();
+            BigInteger z0 = low.join();
+            BigInteger z2 = high.join();
+            return z2.shiftLeft(2 * half).add(middle.subtract(z2).subtract(z0).shiftLeft(half)).add(z0);
+        }
+    }
+
+    // The same text as value.toPlainString()
+    public static String toPlainString(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < PARALLEL_CONVERSION_BITS) {
+            return value.toPlainString();
+        }
+        String digits = toString(unscaled.abs());
+        int scale = value.scale();
+        StringBuilder text = new StringBuilder(digits.length() + Math.abs(scale) + 3);
+        if (value.signum() < 0) {
+            text.append('-');
+        }
+        if (scale <= 0) {
+            text.append(digits);
+            for (int i = 0; i < -scale; i++) {
+                text.append('0');
+            }
+        } else if (scale >= digits.length()) {
+            text.append("0.");
+            for (int i = digits.length(); i < scale; i++) {
+                text.append('0');
+            }
+            text.append(digits);
+        } else {
+            int point = digits.length() - scale;
+            text.append(digits, 0, point).append('.').append(digits, point, digits.length());
+        }
+        return text.toString();
+    }
+
+    // The same text as value.toString()
+    public static String toString(BigInteger value) {
+        if (value.bitLength() < PARALLEL_CONVERSION_BITS) {
+            return value.toString();
+        }
+        if (value.signum() < 0) {
+            return "-" + toString(value.negate());
+        }
+        // powers[n] = 10^(LEAF_DIGITS * 2^n); the top level covers at least all digits
+        int estimate = (int) (value.bitLength() * LOG10_2) + 1;
+        int levels = 0;
+        while ((long) LEAF_DIGITS << levels < estimate) {
+            levels++;
+        }
+        BigInteger[] powers = new BigInteger[levels];
+        if (levels > 0) {
+            powers[0] = BigInteger.TEN.pow(LEAF_DIGITS);
+            for (int n = 1; n < levels; n++) {
+                powers[n] = multiply(powers[n - 1], powers[n - 1]);
+            }
+        }
+        char[] digits = new char[LEAF_DIGITS << levels];
+        ForkJoinPool.commonPool().invoke(new Conversion(value, levels, powers, digits, 0));
+        int first = 0;
+        while (first < digits.length - 1 && digits[first] == '0') {
+            first++;
+        }
+        return new String(digits, first, digits.length - first);
+    }
+
+    // Writes value (< 10^(LEAF_DIGITS << level)) zero-padded into digits[from, from + LEAF_DIGITS << level)
+    private static final class Conversion extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger value;
+        private final int level;
+        private final BigInteger[] powers;
+        private final char[] digits;
+        private final int from;
+
+        Conversion(BigInteger value, int level, BigInteger[] powers, char[] digits, int from) {
+            this.value = value;
+            this.level = level;
+            this.powers = powers;
+            this.digits = digits;
+            this.from = from;
+        }
+
+        @Override
+        protected void compute() {
+            int width = LEAF_DIGITS << level;
+            if (level == 0) {
+                String leaf = value.toString();
+                int start = from + width - leaf.length();
+                Arrays.fill(digits, from, start, '0');
+                leaf.getChars(0, leaf.length(), digits, start);
+                return;
+            }
+            BigInteger[] split = value.divideAndRemainder(powers[level - 1]);
+            invokeAll(new Conversion(split[0], level - 1, powers, digits, from),
+                new Conversion(split[1], level - 1, powers, digits, from + width / 2));
+        }
+    }
+
+    /**
+     * The value as text of at most about {@code maxDigits} digits. Values with more
+     * significant digits are truncated (not rounded) and shown as {@code d.ddd\u2026E+n}; others
+     * exactly as {@link BigDecimal#toString()}.
+     */
+    public static String abbreviate(BigDecimal value, int maxDigits) {
+        int digits = digits(value);
+        if (digits <= maxDigits || (digits == maxDigits + 1 && value.precision() <= maxDigits)) {
+            return value.toString();
+        }
+        BigDecimal leading = value.round(new MathContext(maxDigits, RoundingMode.DOWN));
+        String text = leading.unscaledValue().abs().toString();
+        long exponent = (long) text.length() - 1 - leading.scale();
+        StringBuilder abbreviated = new StringBuilder(maxDigits + 16);
+        if (value.signum() < 0) {
+            abbreviated.append('-');
+        }
+        abbreviated.append(text.charAt(0));
+        if (text.length() > 1) {
+            abbreviated.append('.').append(text, 1, text.length());
+        }
+        return abbreviated.append("\u2026E").append(exponent >= 0 ? "+" : "").append(exponent).toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.simplecalculator.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable stack of primitive ints, used for positions and counters in the parser loops
+ * so they do not box.
+ */
+final class IntStack {
+    private int[] items = new int[16];
+    private int size;
+
+    void push(int value) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = value;
+    }
+
+    int pop() {
+        return items[--size];
+    }
+
+    int peek() {
+        return items[size - 1];
+    }
+
+    // Adds one to the top entry
+    void incrementTop() {
+        items[size - 1]++;
+    }
+
+    // The entry at index, counting from the bottom of the stack
+    int get(int index) {
+        return items[index];
+    }
+
+    // The entries from the bottom up
+    int[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.simplecalculator.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the expression engine, shown under "Calculator" in JDK
+ * Mission Control. Record them with, for example,
+ * {@code -XX:StartFlightRecording:filename=calc.jfr} (all are enabled in the default
+ * settings and have no threshold).
+ *
+ * Call sites follow JFR's usual pattern: create the event, {@code begin()}, do the work,
+ * and only fill in the fields if {@code shouldCommit()}. While no recording is running,
+ * that check is false, the event object does not escape and is optimized away, and the
+ * extra work costs a few branches. Stack traces are off to keep recordings small.
+ */
+final class ModelEvents {
+
+    private ModelEvents() {
+    }
+
+    /**
+     * Lexing and Shunting Yard reduction happen in a single pass, so one event covers
+     * both; when the event is enabled the compiler also times the two phases separately.
+     */
+    @Name("com.simplecalculator.Parse")
+    @Label("Expression Parse")
+    @Category({"Calculator", "Model"})
+    @Description("Tokenizing an expression and reducing it to a tree with the Shunting Yard algorithm")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Reductions")
+        @Description("Operators and functions applied to their operands")
+        int reductions;
+
+        @Label("Tokenization Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long tokenizationTime;
+
+        @Label("Reduction Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long reductionTime;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("com.simplecalculator.Evaluate")
+    @Label("Expression Evaluation")
+    @Category({"Calculator", "Model"})
+    @Description("Computing the value of a compiled expression")
+    @StackTrace(false)
+    static final class Evaluate extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Node Count")
+        int nodeCount;
+
+        @Label("Mode")
+        String mode;
+
+        @Label("Parallel")
+        boolean parallel;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("com.simplecalculator.PoolLookup")
+    @Label("Expression Pool Lookup")
+    @Category({"Calculator", "Model"})
+    @Description("Looking an expression up in the shared pool of compiled expressions")
+    @StackTrace(false)
+    static final class PoolLookup extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Hit")
+        boolean hit;
+    }
+
+    static String errorName(EvaluationResult result) {
+        return result.isSuccess() ? null : result.getErrorCode().name();
+    }
+}
@@ -0,0 +1,11 @@
+package com.simplecalculator.model;
+
+/**
+ * Number representation used while evaluating an expression.
+ */
+public enum NumericMode {
+    // BigDecimal throughout; every division and function rounds to scale 10
+    DECIMAL,
+    // Exact fractions for + - * / % and integer powers, rounded to scale 10 once at the end
+    RATIONAL
+}
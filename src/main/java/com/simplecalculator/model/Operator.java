@@ -1,29 +1,69 @@
 package com.simplecalculator.model;
 
-public enum Operator {
+public enum Operator implements OperatorDefinition {
     ADD("+", 1),
     SUBTRACT("-", 1),
     MULTIPLY("*", 2),
     DIVIDE("/", 2),
-    LEFT_PARENTHESIS("(", 0),
-    RIGHT_PARENTHESIS(")", 0);
+    MODULO("%", 2),
+    NEGATE("neg", 3, 1, false, false),  // unary minus, produced by the lexer from a prefix '-'
+    POWER("^", 4, 2, false, false),
+    LEFT_PARENTHESIS("(", 0, 0, true, false),
+    RIGHT_PARENTHESIS(")", 0, 0, false, false),
+
+    // Built-in functions, called as name(arg, ...)
+    SQRT("sqrt", 5, 1, true, true),
+    LN("ln", 5, 1, true, true),
+    EXP("exp", 5, 1, true, true),
+    SIN("sin", 5, 1, true, true),
+    COS("cos", 5, 1, true, true),
+    MIN("min", 5, 2, true, true),
+    MAX("max", 5, 2, true, true),
+
+    // Marks a node that applies a CustomOperator; the node carries the definition
+    CUSTOM("custom", 0, 0, true, false);
+
+    private static final Operator[] FUNCTIONS = {SQRT, LN, EXP, SIN, COS, MIN, MAX};
 
     private final String symbol;
     private final int precedence;
+    private final int arity;
+    private final boolean leftAssociative;
+    private final boolean function;
 
     Operator(String symbol, int precedence) {
+        this(symbol, precedence, 2, true, false);
+    }
+
+    Operator(String symbol, int precedence, int arity, boolean leftAssociative, boolean function) {
         this.symbol = symbol;
         this.precedence = precedence;
+        this.arity = arity;
+        this.leftAssociative = leftAssociative;
+        this.function = function;
     }
 
+    @Override
     public String getSymbol() {
         return symbol;
     }
 
+    @Override
     public int getPrecedence() {
         return precedence;
     }
 
+    // Number of operands consumed (0 for parentheses)
+    @Override
+    public int getArity() {
+        return arity;
+    }
+
+    @Override
+    public boolean isFunction() {
+        return function;
+    }
+
     public static Operator fromSymbol(String symbol) {
         for (Operator op : values()) {
             if (op.symbol.equals(symbol)) {
@@ -33,7 +73,27 @@ public enum Operator {
         return null;
     }
 
+    // Looks up a function by the name in text[start, end) without creating a String
+    static Operator functionNamed(CharSequence text, int start, int end) {
+        int length = end - start;
+        for (Operator op : FUNCTIONS) {
+            String name = op.symbol;
+            if (name.length() != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && name.charAt(i) == text.charAt(start + i)) {
+                i++;
+            }
+            if (i == length) {
+                return op;
+            }
+        }
+        return null;
+    }
+
+    @Override
     public boolean isLeftAssociative() {
-        return this != RIGHT_PARENTHESIS;
+        return leftAssociative;
     }
 }
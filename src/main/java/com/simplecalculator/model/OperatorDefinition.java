@@ -0,0 +1,18 @@
+package com.simplecalculator.model;
+
+/**
+ * What the parser needs to know about an operator or function, whether it is one of the
+ * built-in {@link Operator}s or a {@link CustomOperator} from an {@link OperatorRegistry}.
+ */
+public interface OperatorDefinition {
+    String getSymbol();
+
+    int getPrecedence();
+
+    // Number of operands consumed (0 for parentheses)
+    int getArity();
+
+    boolean isLeftAssociative();
+
+    boolean isFunction();
+}
@@ -0,0 +1,89 @@
+package com.simplecalculator.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable set of {@link CustomOperator}s available to expressions, in addition to
+ * the built-in operators. {@link #with} returns a new registry, so a registry can be
+ * shared between threads and used as part of a cache key.
+ *
+ * <pre>
+ * OperatorRegistry registry = OperatorRegistry.DEFAULT
+ *     .with(CustomOperator.function("vat", x -&gt; x.multiply(new BigDecimal("1.2"))))
+ *     .with(CustomOperator.infix("&lt;&gt;", 1, true, (a, b) -&gt; a.subtract(b).abs()));
+ * model.setOperatorRegistry(registry);
+ * </pre>
+ */
+public final class OperatorRegistry {
+    public static final OperatorRegistry DEFAULT = new OperatorRegistry(new CustomOperator[0]);
+
+    private final CustomOperator[] operators;
+
+    private OperatorRegistry(CustomOperator[] operators) {
+        this.operators = operators;
+    }
+
+    // Adds an operator; its symbol must not already be registered
+    public OperatorRegistry with(CustomOperator operator) {
+        if (lookup(operator.getSymbol()) != null) {
+            throw new IllegalArgumentException("Operator already registered: '" + operator.getSymbol() + "'");
+        }
+        CustomOperator[] extended = Arrays.copyOf(operators, operators.length + 1);
+        extended[operators.length] = operator;
+        return new OperatorRegistry(extended);
+    }
+
+    public List<CustomOperator> getOperators() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(operators)));
+    }
+
+    // The operator or function with this symbol, or null
+    public CustomOperator lookup(String symbol) {
+        for (CustomOperator operator : operators) {
+            if (operator.getSymbol().equals(symbol)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    // The function named text[start, end), or null; compares chars in place
+    CustomOperator functionNamed(CharSequence text, int start, int end) {
+        for (CustomOperator operator : operators) {
+            if (operator.isFunction() && matches(operator.getSymbol(), text, start, end)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    // The longest infix symbol starting at text[start], or null
+    CustomOperator infixAt(CharSequence text, int start) {
+        CustomOperator longest = null;
+        for (CustomOperator operator : operators) {
+            String symbol = operator.getSymbol();
+            if (!operator.isFunction() && start + symbol.length() <= text.length()
+                    && matches(symbol, text, start, start + symbol.length())
+                    && (longest == null || symbol.length() > longest.getSymbol().length())) {
+                longest = operator;
+            }
+        }
+        return longest;
+    }
+
+    private static boolean matches(String symbol, CharSequence text, int start, int end) {
+        int length = end - start;
+        if (symbol.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
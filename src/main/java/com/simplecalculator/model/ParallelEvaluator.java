@@ -0,0 +1,283 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Evaluates very large compiled expressions on several cores.
+ *
+ * The tree is cut at its largest subtrees below {@link #PARALLEL_THRESHOLD} nodes; those
+ * are evaluated as independent ForkJoin tasks, and the remaining upper part of the tree
+ * is then evaluated sequentially with the task results as leaves.
+ *
+ * Long machine-generated sums and products are usually left-deep chains, which have no
+ * large independent subtrees. Since + and * are exact in both {@link NumericMode}s, such
+ * chains are first rebuilt as balanced trees; this cannot change a successful result
+ * (not even the BigDecimal scale) and gives the cut plenty of similar-sized subtrees.
+ * It does change the intermediate values, so a limit such as VALUE_TOO_LARGE may be hit
+ * at a different node, or not at all before another error. When the balanced evaluation
+ * fails, the expression is therefore evaluated again sequentially, and that error (code
+ * and position) is the one reported, exactly as without parallelism. Nodes carry no
+ * source positions, so timeouts and cancellation are reported the same way; the
+ * sequential run stops with them at its first check.
+ */
+final class ParallelEvaluator {
+    // Expressions with at least this many nodes are evaluated in parallel
+    static final int PARALLEL_THRESHOLD = 16384;
+    // Smaller subtrees are not worth a task of their own
+    private static final int MIN_TASK_SIZE = PARALLEL_THRESHOLD / 8;
+
+    private ParallelEvaluator() {
+    }
+
+    static EvaluationResult evaluate(CompiledExpression expression, NumericMode mode, BigDecimal[] bindings, ForkJoinPool pool) {
+        return evaluate(expression, mode, bindings, pool, EvaluationGuard.UNLIMITED);
+    }
+
+    // The guard is shared by all tasks; each polls the deadline and the caller's interrupt status
+    static EvaluationResult evaluate(CompiledExpression expression, NumericMode mode, BigDecimal[] bindings, ForkJoinPool pool,
+                                     EvaluationGuard guard) {
+        if (!expression.isValid()) {
+            return expression.failure();
+        }
+        ExpressionNode root = expression.balancedRoot();
+        List<ExpressionNode> taskRoots = taskRoots(root);
+
+        Map<ExpressionNode, Partial> precomputed = new IdentityHashMap<>();
+        if (taskRoots.size() > 1) {
+            List<ForkJoinTask<Partial>> tasks = new ArrayList<>(taskRoots.size());
+            for (ExpressionNode taskRoot : taskRoots) {
+                tasks.add(pool.submit(() -> run(taskRoot, mode, bindings, guard, null)));
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                precomputed.put(taskRoots.get(i), tasks.get(i).join());
+            }
+        }
+
+        Partial result = run(root, mode, bindings, guard, precomputed);
+        if (result.error != null) {
+            // Rare, so worth the sequential run that reports the error at the same node as without parallelism
+            return mode == NumericMode.RATIONAL
+                ? RationalEvaluator.evaluate(expression, bindings, guard)
+                : DecimalEvaluator.evaluate(expression, bindings, guard);
+        }
+        return EvaluationResult.success(mode == NumericMode.RATIONAL
+            ? RationalEvaluator.round((Rational) result.value)
+            : (BigDecimal) result.value);
+    }
+
+    /**
+     * Rebuilds maximal chains of + or * as balanced trees, keeping operand order. Works on
+     * the post-order program like an evaluator, so arbitrarily deep trees need no recursion.
+     */
+    static ExpressionNode balance(ExpressionNode[] program, int maxStackDepth) {
+        Object[] stack = new Object[maxStackDepth]; // ExpressionNode or Chain
+        int top = 0;
+        for (ExpressionNode node : program) {
+            Operator op = node.getOperator();
+            if (op == null) {
+                stack[top++] = node;
+            } else if (node.getOperandCount() == 1) {
+                ExpressionNode operand = build(stack[top - 1]);
+                stack[top - 1] = operand == node.getOperand(0) ? node : node.withOperands(operand);
+            } else if (op == Operator.ADD || op == Operator.MULTIPLY) {
+                Object right = stack[--top];
+                Object left = stack[top - 1];
+                Chain chain = left instanceof Chain && ((Chain) left).op == op ? (Chain) left : new Chain(op, build(left));
+                if (right instanceof Chain && ((Chain) right).op == op) {
+                    chain.operands.addAll(((Chain) right).operands);
+                } else {
+                    chain.operands.add(build(right));
+                }
+                stack[top - 1] = chain;
+            } else {
+                ExpressionNode right = build(stack[--top]);
+                ExpressionNode left = build(stack[top - 1]);
+                stack[top - 1] = left == node.getOperand(0) && right == node.getOperand(1)
+                    ? node : node.withOperands(left, right);
+            }
+        }
+        return build(stack[0]);
+    }
+
+    // Operands of a flattened chain, waiting to be rebuilt as a balanced tree
+    private static final class Chain {
+        final Operator op;
+        final List<ExpressionNode> operands = new ArrayList<>();
+
+        Chain(Operator op, ExpressionNode first) {
+            this.op = op;
+            operands.add(first);
+        }
+    }
+
+    private static ExpressionNode build(Object item) {
+        if (item instanceof ExpressionNode) {
+            return (ExpressionNode) item;
+        }
+        Chain chain = (Chain) item;
+        return build(chain, 0, chain.operands.size());
+    }
+
+    private static ExpressionNode build(Chain chain, int from, int to) {
+        if (to - from == 1) {
+            return chain.operands.get(from);
+        }
+        int middle = (from + to) >>> 1;
+        return ExpressionNode.binary(chain.op, build(chain, from, middle), build(chain, middle, to));
+    }
+
+    // The largest subtrees below the threshold that are still big enough to be tasks
+    private static List<ExpressionNode> taskRoots(ExpressionNode root) {
+        List<ExpressionNode> roots = new ArrayList<>();
+        List<ExpressionNode> work = new ArrayList<>();
+        work.add(root);
+        while (!work.isEmpty()) {
+            ExpressionNode node = work.remove(work.size() - 1);
+            if (node.size() >= PARALLEL_THRESHOLD) {
+                for (int i = node.getOperandCount() - 1; i >= 0; i--) {
+                    work.add(node.getOperand(i));
+                }
+            } else if (node.size() >= MIN_TASK_SIZE) {
+                roots.add(node);
+            }
+        }
+        return roots;
+    }
+
+    // Value (BigDecimal or Rational) or failure of a subtree
+    private static final class Partial {
+        final Object value;
+        final ErrorCode error;
+
+        Partial(Object value, ErrorCode error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Evaluates a subtree sequentially. Nodes found in {@code precomputed} are not
+     * descended into; their result is used as a leaf value.
+     */
+    private static Partial run(ExpressionNode root, NumericMode mode, BigDecimal[] bindings, EvaluationGuard guard,
+                               Map<ExpressionNode, Partial> precomputed) {
+        try {
+            return runProgram(root, mode, bindings, guard, precomputed);
+        } catch (CalculationException ex) {
+            return new Partial(null, ex.getErrorCode()); // timed out or cancelled within a function
+        }
+    }
+
+    private static Partial runProgram(ExpressionNode root, NumericMode mode, BigDecimal[] bindings, EvaluationGuard guard,
+                                      Map<ExpressionNode, Partial> precomputed) {
+        List<ExpressionNode> program = postOrder(root, precomputed);
+        Object[] stack = new Object[program.size()];
+        int top = 0;
+        for (int i = 0; i < program.size(); i++) {
+            ExpressionNode node = program.get(i);
+            if ((i & EvaluationGuard.CHECK_MASK) == 0) {
+                ErrorCode timeout = guard.checkTime();
+                if (timeout != null) {
+                    return new Partial(null, timeout);
+                }
+            }
+            Partial done = precomputed != null ? precomputed.get(node) : null;
+            if (done != null) {
+                if (done.error != null) {
+                    return done;
+                }
+                stack[top++] = done.value;
+                continue;
+            }
+            Operator op = node.getOperator();
+            ErrorCode error;
+            if (op == null) {
+                BigDecimal value = node.isVariable() ? DecimalEvaluator.binding(bindings, node.getSlot()) : node.getValue();
+                if (value == null) {
+                    return new Partial(null, ErrorCode.UNBOUND_VARIABLE);
+                }
+                error = guard.check(value);
+                if (error != null) {
+                    return new Partial(null, error);
+                }
+                stack[top++] = mode == NumericMode.RATIONAL ? Rational.valueOf(value) : value;
+                continue;
+            }
+            if (op == Operator.CUSTOM) {
+                int arity = node.getOperandCount();
+                Object a = stack[top - arity];
+                Object b = arity == 2 ? stack[top - 1] : null;
+                try {
+                    stack[top - arity] = mode == NumericMode.RATIONAL
+                        ? RationalEvaluator.applyCustom(node.getCustomOperator(), (Rational) a, (Rational) b)
+                        : DecimalEvaluator.applyCustom(node.getCustomOperator(), (BigDecimal) a, (BigDecimal) b);
+                } catch (ArithmeticException ex) {
+                    return new Partial(null, CustomOperator.errorCode(ex));
+                }
+                top -= arity - 1;
+                error = null;
+            } else if (op.getArity() == 1) {
+                Object a = stack[top - 1];
+                if (mode == NumericMode.RATIONAL) {
+                    error = RationalEvaluator.checkDomain(op, (Rational) a);
+                    if (error == null) error = guard.checkFunction(op, (Rational) a);
+                    if (error == null) stack[top - 1] = RationalEvaluator.applyOperator(op, (Rational) a, guard);
+                } else {
+                    error = DecimalEvaluator.checkDomain(op, (BigDecimal) a, null);
+                    if (error == null) error = guard.checkFunction(op, (BigDecimal) a);
+                    if (error == null) stack[top - 1] = DecimalEvaluator.applyOperator(op, (BigDecimal) a, guard);
+                }
+            } else {
+                Object b = stack[--top];
+                Object a = stack[top - 1];
+                if (mode == NumericMode.RATIONAL) {
+                    error = RationalEvaluator.checkDomain(op, (Rational) a, (Rational) b);
+                    if (error == null && op == Operator.POWER) error = guard.checkPower((Rational) a, (Rational) b);
+                    if (error == null) stack[top - 1] = RationalEvaluator.applyOperator(op, (Rational) a, (Rational) b, guard);
+                } else {
+                    error = DecimalEvaluator.checkDomain(op, (BigDecimal) a, (BigDecimal) b);
+                    if (error == null && op == Operator.POWER) error = guard.checkPower((BigDecimal) a, (BigDecimal) b);
+                    if (error == null) stack[top - 1] = DecimalEvaluator.applyOperator(op, (BigDecimal) a, (BigDecimal) b, guard);
+                }
+            }
+            if (error == null) {
+                Object value = stack[top - 1];
+                error = value instanceof Rational ? guard.check((Rational) value) : guard.check((BigDecimal) value);
+            }
+            if (error != null) {
+                return new Partial(null, error);
+            }
+        }
+        return new Partial(stack[0], null);
+    }
+
+    // Iterative post-order traversal that treats precomputed subtrees as leaves
+    private static List<ExpressionNode> postOrder(ExpressionNode root, Map<ExpressionNode, Partial> precomputed) {
+        List<ExpressionNode> order = new ArrayList<>(root.size());
+        List<ExpressionNode> nodes = new ArrayList<>();
+        IntStack nextOperand = new IntStack();
+        nodes.add(root);
+        nextOperand.push(0);
+        while (!nodes.isEmpty()) {
+            ExpressionNode node = nodes.get(nodes.size() - 1);
+            int next = nextOperand.peek();
+            boolean leaf = precomputed != null && precomputed.containsKey(node);
+            if (!leaf && next < node.getOperandCount()) {
+                nextOperand.incrementTop();
+                nodes.add(node.getOperand(next));
+                nextOperand.push(0);
+            } else {
+                order.add(node);
+                nodes.remove(nodes.size() - 1);
+                nextOperand.pop();
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,333 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * An exact fraction numerator/denominator, with the denominator always positive.
+ *
+ * Values whose parts fit in a long are kept in two long fields and combined with
+ * overflow-checked long arithmetic; an operation only switches to BigInteger when that
+ * overflows. Fractions are not reduced after every operation: long fractions are reduced
+ * when the next operation would otherwise overflow, BigInteger fractions when they are
+ * created, and both before comparing for equality or converting to a decimal.
+ */
+public final class Rational implements Comparable<Rational> {
+    public static final Rational ZERO = new Rational(0, 1, true);
+    public static final Rational ONE = new Rational(1, 1, true);
+
+    private static final BigInteger FIVE = BigInteger.valueOf(5);
+    private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+    static {
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Long form, valid when bigNumerator is null; Long.MIN_VALUE is never stored so negate() cannot overflow
+    private final long numerator;
+    private final long denominator;
+    // BigInteger form, used only when a part does not fit in a long
+    private final BigInteger bigNumerator;
+    private final BigInteger bigDenominator;
+    private final boolean reduced;
+
+    private Rational(long numerator, long denominator, boolean reduced) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.bigNumerator = null;
+        this.bigDenominator = null;
+        this.reduced = reduced;
+    }
+
+    private Rational(BigInteger numerator, BigInteger denominator) {
+        this.numerator = 0;
+        this.denominator = 1;
+        this.bigNumerator = numerator;
+        this.bigDenominator = denominator;
+        this.reduced = true;
+    }
+
+    public static Rational valueOf(long value) {
+        return value == Long.MIN_VALUE ? of(BigInteger.valueOf(value), BigInteger.ONE) : new Rational(value, 1, true);
+    }
+
+    public static Rational valueOf(long numerator, long denominator) {
+        if (denominator == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (denominator < 0 || numerator == Long.MIN_VALUE) {
+            return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+        }
+        return new Rational(numerator, denominator, false);
+    }
+
+    // The exact value of a decimal: unscaled / 10^scale
+    public static Rational valueOf(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        if (scale <= 0) {
+            return of(scale == 0 ? unscaled : unscaled.multiply(BigInteger.TEN.pow(-scale)), BigInteger.ONE);
+        }
+        if (scale < 19 && unscaled.bitLength() < 63) {
+            return new Rational(unscaled.longValue(), LONG_POWERS_OF_TEN[scale], false);
+        }
+        return of(unscaled, BigInteger.TEN.pow(scale));
+    }
+
+    // Normalizes sign and common factors, and returns to the long form when both parts fit
+    private static Rational of(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        if (numerator.bitLength() < 63 && denominator.bitLength() < 63) {
+            return new Rational(numerator.longValue(), denominator.longValue(), true);
+        }
+        return new Rational(numerator, denominator);
+    }
+
+    public Rational add(Rational other) {
+        if (isSmall() && other.isSmall()) {
+            Rational sum = addSmall(this, other);
+            if (sum == null) {
+                sum = addSmall(reduce(), other.reduce());
+            }
+            if (sum != null) {
+                return sum;
+            }
+        }
+        return of(bigNumerator().multiply(other.bigDenominator()).add(other.bigNumerator().multiply(bigDenominator())),
+            bigDenominator().multiply(other.bigDenominator()));
+    }
+
+    public Rational subtract(Rational other) {
+        return add(other.negate());
+    }
+
+    public Rational multiply(Rational other) {
+        if (isSmall() && other.isSmall()) {
+            Rational product = multiplySmall(this, other);
+            if (product == null) {
+                product = multiplySmall(reduce(), other.reduce());
+            }
+            if (product != null) {
+                return product;
+            }
+        }
+        return of(bigNumerator().multiply(other.bigNumerator()), bigDenominator().multiply(other.bigDenominator()));
+    }
+
+    public Rational divide(Rational other) {
+        return multiply(other.reciprocal());
+    }
+
+    public Rational negate() {
+        return isSmall() ? new Rational(-numerator, denominator, reduced) : new Rational(bigNumerator.negate(), bigDenominator);
+    }
+
+    public Rational reciprocal() {
+        if (signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (isSmall()) {
+            return numerator > 0
+                ? new Rational(denominator, numerator, reduced)
+                : new Rational(-denominator, -numerator, reduced);
+        }
+        return of(bigDenominator, bigNumerator);
+    }
+
+    // Remainder of truncating division, with the sign of this value (as BigDecimal.remainder)
+    public Rational remainder(Rational other) {
+        Rational quotient = divide(other);
+        Rational truncated = quotient.isSmall()
+            ? valueOf(quotient.numerator / quotient.denominator)
+            : of(quotient.bigNumerator.divide(quotient.bigDenominator), BigInteger.ONE);
+        return subtract(other.multiply(truncated));
+    }
+
+    public Rational pow(int exponent) {
+        if (exponent < 0) {
+            return pow(-exponent).reciprocal();
+        }
+        Rational base = reduce();
+        return of(base.bigNumerator().pow(exponent), base.bigDenominator().pow(exponent));
+    }
+
+    public int signum() {
+        return isSmall() ? Long.signum(numerator) : bigNumerator.signum();
+    }
+
+    public boolean isInteger() {
+        return isSmall() ? numerator % denominator == 0 : reduce().bigDenominator().equals(BigInteger.ONE);
+    }
+
+    public Rational min(Rational other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+
+    public Rational max(Rational other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    @Override
+    public int compareTo(Rational other) {
+        if (isSmall() && other.isSmall()) {
+            long left = numerator * other.denominator;
+            long right = other.numerator * denominator;
+            if (!multiplyOverflows(numerator, other.denominator) && !multiplyOverflows(other.numerator, denominator)) {
+                return Long.compare(left, right);
+            }
+        }
+        return bigNumerator().multiply(other.bigDenominator()).compareTo(other.bigNumerator().multiply(bigDenominator()));
+    }
+
+    /**
+     * Number of decimal places needed to write this value exactly, or -1 if its decimal
+     * expansion does not terminate (the reduced denominator has a factor other than 2 or 5).
+     */
+    public int decimalScale() {
+        BigInteger d = reduce().bigDenominator();
+        int twos = d.getLowestSetBit();
+        d = d.shiftRight(twos);
+        int fives = 0;
+        while (!d.equals(BigInteger.ONE)) {
+            BigInteger[] qr = d.divideAndRemainder(FIVE);
+            if (qr[1].signum() != 0) {
+                return -1;
+            }
+            d = qr[0];
+            fives++;
+        }
+        return Math.max(twos, fives);
+    }
+
+    public BigDecimal toBigDecimal(int scale, RoundingMode roundingMode) {
+        if (isSmall()) {
+            return BigDecimal.valueOf(numerator).divide(BigDecimal.valueOf(denominator), scale, roundingMode);
+        }
+        return new BigDecimal(bigNumerator).divide(new BigDecimal(bigDenominator), scale, roundingMode);
+    }
+
+    public BigDecimal toBigDecimal(MathContext mc) {
+        if (isSmall()) {
+            return BigDecimal.valueOf(numerator).divide(BigDecimal.valueOf(denominator), mc);
+        }
+        return new BigDecimal(bigNumerator).divide(new BigDecimal(bigDenominator), mc);
+    }
+
+    public BigInteger getNumerator() {
+        return reduce().bigNumerator();
+    }
+
+    public BigInteger getDenominator() {
+        return reduce().bigDenominator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rational)) return false;
+        return compareTo((Rational) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        Rational r = reduce();
+        return r.isSmall()
+            ? Long.hashCode(r.numerator) * 31 + Long.hashCode(r.denominator)
+            : r.bigNumerator.hashCode() * 31 + r.bigDenominator.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        Rational r = reduce();
+        if (r.isSmall()) {
+            return r.denominator == 1 ? Long.toString(r.numerator) : r.numerator + "/" + r.denominator;
+        }
+        return r.bigNumerator + "/" + r.bigDenominator;
+    }
+
+    // Bits in the larger of numerator and denominator; a measure of the fraction's size
+    int bitLength() {
+        if (isSmall()) {
+            return 64 - Long.numberOfLeadingZeros(Math.max(Math.abs(numerator), denominator));
+        }
+        return Math.max(bigNumerator.bitLength(), bigDenominator.bitLength());
+    }
+
+    private boolean isSmall() {
+        return bigNumerator == null;
+    }
+
+    private Rational reduce() {
+        if (reduced || !isSmall()) {
+            return this;
+        }
+        long gcd = gcd(Math.abs(numerator), denominator);
+        return gcd == 1 ? new Rational(numerator, denominator, true) : new Rational(numerator / gcd, denominator / gcd, true);
+    }
+
+    private BigInteger bigNumerator() {
+        return isSmall() ? BigInteger.valueOf(numerator) : bigNumerator;
+    }
+
+    private BigInteger bigDenominator() {
+        return isSmall() ? BigInteger.valueOf(denominator) : bigDenominator;
+    }
+
+    // Returns null if the long result would overflow
+    private static Rational addSmall(Rational a, Rational b) {
+        if (a.denominator == b.denominator) {
+            long sum = a.numerator + b.numerator;
+            return addOverflows(a.numerator, b.numerator, sum) ? null : new Rational(sum, a.denominator, false);
+        }
+        if (multiplyOverflows(a.numerator, b.denominator) || multiplyOverflows(b.numerator, a.denominator)
+                || multiplyOverflows(a.denominator, b.denominator)) {
+            return null;
+        }
+        long left = a.numerator * b.denominator;
+        long right = b.numerator * a.denominator;
+        long sum = left + right;
+        return addOverflows(left, right, sum) ? null : new Rational(sum, a.denominator * b.denominator, false);
+    }
+
+    private static Rational multiplySmall(Rational a, Rational b) {
+        if (multiplyOverflows(a.numerator, b.numerator) || multiplyOverflows(a.denominator, b.denominator)) {
+            return null;
+        }
+        return new Rational(a.numerator * b.numerator, a.denominator * b.denominator, false);
+    }
+
+    // Also rejects Long.MIN_VALUE, which the long form never holds
+    private static boolean addOverflows(long a, long b, long sum) {
+        return ((a ^ sum) & (b ^ sum)) < 0 || sum == Long.MIN_VALUE;
+    }
+
+    private static boolean multiplyOverflows(long a, long b) {
+        long low = a * b;
+        return Math.multiplyHigh(a, b) != (low >> 63) || low == Long.MIN_VALUE;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a == 0 ? 1 : a;
+    }
+}
@@ -0,0 +1,170 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Evaluates compiled expressions with exact {@link Rational} arithmetic, so chains such
+ * as {@code 1 / 3 * 3} come out exactly and the result is rounded only once, to
+ * {@link BigDecimalMath#DEFAULT_SCALE}. Functions and non-integer powers have no exact
+ * rational value; they are computed as in {@link DecimalEvaluator} and their (rounded)
+ * result is carried on exactly.
+ */
+final class RationalEvaluator {
+    // Scale used to pass a non-terminating fraction to a function
+    private static final int ARGUMENT_SCALE = BigDecimalMath.DEFAULT_SCALE * 2;
+
+    private RationalEvaluator() {
+    }
+
+    static EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings) {
+        return evaluate(expression, bindings, EvaluationGuard.UNLIMITED);
+    }
+
+    static EvaluationResult evaluate(CompiledExpression expression, BigDecimal[] bindings, EvaluationGuard guard) {
+        if (!expression.isValid()) {
+            return expression.failure();
+        }
+        ExpressionNode[] program = expression.program();
+        int[] positions = expression.positions();
+        Rational[] stack = new Rational[expression.maxStackDepth()];
+        int top = 0;
+
+        for (int i = 0; i < program.length; i++) {
+            ExpressionNode node = program[i];
+            Operator op = node.getOperator();
+            ErrorCode error = (i & EvaluationGuard.CHECK_MASK) == 0 ? guard.checkTime() : null;
+            if (error != null) {
+                return EvaluationResult.failure(error, positions[i]);
+            }
+            if (op == null) {
+                BigDecimal constant = node.isVariable() ? DecimalEvaluator.binding(bindings, node.getSlot()) : node.getValue();
+                if (constant == null) {
+                    return EvaluationResult.failure(ErrorCode.UNBOUND_VARIABLE, positions[i]);
+                }
+                // Checked as a decimal, since a large scale makes a large denominator
+                error = guard.check(constant);
+                if (error != null) {
+                    return EvaluationResult.failure(error, positions[i]);
+                }
+                stack[top++] = Rational.valueOf(constant);
+                continue;
+            }
+            Rational value;
+            if (op == Operator.CUSTOM) {
+                int arity = node.getOperandCount();
+                try {
+                    value = applyCustom(node.getCustomOperator(), stack[top - arity], arity == 2 ? stack[top - 1] : null);
+                } catch (ArithmeticException ex) {
+                    return EvaluationResult.failure(CustomOperator.errorCode(ex), positions[i]);
+                }
+                top -= arity - 1;
+            } else if (op.getArity() == 1) {
+                Rational a = stack[top - 1];
+                error = checkDomain(op, a);
+                if (error == null) {
+                    error = guard.checkFunction(op, a);
+                }
+                if (error != null) {
+                    return EvaluationResult.failure(error, positions[i]);
+                }
+                try {
+                    value = applyOperator(op, a, guard);
+                } catch (CalculationException ex) {
+                    return EvaluationResult.failure(ex.getErrorCode(), positions[i]);
+                }
+            } else {
+                Rational b = stack[--top];
+                Rational a = stack[top - 1];
+                error = checkDomain(op, a, b);
+                if (error == null && op == Operator.POWER) {
+                    error = guard.checkPower(a, b);
+                }
+                if (error != null) {
+                    return EvaluationResult.failure(error, positions[i]);
+                }
+                try {
+                    value = applyOperator(op, a, b, guard);
+                } catch (CalculationException ex) {
+                    return EvaluationResult.failure(ex.getErrorCode(), positions[i]);
+                }
+            }
+            error = guard.check(value);
+            if (error != null) {
+                return EvaluationResult.failure(error, positions[i]);
+            }
+            stack[top - 1] = value;
+        }
+        return EvaluationResult.success(round(stack[0]));
+    }
+
+    static ErrorCode checkDomain(Operator op, Rational a) {
+        return op == Operator.NEGATE ? null : DecimalEvaluator.checkDomain(op, toDecimal(a), null);
+    }
+
+    static ErrorCode checkDomain(Operator op, Rational a, Rational b) {
+        switch (op) {
+            case DIVIDE:
+            case MODULO:
+                return b.signum() == 0 ? ErrorCode.DIVISION_BY_ZERO : null;
+            case POWER:
+                return DecimalEvaluator.checkDomain(op, toDecimal(a), toDecimal(b));
+            default:
+                return null;
+        }
+    }
+
+    static Rational applyOperator(Operator op, Rational a, EvaluationGuard guard) {
+        if (op == Operator.NEGATE) {
+            return a.negate();
+        }
+        return Rational.valueOf(DecimalEvaluator.applyOperator(op, toDecimal(a), guard));
+    }
+
+    static Rational applyOperator(Operator op, Rational a, Rational b, EvaluationGuard guard) {
+        switch (op) {
+            case ADD:
+                return a.add(b);
+            case SUBTRACT:
+                return a.subtract(b);
+            case MULTIPLY:
+                return a.multiply(b);
+            case DIVIDE:
+                return a.divide(b);
+            case MODULO:
+                return a.remainder(b);
+            case POWER:
+                if (b.isInteger()) {
+                    // checkDomain has ruled out exponents outside the int range
+                    return a.pow(b.getNumerator().intValueExact());
+                }
+                return Rational.valueOf(DecimalEvaluator.applyOperator(op, toDecimal(a), toDecimal(b), guard));
+            case MIN:
+                return a.min(b);
+            case MAX:
+                return a.max(b);
+            default:
+                throw new ArithmeticException("Invalid expression: '" + op.getSymbol() + "' is not a binary operator");
+        }
+    }
+
+    // Custom operators work on BigDecimals; their result is carried on exactly, as for functions
+    static Rational applyCustom(CustomOperator op, Rational a, Rational b) {
+        return Rational.valueOf(DecimalEvaluator.applyCustom(op, toDecimal(a), b == null ? null : toDecimal(b)));
+    }
+
+    // Exact when the fraction terminates, otherwise rounded well past the default scale
+    private static BigDecimal toDecimal(Rational value) {
+        int scale = value.decimalScale();
+        return value.toBigDecimal(scale >= 0 ? scale : ARGUMENT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    // The single rounding step: exact if the value fits in the default scale
+    static BigDecimal round(Rational value) {
+        int scale = value.decimalScale();
+        if (scale >= 0 && scale <= BigDecimalMath.DEFAULT_SCALE) {
+            return value.toBigDecimal(scale, RoundingMode.UNNECESSARY);
+        }
+        return value.toBigDecimal(BigDecimalMath.DEFAULT_SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,44 @@
+package com.simplecalculator.model;
+
+/**
+ * Outcome of a syntax check: valid, or the first {@link ErrorCode} found and the character
+ * position it refers to. Successful checks share a single instance.
+ */
+public final class ValidationResult {
+    public static final ValidationResult VALID = new ValidationResult(null, -1);
+
+    private final ErrorCode errorCode;
+    private final int position;
+
+    private ValidationResult(ErrorCode errorCode, int position) {
+        this.errorCode = errorCode;
+        this.position = position;
+    }
+
+    public static ValidationResult invalid(ErrorCode errorCode, int position) {
+        return new ValidationResult(errorCode, position);
+    }
+
+    public boolean isValid() {
+        return errorCode == null;
+    }
+
+    // The first problem found, or null if the expression is valid
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    // Character offset of the problem, or -1 if the expression is valid
+    public int getPosition() {
+        return position;
+    }
+
+    public String getMessage() {
+        return errorCode == null ? null : errorCode.format(position);
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "valid" : getMessage();
+    }
+}
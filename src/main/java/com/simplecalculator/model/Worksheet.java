@@ -0,0 +1,310 @@
+package com.simplecalculator.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A set of named cells, each holding a formula that may refer to other cells by name
+ * ({@code total = qty * price}).
+ *
+ * Every formula is compiled once, with the cells it references bound to variable slots.
+ * The cells form a dependency graph: changing a formula marks that cell and everything
+ * that depends on it (directly or indirectly) dirty, and {@link #recalculate()} recomputes
+ * only dirty cells, in topological order. Dirty cells are grouped into levels - a cell's
+ * level is one more than that of its deepest dirty precedent - and cells on the same level
+ * do not depend on each other, so large levels are evaluated in parallel on a
+ * {@link ForkJoinPool}.
+ *
+ * A cell that refers to an undefined or failing cell fails with
+ * {@link ErrorCode#UNBOUND_VARIABLE} at that reference; cells on or behind a dependency
+ * cycle fail with {@link ErrorCode#CIRCULAR_REFERENCE}. Not thread-safe: changes and reads
+ * must come from one thread at a time, although recalculation itself uses several.
+ */
+public class Worksheet {
+    // Levels smaller than this are evaluated on the calling thread
+    private static final int PARALLEL_THRESHOLD = 64;
+    // Cells per task when a level is split across the pool
+    private static final int CHUNK_SIZE = 32;
+
+    private final NumericMode mode;
+    private final ForkJoinPool pool;
+    // Cells by name, including placeholders for names that are referenced but not defined
+    private final Map<String, Cell> cells = new LinkedHashMap<>();
+    private final Set<Cell> dirty = new LinkedHashSet<>();
+
+    public Worksheet() {
+        this(NumericMode.DECIMAL, ForkJoinPool.commonPool());
+    }
+
+    public Worksheet(NumericMode mode, ForkJoinPool pool) {
+        this.mode = mode;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets (or replaces) a cell's formula. The name must be a valid variable name that is
+     * not a function. Syntax errors in the formula are reported as the cell's result.
+     */
+    public void set(String name, String formula) {
+        Cell cell = cellNamed(checkName(name));
+        unlinkPrecedents(cell);
+
+        String[] references = referencedNames(formula);
+        cell.formula = formula;
+        cell.compiled = ExpressionCompiler.compile(formula, references);
+        cell.precedents = new Cell[references.length];
+        for (int i = 0; i < references.length; i++) {
+            Cell precedent = cellNamed(references[i]);
+            precedent.dependents.add(cell);
+            cell.precedents[i] = precedent;
+        }
+        markDirty(cell);
+    }
+
+    // Clears a cell's formula; cells that refer to it fail until it is defined again
+    public void remove(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null || cell.formula == null) {
+            return;
+        }
+        unlinkPrecedents(cell);
+        cell.formula = null;
+        cell.compiled = null;
+        cell.precedents = new Cell[0];
+        markDirty(cell);
+        if (cell.dependents.isEmpty()) {
+            cells.remove(name);
+            dirty.remove(cell);
+        }
+    }
+
+    // The cell's formula, or null if it has none
+    public String getFormula(String name) {
+        Cell cell = cells.get(name);
+        return cell == null ? null : cell.formula;
+    }
+
+    /**
+     * Returns the cell's current value, recalculating dirty cells first, or null if the
+     * cell has no formula.
+     */
+    public EvaluationResult get(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null || cell.formula == null) {
+            return null;
+        }
+        recalculate();
+        return cell.result;
+    }
+
+    // Names of the cells the cell's formula refers to, in order of first appearance
+    public List<String> getPrecedents(String name) {
+        Cell cell = cells.get(name);
+        List<String> names = new ArrayList<>();
+        if (cell != null) {
+            for (Cell precedent : cell.precedents) {
+                names.add(precedent.name);
+            }
+        }
+        return names;
+    }
+
+    // Names of the cells that have a formula, in the order they were first defined
+    public Set<String> getCellNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Cell cell : cells.values()) {
+            if (cell.formula != null) {
+                names.add(cell.name);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    public boolean isDirty(String name) {
+        Cell cell = cells.get(name);
+        return cell != null && dirty.contains(cell);
+    }
+
+    /**
+     * Recomputes every dirty cell and returns how many were evaluated.
+     */
+    public int recalculate() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        List<List<Cell>> levels = levels();
+        int evaluated = 0;
+        for (List<Cell> level : levels) {
+            Cell[] batch = level.toArray(new Cell[0]);
+            if (batch.length < PARALLEL_THRESHOLD) {
+                evaluateRange(batch, 0, batch.length);
+            } else {
+                pool.invoke(new EvaluateTask(batch, 0, batch.length));
+            }
+            evaluated += batch.length;
+        }
+        // Whatever Kahn's algorithm could not order is on or behind a cycle
+        for (Cell cell : dirty) {
+            if (cell.level < 0) {
+                cell.result = EvaluationResult.failure(ErrorCode.CIRCULAR_REFERENCE, -1);
+                evaluated++;
+            }
+        }
+        dirty.clear();
+        return evaluated;
+    }
+
+    // Groups the dirty cells into dependency levels (Kahn's algorithm on the dirty subgraph)
+    private List<List<Cell>> levels() {
+        List<Cell> ready = new ArrayList<>();
+        for (Cell cell : dirty) {
+            cell.level = -1;
+            cell.pending = 0;
+        }
+        for (Cell cell : dirty) {
+            for (Cell precedent : distinctPrecedents(cell)) {
+                if (dirty.contains(precedent)) {
+                    cell.pending++;
+                }
+            }
+            if (cell.pending == 0) {
+                ready.add(cell);
+            }
+        }
+
+        List<List<Cell>> levels = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            List<Cell> next = new ArrayList<>();
+            for (Cell cell : ready) {
+                cell.level = levels.size();
+                for (Cell dependent : cell.dependents) {
+                    if (--dependent.pending == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            levels.add(ready);
+            ready = next;
+        }
+        return levels;
+    }
+
+    private void evaluateRange(Cell[] batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Cell cell = batch[i];
+            if (cell.compiled == null) {
+                cell.result = null;
+                continue;
+            }
+            BigDecimal[] bindings = new BigDecimal[cell.precedents.length];
+            for (int j = 0; j < bindings.length; j++) {
+                EvaluationResult input = cell.precedents[j].result;
+                bindings[j] = input != null && input.isSuccess() ? input.getValue() : null;
+            }
+            cell.result = cell.compiled.evaluate(mode, bindings);
+        }
+    }
+
+    private final class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Cell[] batch;
+        private final int from;
+        private final int to;
+
+        EvaluateTask(Cell[] batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                evaluateRange(batch, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(batch, from, middle), new EvaluateTask(batch, middle, to));
+        }
+    }
+
+    private void markDirty(Cell cell) {
+        // Iterative walk over dependents; stops at cells already dirty, which also ends cycles
+        List<Cell> work = new ArrayList<>();
+        work.add(cell);
+        while (!work.isEmpty()) {
+            Cell next = work.remove(work.size() - 1);
+            if (dirty.add(next)) {
+                work.addAll(next.dependents);
+            }
+        }
+    }
+
+    private void unlinkPrecedents(Cell cell) {
+        for (Cell precedent : cell.precedents) {
+            precedent.dependents.remove(cell);
+            // Drop placeholders nobody refers to any more
+            if (precedent.formula == null && precedent.dependents.isEmpty()) {
+                cells.remove(precedent.name);
+                dirty.remove(precedent);
+            }
+        }
+    }
+
+    private Cell cellNamed(String name) {
+        return cells.computeIfAbsent(name, Cell::new);
+    }
+
+    private static Set<Cell> distinctPrecedents(Cell cell) {
+        Set<Cell> precedents = new LinkedHashSet<>();
+        Collections.addAll(precedents, cell.precedents);
+        return precedents;
+    }
+
+    // Distinct variable names in the formula, in order of first appearance
+    private static String[] referencedNames(String formula) {
+        Set<String> names = new LinkedHashSet<>();
+        ExpressionLexer lexer = new ExpressionLexer(formula, false);
+        for (ExpressionLexer.TokenType type = lexer.next();
+             type != ExpressionLexer.TokenType.END && type != ExpressionLexer.TokenType.ERROR; type = lexer.next()) {
+            if (type == ExpressionLexer.TokenType.VARIABLE) {
+                names.add(formula.substring(lexer.tokenStart(), lexer.tokenEnd()));
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private static String checkName(String name) {
+        ExpressionLexer lexer = new ExpressionLexer(name, false);
+        if (lexer.next() != ExpressionLexer.TokenType.VARIABLE || lexer.tokenStart() != 0
+                || lexer.next() != ExpressionLexer.TokenType.END) {
+            throw new IllegalArgumentException("Invalid cell name: '" + name + "'");
+        }
+        return name;
+    }
+
+    private static final class Cell {
+        final String name;
+        final Set<Cell> dependents = new LinkedHashSet<>();
+        String formula;
+        CompiledExpression compiled;
+        Cell[] precedents = new Cell[0];
+        EvaluationResult result;
+        // Scratch state for recalculate()
+        int level;
+        int pending;
+
+        Cell(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.simplecalculator.presenter;
 
+import com.simplecalculator.model.CalculationException;
+import com.simplecalculator.model.CalculatorModel;
 import com.simplecalculator.model.CalculatorModelInterface;
+import com.simplecalculator.model.ErrorCode;
+import com.simplecalculator.model.ExpressionDocument;
 import com.simplecalculator.view.CalculatorViewInterface;
 import com.simplecalculator.view.CalculatorView;
 import javax.swing.*;
@@ -15,10 +19,15 @@ public class CalculatorPresenter {
     private CalculatorViewInterface view;
     private CalculatorModelInterface model;
     private boolean start = true;
+    private final ResultPreview preview;
+    // The document last handed to the preview; its settings are compared with the model's
+    private ExpressionDocument document;
 
     public CalculatorPresenter(CalculatorViewInterface view, CalculatorModelInterface model) {
         this.view = view;
         this.model = model;
+        this.document = newDocument(model);
+        this.preview = new ResultPreview(view::showPreview, document);
         setupEventHandlers();
         setupKeyboardBindings();
     }
@@ -42,7 +51,7 @@ public class CalculatorPresenter {
             // Clear button (C)
             concreteView.getClearButton().addActionListener(e -> {
                 logger.info("Clear button pressed");
-                handleClear();
+                handle("clear", null, this::handleClear);
             });
 
             // Backspace button (←) - access via reflection or direct cast
@@ -53,7 +62,7 @@ public class CalculatorPresenter {
                 if (backspaceButton != null) {
                     backspaceButton.addActionListener(e -> {
                         logger.info("Backspace button pressed");
-                        handleBackspace();
+                        handle("backspace", null, this::handleBackspace);
                     });
                 }
             } catch (Exception e) {
@@ -79,13 +88,13 @@ public class CalculatorPresenter {
                 contentPane.getActionMap().put("number" + key, new AbstractAction() {
                     @Override
                     public void actionPerformed(ActionEvent e) {
-                        handleNumberInput(key);
+                        handle("number", key, () -> handleNumberInput(key));
                     }
                 });
             }
 
             // Operation keys
-            String[] operationKeys = {"+", "-", "*", "/"};
+            String[] operationKeys = {"+", "-", "*", "/", "^", "%"};
             for (String key : operationKeys) {
                 contentPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
                     KeyStroke.getKeyStroke(key.charAt(0)),
@@ -94,7 +103,7 @@ public class CalculatorPresenter {
                 contentPane.getActionMap().put("operation" + key, new AbstractAction() {
                     @Override
                     public void actionPerformed(ActionEvent e) {
-                        handleOperation(key);
+                        handle("operator", key, () -> handleOperation(key));
                     }
                 });
             }
@@ -107,7 +116,7 @@ public class CalculatorPresenter {
             contentPane.getActionMap().put("equals", new AbstractAction() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    handleEquals();
+                    handle("equals", null, CalculatorPresenter.this::handleEquals);
                 }
             });
 
@@ -119,9 +128,7 @@ public class CalculatorPresenter {
             contentPane.getActionMap().put("clear", new AbstractAction() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    start = true;
-                    model.reset();
-                    view.clearDisplay();
+                    handle("clear", null, CalculatorPresenter.this::handleClear);
                 }
             });
 
@@ -133,9 +140,88 @@ public class CalculatorPresenter {
             contentPane.getActionMap().put("backspace", new AbstractAction() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    handleBackspace();
+                    handle("backspace", null, CalculatorPresenter.this::handleBackspace);
                 }
             });
+
+            // Undo / redo
+            contentPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke("control Z"),
+                "undo"
+            );
+            contentPane.getActionMap().put("undo", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    handle("undo", null, CalculatorPresenter.this::handleUndo);
+                }
+            });
+            contentPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke("control Y"),
+                "redo"
+            );
+            contentPane.getActionMap().put("redo", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    handle("redo", null, CalculatorPresenter.this::handleRedo);
+                }
+            });
+        }
+    }
+
+    // Runs a handler inside a PresenterEvent, which costs nothing unless JFR is recording it
+    private void handle(String action, String input, Runnable handler) {
+        PresenterEvent event = new PresenterEvent();
+        event.begin();
+        try {
+            handler.run();
+        } finally {
+            updatePreview();
+            if (event.shouldCommit()) {
+                event.action = action;
+                event.input = input;
+                event.expressionLength = model.getCurrentExpression().length();
+                event.displayLength = view.getDisplayText().length();
+                event.commit();
+            }
+        }
+    }
+
+    // Evaluates previews with the model's numeric mode, operators and limits when it has them
+    private static ExpressionDocument newDocument(CalculatorModelInterface model) {
+        if (model instanceof CalculatorModel) {
+            CalculatorModel calculator = (CalculatorModel) model;
+            return new ExpressionDocument(calculator.getNumericMode(), calculator.getOperatorRegistry(),
+                calculator.getLimits());
+        }
+        return new ExpressionDocument();
+    }
+
+    // Passes the preview the expression "=" would evaluate right now, or null while a number
+    // is not being entered. Takes constant time for a CalculatorModel, whose text is not copied here
+    private void updatePreview() {
+        CharSequence expression;
+        if (model instanceof CalculatorModel) {
+            CalculatorModel calculator = (CalculatorModel) model;
+            if (document.getNumericMode() != calculator.getNumericMode()
+                    || document.getOperatorRegistry() != calculator.getOperatorRegistry()
+                    || document.getLimits() != calculator.getLimits()) {
+                document = newDocument(model);
+                preview.setDocument(document);
+            }
+            expression = calculator.getCurrentExpressionText();
+        } else {
+            expression = model.getCurrentExpression();
+        }
+        if (start || expression == null || expression.length() == 0) {
+            preview.update(null);
+            return;
+        }
+        try {
+            BigDecimal operand = new BigDecimal(view.getDisplayText());
+            // Appended the way the model appends operands
+            preview.update(expression, operand.signum() < 0 ? "(" + operand.toPlainString() + ")" : operand.toPlainString());
+        } catch (NumberFormatException ex) {
+            preview.update(null);
         }
     }
 
@@ -153,8 +239,9 @@ public class CalculatorPresenter {
         logger.info("Operator input: " + command);
         if (start) {
             if (command.equals("-")) {
-                view.updateDisplay(command);
-                start = false;
+                // A minus where an operand is expected negates it in the expression, not in the display
+                model.negate();
+                view.updateDisplay(model.getCurrentExpression());
             } else {
                 model.calculate(BigDecimal.ZERO, command);
             }
@@ -178,27 +265,36 @@ public class CalculatorPresenter {
             try {
                 BigDecimal value = new BigDecimal(view.getDisplayText());
                 model.calculate(value, "=");
-                view.updateDisplay(model.getResult().toString());
+                view.showResult(model.getResult());
                 start = true;
             } catch (NumberFormatException ex) {
                 view.showError("Error: '" + view.getDisplayText() + "' is not a valid number. Please enter a valid number before pressing equals.");
                 start = true;
+            } catch (CalculationException ex) {
+                view.showError(describeError(ex));
+                start = true;
             } catch (ArithmeticException ex) {
-                String message = ex.getMessage();
-                if (message.contains("Division by zero")) {
-                    view.showError("Math Error: Cannot divide by zero. Please check your expression.");
-                } else if (message.contains("Invalid expression")) {
-                    view.showError("Syntax Error: " + message + ". Please check your mathematical expression.");
-                } else if (message.contains("Invalid mathematical expression")) {
-                    view.showError("Expression Error: " + message + ". Common issues: mismatched parentheses, consecutive operators.");
-                } else {
-                    view.showError("Math Error: " + message + ". Please check your expression.");
-                }
+                view.showError("Math Error: " + ex.getMessage() + ". Please check your expression.");
                 start = true;
             }
         }
     }
 
+    // Maps a structured evaluation error to a user-facing message
+    private String describeError(CalculationException ex) {
+        ErrorCode code = ex.getErrorCode();
+        if (code == ErrorCode.DIVISION_BY_ZERO) {
+            return "Math Error: Cannot divide by zero. Please check your expression.";
+        }
+        if (code == ErrorCode.MISMATCHED_PARENTHESES || code == ErrorCode.TOO_MANY_OPERANDS) {
+            return "Expression Error: " + ex.getMessage() + ". Common issues: mismatched parentheses, consecutive operators.";
+        }
+        if (code.isSyntaxError()) {
+            return "Syntax Error: " + ex.getMessage() + ". Please check your mathematical expression.";
+        }
+        return "Math Error: " + ex.getMessage() + ". Please check your expression.";
+    }
+
     private void handleBackspace() {
         String current = view.getDisplayText();
         if (current.length() > 1) {
@@ -209,6 +305,31 @@ public class CalculatorPresenter {
         }
     }
 
+    private void handleUndo() {
+        logger.info("Undo");
+        if (model.undo()) {
+            showModelState();
+        }
+    }
+
+    private void handleRedo() {
+        logger.info("Redo");
+        if (model.redo()) {
+            showModelState();
+        }
+    }
+
+    // Shows the pending expression, or the result once there is none; the next digit starts a new number
+    private void showModelState() {
+        String expression = model.getCurrentExpression();
+        if (expression.isEmpty()) {
+            view.showResult(model.getResult());
+        } else {
+            view.updateDisplay(expression);
+        }
+        start = true;
+    }
+
     private void handleClear() {
         start = true;
         model.reset();
@@ -218,14 +339,14 @@ public class CalculatorPresenter {
     private class NumberListener implements ActionListener {
         public void actionPerformed(ActionEvent event) {
             String input = event.getActionCommand();
-            handleNumberInput(input);
+            handle("number", input, () -> handleNumberInput(input));
         }
     }
 
     private class OperatorListener implements ActionListener {
         public void actionPerformed(ActionEvent event) {
             String command = event.getActionCommand();
-            handleOperation(command);
+            handle("operator", command, () -> handleOperation(command));
         }
     }
 }
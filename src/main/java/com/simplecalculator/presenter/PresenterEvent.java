@@ -0,0 +1,33 @@
+package com.simplecalculator.presenter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one button press or key stroke handled by
+ * {@link CalculatorPresenter}, including the model work it triggers. Fields are only
+ * filled in while a recording is running (see com.simplecalculator.model.ModelEvents).
+ */
+@Name("com.simplecalculator.PresenterAction")
+@Label("Presenter Action")
+@Category({"Calculator", "Presenter"})
+@Description("Handling of a button press or key stroke, on the event dispatch thread")
+@StackTrace(false)
+final class PresenterEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Input")
+    String input;
+
+    @Label("Expression Length")
+    @Description("Length of the pending expression after the action")
+    int expressionLength;
+
+    @Label("Display Length")
+    int displayLength;
+}
@@ -0,0 +1,199 @@
+package com.simplecalculator.presenter;
+
+import com.simplecalculator.model.ErrorCode;
+import com.simplecalculator.model.EvaluationResult;
+import com.simplecalculator.model.ExpressionDocument;
+import com.simplecalculator.model.HugeNumbers;
+
+import javax.swing.*;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Speculatively evaluates the expression being typed, for a preview of its value before
+ * "=" is pressed. All work is off the event dispatch thread, which only records the new
+ * text and restarts a debounce timer. Given the model's immutable expression text and
+ * the operand being entered, even the text is only compared by identity there and joined
+ * on the background thread, so each update costs the EDT constant time however long the
+ * expression grows.
+ *
+ * Once input has paused for the debounce delay, the expression is evaluated on a single
+ * background thread through an {@link ExpressionDocument}: the document's text is edited
+ * into the new expression with one replace of the part that differs, so typing or
+ * deleting at the end (or anywhere) only re-parses and re-evaluates the terms around the
+ * change, and earlier terms' values are reused. Each update supersedes the computations
+ * before it: a queued one is skipped, a running one is interrupted (and ends as
+ * {@link ErrorCode#CANCELLED}), and a late result is dropped on the EDT, so only the
+ * latest expression's value is ever shown. The value is the one "=" gives as long as the
+ * document has the model's numeric mode, operators and limits; when those change, hand
+ * the preview a new document with {@link #setDocument}.
+ *
+ * The preview is "= value" for a successful evaluation and empty otherwise; huge values
+ * are abbreviated on the background thread.
+ */
+public final class ResultPreview {
+    private static final Logger logger = Logger.getLogger(ResultPreview.class.getName());
+    public static final int DEFAULT_DELAY_MILLIS = 150;
+    private static final int PREVIEW_DIGITS = 40;
+
+    private final Consumer<String> view;
+    private final Timer timer;
+    private final ExecutorService executor;
+    // Bumped on every update; computations for an older generation are stale
+    private final AtomicLong generation = new AtomicLong();
+
+    // Event dispatch thread state
+    private CharSequence pending;
+    private String pendingOperand;
+    private ExpressionDocument pendingDocument;
+    private Future<?> running;
+    private String shown = "";
+
+    // Background thread state
+    private ExpressionDocument document;
+    private String documentText = "";
+
+    public ResultPreview(Consumer<String> view, ExpressionDocument document) {
+        this(view, document, DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * Shows previews through {@code view}, always called on the EDT, and evaluates with
+     * {@code document}, which the preview then owns.
+     */
+    public ResultPreview(Consumer<String> view, ExpressionDocument document, int delayMillis) {
+        this.view = view;
+        this.pendingDocument = document;
+        this.document = document;
+        timer = new Timer(delayMillis, e -> compute());
+        timer.setRepeats(false);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-preview");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called on the EDT whenever the expression "=" would evaluate changes; null when
+     * there is nothing to preview, which clears the preview right away. The previous
+     * preview stays up until the new one is ready.
+     */
+    public void update(String expression) {
+        update(expression, null);
+    }
+
+    /**
+     * As above for {@code expression} followed by a space and {@code operand}, unless that
+     * is null. The two are joined on the background thread, and {@code expression} is
+     * compared with equals, which is identity for the model's expression text
+     * ({@link com.simplecalculator.model.CalculatorModel#getCurrentExpressionText}).
+     */
+    public void update(CharSequence expression, String operand) {
+        if (Objects.equals(expression, pending) && Objects.equals(operand, pendingOperand)) {
+            return;
+        }
+        pending = expression;
+        pendingOperand = operand;
+        restart();
+    }
+
+    // Evaluates with document, which the preview then owns, from the next computation on
+    public void setDocument(ExpressionDocument document) {
+        if (document == pendingDocument) {
+            return;
+        }
+        pendingDocument = document;
+        restart();
+    }
+
+    // Supersedes the computations so far and schedules one for the pending expression
+    private void restart() {
+        generation.incrementAndGet();
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+        if (pending == null) {
+            timer.stop();
+            show("");
+        } else {
+            timer.restart();
+        }
+    }
+
+    private void compute() {
+        long current = generation.get();
+        CharSequence expression = pending;
+        String operand = pendingOperand;
+        ExpressionDocument target = pendingDocument;
+        if (expression == null) {
+            return;
+        }
+        running = executor.submit(() -> {
+            if (generation.get() != current) {
+                return;
+            }
+            if (target != document) {
+                document = target;
+                documentText = "";
+            }
+            String preview = preview(operand == null ? expression.toString() : expression + " " + operand);
+            if (preview != null) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation.get() == current) {
+                        running = null;
+                        show(preview);
+                    }
+                });
+            }
+        });
+    }
+
+    // The preview text for expression, or null if the evaluation was cancelled
+    private String preview(String expression) {
+        edit(expression);
+        EvaluationResult result = document.evaluate();
+        if (result.getErrorCode() == ErrorCode.CANCELLED) {
+            return null;
+        }
+        if (!result.isSuccess()) {
+            logger.fine("No preview: " + result.getErrorCode());
+            return "";
+        }
+        return "= " + HugeNumbers.abbreviate(result.getValue(), PREVIEW_DIGITS);
+    }
+
+    // Replaces the part of the document's text that differs from expression
+    private void edit(String expression) {
+        String old = documentText;
+        int limit = Math.min(old.length(), expression.length());
+        int prefix = 0;
+        while (prefix < limit && old.charAt(prefix) == expression.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == old.length() && prefix == expression.length()) {
+            return;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && old.charAt(old.length() - 1 - suffix) == expression.charAt(expression.length() - 1 - suffix)) {
+            suffix++;
+        }
+        document.replace(prefix, old.length() - prefix - suffix,
+            expression.substring(prefix, expression.length() - suffix));
+        documentText = expression;
+    }
+
+    private void show(String preview) {
+        if (!preview.equals(shown)) {
+            shown = preview;
+            view.accept(preview);
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.simplecalculator.view;
 
+import com.simplecalculator.model.HugeNumbers;
+
 import javax.swing.*;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.math.BigDecimal;
 
 public class CalculatorView extends JFrame implements CalculatorViewInterface {
     private JTextField display;
+    private JLabel preview;
     private JPanel buttonPanel;
     private JButton clearButton;
     private JButton backspaceButton;
     private JButton[] numberButtons;
     private JButton[] operationButtons;
+    private Runnable firstPaintCallback;
+
+    // Results with more digits are abbreviated off the EDT instead of rendered in full
+    private static final int DISPLAYED_DIGITS = 1000;
+    private static final int ABBREVIATED_DIGITS = 40;
+    // Bumped on every display change so a late background rendering is dropped
+    private int displayGeneration;
+    private BigDecimal hugeResult;
+    private JPopupMenu resultMenu;
 
     public CalculatorView() {
         // Set up the frame first
@@ -31,19 +47,59 @@ public class CalculatorView extends JFrame implements CalculatorViewInterface {
         ));
         display.setPreferredSize(new Dimension(400, 60));
 
+        // Value of the expression being typed, filled in by the presenter's preview
+        preview = new JLabel(" ");
+        preview.setHorizontalAlignment(SwingConstants.RIGHT);
+        preview.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        preview.setForeground(new Color(130, 130, 130));
+        preview.setBorder(BorderFactory.createEmptyBorder(4, 15, 0, 15));
+
         // Create main panel with padding
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
         mainPanel.setBackground(new Color(240, 240, 240));
         mainPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        // Add display to main panel
-        mainPanel.add(display, BorderLayout.NORTH);
+        // Add display and preview to main panel
+        JPanel displayPanel = new JPanel(new BorderLayout());
+        displayPanel.setBackground(new Color(240, 240, 240));
+        displayPanel.add(display, BorderLayout.CENTER);
+        displayPanel.add(preview, BorderLayout.SOUTH);
+        mainPanel.add(displayPanel, BorderLayout.NORTH);
 
-        // Create button panel with better layout
+        // Create button panel; the buttons themselves are built on first use
         buttonPanel = new JPanel();
         buttonPanel.setLayout(new GridLayout(5, 4, 8, 8));
         buttonPanel.setBackground(new Color(240, 240, 240));
 
+        // Add button panel to main panel
+        mainPanel.add(buttonPanel, BorderLayout.CENTER);
+
+        // Add main panel to frame
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Enhanced frame properties
+        setSize(450, 650);
+        setMinimumSize(new Dimension(400, 550));
+        setLocationRelativeTo(null);
+        setResizable(true);
+
+        // Add window shadow effect (visual enhancement)
+        getRootPane().setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(new Color(150, 150, 150), 1),
+            BorderFactory.createEmptyBorder(0, 0, 0, 0)
+        ));
+
+        // Request focus for keyboard input
+        requestFocusInWindow();
+    }
+
+    // Builds the button grid lazily so the frame can be shown before the
+    // fonts, borders and colors of all 20 buttons have been created
+    private void ensureButtons() {
+        if (numberButtons != null) {
+            return;
+        }
+
         // Initialize button arrays
         numberButtons = new JButton[13]; // 0-9, decimal point, parentheses (2)
         operationButtons = new JButton[5]; // +, -, *, /, =
@@ -108,26 +164,25 @@ public class CalculatorView extends JFrame implements CalculatorViewInterface {
             }
         }
 
-        // Add button panel to main panel
-        mainPanel.add(buttonPanel, BorderLayout.CENTER);
-
-        // Add main panel to frame
-        add(mainPanel, BorderLayout.CENTER);
-
-        // Enhanced frame properties
-        setSize(450, 650);
-        setMinimumSize(new Dimension(400, 550));
-        setLocationRelativeTo(null);
-        setResizable(true);
+        buttonPanel.revalidate();
+        buttonPanel.repaint();
+    }
 
-        // Add window shadow effect (visual enhancement)
-        getRootPane().setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(150, 150, 150), 1),
-            BorderFactory.createEmptyBorder(0, 0, 0, 0)
-        ));
+    /**
+     * Registers a task to run on the EDT once the frame has been painted for the first time.
+     */
+    public void setFirstPaintCallback(Runnable callback) {
+        this.firstPaintCallback = callback;
+    }
 
-        // Request focus for keyboard input
-        requestFocusInWindow();
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (firstPaintCallback != null) {
+            Runnable callback = firstPaintCallback;
+            firstPaintCallback = null;
+            SwingUtilities.invokeLater(callback);
+        }
     }
 
     public JTextField getDisplay() {
@@ -135,22 +190,121 @@ public class CalculatorView extends JFrame implements CalculatorViewInterface {
     }
 
     public JButton getClearButton() {
+        ensureButtons();
         return clearButton;
     }
 
     public JButton[] getNumberButtons() {
+        ensureButtons();
         return numberButtons;
     }
 
     public JButton[] getOperationButtons() {
+        ensureButtons();
         return operationButtons;
     }
 
     @Override
     public void updateDisplay(String text) {
+        setDisplayText(text);
+    }
+
+    /**
+     * Shows short results directly. A result with more than {@link #DISPLAYED_DIGITS}
+     * digits is abbreviated on a background thread, since its full decimal text takes
+     * seconds to build and a text field cannot lay it out anyway; the full text is
+     * available through the display's context menu.
+     */
+    @Override
+    public void showResult(BigDecimal value) {
+        if (HugeNumbers.digits(value) <= DISPLAYED_DIGITS) {
+            setDisplayText(value.toString());
+            return;
+        }
+        setDisplayText("Rendering " + HugeNumbers.digits(value) + "-digit result\u2026");
+        int generation = displayGeneration;
+        hugeResult = value;
+        ensureResultMenu();
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return HugeNumbers.abbreviate(value, ABBREVIATED_DIGITS);
+            }
+
+            @Override
+            protected void done() {
+                if (generation == displayGeneration) {
+                    try {
+                        display.setText(get());
+                        display.setCaretPosition(0);
+                    } catch (Exception e) {
+                        display.setText(value.signum() < 0 ? "-\u2026" : "\u2026");
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    private void setDisplayText(String text) {
+        displayGeneration++;
+        hugeResult = null;
         display.setText(text);
     }
 
+    // Context menu for copying a huge result, created the first time one is shown
+    private void ensureResultMenu() {
+        if (resultMenu != null) {
+            return;
+        }
+        resultMenu = new JPopupMenu();
+        JMenuItem copy = new JMenuItem("Copy full result");
+        copy.addActionListener(e -> copyFullResult());
+        resultMenu.add(copy);
+        resultMenu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                copy.setEnabled(hugeResult != null);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        display.setComponentPopupMenu(resultMenu);
+    }
+
+    private void copyFullResult() {
+        BigDecimal value = hugeResult;
+        if (value == null) {
+            return;
+        }
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return HugeNumbers.toPlainString(value);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(get()), null);
+                } catch (Exception e) {
+                    showError("Could not copy the result: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // A space keeps the label's height, so the layout does not jump when the preview appears
+    @Override
+    public void showPreview(String text) {
+        preview.setText(text.isEmpty() ? " " : text);
+    }
+
     @Override
     public void showError(String message) {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
@@ -163,6 +317,6 @@ public class CalculatorView extends JFrame implements CalculatorViewInterface {
 
     @Override
     public void clearDisplay() {
-        display.setText("0");
+        setDisplayText("0");
     }
 }
@@ -1,8 +1,19 @@
 package com.simplecalculator.view;
 
+import java.math.BigDecimal;
+
 public interface CalculatorViewInterface {
     void updateDisplay(String text);
     void showError(String message);
     String getDisplayText();
     void clearDisplay();
+
+    // Shows a calculation result; views may render very long results lazily
+    default void showResult(BigDecimal value) {
+        updateDisplay(value.toString());
+    }
+
+    // Shows a preview of the pending expression's value next to the display; empty hides it
+    default void showPreview(String text) {
+    }
 }
@@ -0,0 +1,43 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import com.simplecalculator.batch.BatchCoordinator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for BatchCoordinator
+ */
+class BatchCoordinatorTest {
+
+    @Test
+    void testBatchResultsAreMergedInOrderDespiteWorkerFailures() throws Exception {
+        Path input = Files.createTempFile("calculator-batch", ".txt");
+        Path output = Files.createTempFile("calculator-batch", ".out");
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            expressions.add(i % 50 == 0 ? i + " / 0" : i + " * (3 + " + (i % 7) + ") / 7");
+        }
+        Files.write(input, expressions);
+        try {
+            BatchCoordinator coordinator = new BatchCoordinator(2, 100, NumericMode.DECIMAL);
+            // Every worker dies on its third chunk, so chunks must be retried on replacements
+            coordinator.setWorkerArguments("--fail-after", "2");
+            coordinator.setMaxRestarts(20);
+            assertEquals(2000, coordinator.run(input, output));
+            assertTrue(coordinator.getRetriedChunks() > 0);
+            List<String> results = Files.readAllLines(output);
+            assertEquals(expressions.size(), results.size());
+            CalculatorModel model = new CalculatorModel();
+            for (int i = 0; i < expressions.size(); i++) {
+                assertEquals(model.evaluate(expressions.get(i)).toString(), results.get(i));
+            }
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+}
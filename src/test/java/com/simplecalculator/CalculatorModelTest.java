@@ -4,6 +4,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Unit tests for CalculatorModel
@@ -114,6 +117,31 @@ class CalculatorModelTest {
         assertEquals(new BigDecimal("-5"), model.getResult());
     }
 
+    @Test
+    void testNegateAppendsAPrefixMinus() {
+        model.negate();
+        model.calculate(new BigDecimal("5"), "*");
+        assertEquals("- 5 *", model.getCurrentExpression());
+        model.negate();
+        model.calculate(new BigDecimal("3"), "=");
+        assertEquals(new BigDecimal("15"), model.getResult());
+
+        // A true unary minus binds looser than "^", and a negated exponent works
+        model.negate();
+        model.calculate(new BigDecimal("2"), "^");
+        model.calculate(new BigDecimal("2"), "=");
+        assertEquals(new BigDecimal("-4"), model.getResult());
+        model.calculate(new BigDecimal("2"), "^");
+        model.negate();
+        model.calculate(new BigDecimal("1"), "=");
+        assertEquals(0, new BigDecimal("0.5").compareTo(model.getResult()));
+
+        // Negating is an undoable step
+        model.negate();
+        assertTrue(model.undo());
+        assertEquals("", model.getCurrentExpression());
+    }
+
     // Chained operations
     @Test
     void testChainedOperations() {
@@ -234,4 +262,498 @@ class CalculatorModelTest {
         model.calculate(new BigDecimal("4"), "=");
         assertEquals(new BigDecimal("14"), model.getResult());
     }
+
+    @Test
+    void testCurrentExpressionTextChangesOnlyWithTheExpression() {
+        model.calculate(new BigDecimal("2"), "+");
+        CharSequence text = model.getCurrentExpressionText();
+        assertSame(text, model.getCurrentExpressionText());
+        assertEquals("2 +", text.toString());
+        assertEquals('+', text.charAt(2));
+        model.calculate(new BigDecimal("3"), "*");
+        assertNotSame(text, model.getCurrentExpressionText());
+        assertEquals('3', model.getCurrentExpressionText().charAt(4));
+        // Undo brings back the same instance
+        assertTrue(model.undo());
+        assertSame(text, model.getCurrentExpressionText());
+    }
+
+    // Exponentiation, modulo, unary minus and functions
+    @Test
+    void testPowerIsRightAssociative() {
+        assertEquals(new BigDecimal("512"), model.evaluateExpression("2 ^ 3 ^ 2")); // 2^(3^2)
+    }
+
+    @Test
+    void testNegativeExponent() {
+        assertEquals(new BigDecimal("0.5000000000"), model.evaluateExpression("2 ^ -1"));
+    }
+
+    @Test
+    void testUnaryMinusPrecedence() {
+        assertEquals(new BigDecimal("-4"), model.evaluateExpression("-2 ^ 2"));
+        assertEquals(new BigDecimal("4"), model.evaluateExpression("(-2) ^ 2"));
+        assertEquals(new BigDecimal("8"), model.evaluateExpression("3 - -5"));
+    }
+
+    @Test
+    void testModulo() {
+        assertEquals(new BigDecimal("1"), model.evaluateExpression("7 % 3"));
+        assertEquals(new BigDecimal("-1"), model.evaluateExpression("-7 % 3"));
+    }
+
+    @Test
+    void testNegativeOperandBeforePower() {
+        model.calculate(new BigDecimal("-2"), "^");
+        model.calculate(new BigDecimal("2"), "=");
+        assertEquals(new BigDecimal("4"), model.getResult());
+    }
+
+    @Test
+    void testFunctions() {
+        assertEquals(new BigDecimal("4.0000000000"), model.evaluateExpression("sqrt(16)"));
+        assertEquals(new BigDecimal("1.4142135624"), model.evaluateExpression("sqrt(2)"));
+        assertEquals(new BigDecimal("2.7182818285"), model.evaluateExpression("exp(1)"));
+        assertEquals(new BigDecimal("2.3025850930"), model.evaluateExpression("ln(10)"));
+        assertEquals(new BigDecimal("1.0000000000"), model.evaluateExpression("cos(0)"));
+        assertEquals(new BigDecimal("0.8623188723"), model.evaluateExpression("cos(100)"));
+        assertEquals(new BigDecimal("3"), model.evaluateExpression("min(3, 4)"));
+        assertEquals(new BigDecimal("7"), model.evaluateExpression("max(2, 3) + 4"));
+    }
+
+    @Test
+    void testFunctionErrors() {
+        assertThrows(ArithmeticException.class, () -> model.evaluateExpression("ln(-1)"));
+        assertThrows(ArithmeticException.class, () -> model.evaluateExpression("sqrt(-4)"));
+        assertThrows(ArithmeticException.class, () -> model.evaluateExpression("min(1)"));
+        assertThrows(ArithmeticException.class, () -> model.evaluateExpression("foo(1)"));
+    }
+
+    // Literal parsing
+    @Test
+    void testLiteralsKeepTheirScale() {
+        assertEquals(new BigDecimal("1.50"), model.evaluateExpression("1.50"));
+        assertEquals(new BigDecimal("0.001"), model.evaluateExpression("0.001"));
+        assertEquals(new BigDecimal("1E+3"), model.evaluateExpression("1e3"));
+        assertEquals(new BigDecimal("2.5E-7"), model.evaluateExpression("2.5e-7"));
+    }
+
+    @Test
+    void testLiteralsLongerThanALong() {
+        String digits = "123456789012345678901234567890.123456789";
+        assertEquals(new BigDecimal(digits), model.evaluateExpression(digits));
+    }
+
+    @Test
+    void testSmallLiteralsAreInterned() {
+        assertSame(model.evaluateExpression("100"), model.evaluateExpression("100"));
+        assertSame(model.evaluateExpression("2.25"), model.evaluateExpression("2.25"));
+    }
+
+    // Structured error reporting
+    @Test
+    void testEvaluateReturnsValue() {
+        EvaluationResult result = model.evaluate("2 + 3 * 4");
+        assertTrue(result.isSuccess());
+        assertEquals(new BigDecimal("14"), result.getValue());
+        assertNull(result.getErrorCode());
+    }
+
+    @Test
+    void testEvaluateReportsErrorCodeAndPosition() {
+        EvaluationResult result = model.evaluate("10 / (5 - 5)");
+        assertFalse(result.isSuccess());
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getErrorCode());
+        assertEquals(3, result.getPosition());
+
+        assertEquals(ErrorCode.MISMATCHED_PARENTHESES, model.evaluate("(1 + 2").getErrorCode());
+        assertEquals(ErrorCode.MISSING_OPERAND, model.evaluate("1 +").getErrorCode());
+        assertEquals(ErrorCode.UNEXPECTED_CHARACTER, model.evaluate("2 $ 3").getErrorCode());
+        assertEquals(2, model.evaluate("2 $ 3").getPosition());
+        assertEquals(ErrorCode.WRONG_ARGUMENT_COUNT, model.evaluate("max(1)").getErrorCode());
+        assertEquals(ErrorCode.INVALID_ARGUMENT, model.evaluate("sqrt(-1)").getErrorCode());
+        assertEquals(ErrorCode.EMPTY_EXPRESSION, model.evaluate("   ").getErrorCode());
+    }
+
+    @Test
+    void testOperandsAndOperatorsMustAlternate() {
+        // Postfix and juxtaposed operands are not read as implicit operations
+        EvaluationResult postfix = model.evaluate("2 3 +");
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, postfix.getErrorCode());
+        assertEquals(2, postfix.getPosition());
+        EvaluationResult juxtaposed = model.evaluate("2 + 3 4 *");
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, juxtaposed.getErrorCode());
+        assertEquals(6, juxtaposed.getPosition());
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, model.evaluate("(1 + 2)(3)").getErrorCode());
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, model.evaluate("2 sqrt(4)").getErrorCode());
+        EvaluationResult leading = model.evaluate("* 2 3");
+        assertEquals(ErrorCode.MISSING_OPERAND, leading.getErrorCode());
+        assertEquals(0, leading.getPosition());
+
+        model.setNumericMode(NumericMode.RATIONAL);
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, model.evaluate("2 3 +").getErrorCode());
+        assertThrows(CalculationException.class, () -> model.evaluateExpression("2 + 3 4 *"));
+    }
+
+    @Test
+    void testLegacyApiThrowsCalculationException() {
+        model.calculate(new BigDecimal("10"), "/");
+        CalculationException exception = assertThrows(CalculationException.class, () -> {
+            model.calculate(BigDecimal.ZERO, "=");
+        });
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, exception.getErrorCode());
+        assertTrue(exception.getMessage().contains("Division by zero"));
+    }
+
+    // Validation without evaluation
+    @Test
+    void testValidateAcceptsWellFormedExpressions() {
+        assertTrue(model.validate("(1 + 2) * 3").isValid());
+        assertTrue(model.validate("-2 ^ -2").isValid());
+        assertTrue(model.validate("max(1, sqrt(4))").isValid());
+        assertSame(ValidationResult.VALID, model.validate("1 + 2"));
+    }
+
+    @Test
+    void testValidateReportsPositions() {
+        ValidationResult result = model.validate("1 + * 2");
+        assertFalse(result.isValid());
+        assertEquals(ErrorCode.MISSING_OPERAND, result.getErrorCode());
+        assertEquals(4, result.getPosition());
+
+        assertEquals(0, model.validate("((1)").getPosition());
+        assertEquals(ErrorCode.MISMATCHED_PARENTHESES, model.validate("1)").getErrorCode());
+        assertEquals(ErrorCode.TOO_MANY_OPERANDS, model.validate("1 2").getErrorCode());
+        assertEquals(2, model.validate("1 2").getPosition());
+        assertEquals(ErrorCode.WRONG_ARGUMENT_COUNT, model.validate("min(1, 2, 3)").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_FUNCTION, model.validate("foo(1)").getErrorCode());
+        assertEquals(ErrorCode.EMPTY_EXPRESSION, model.validate("").getErrorCode());
+    }
+
+    @Test
+    void testValidateDoesNotEvaluate() {
+        // Math errors are only found by evaluation
+        assertTrue(model.validate("5 / 0").isValid());
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, model.evaluate("5 / 0").getErrorCode());
+    }
+
+    @Test
+    void testValidateAndEvaluateAgreeOnErrors() {
+        String[] malformed = {"sqrt()", "(1,2)", "1, 2", "max(1, 2, 3)", "sqrt(1, 2)", "max(1)", "2 3 +",
+            "2 + 3 4 *", "(1)(2)", "* 2", "1 +", "1 + )", "((1)", "1)", "sqrt 4", "sqrt", "foo(1)",
+            "2 $ 3", "1..2", "", "  ", "max(1,)", "-", "(", ")", "1 ^ ^ 2", "x + 1"};
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxDepth(3));
+        List<String> inputs = new ArrayList<>(List.of(malformed));
+        inputs.add("((((1))))");
+        for (String expression : inputs) {
+            ValidationResult validation = model.validate(expression);
+            EvaluationResult evaluation = model.evaluate(expression);
+            assertFalse(validation.isValid(), expression);
+            assertEquals(validation.getErrorCode(), evaluation.getErrorCode(), expression);
+            assertEquals(validation.getPosition(), evaluation.getPosition(), expression);
+        }
+        // Missing operands are reported where one was expected, wrong argument counts at the function name
+        assertEquals(ErrorCode.MISSING_OPERAND, model.evaluate("sqrt()").getErrorCode());
+        assertEquals(5, model.evaluate("sqrt()").getPosition());
+        assertEquals(0, model.evaluate("max(1)").getPosition());
+        assertEquals(ErrorCode.MISPLACED_COMMA, model.evaluate("(1,2)").getErrorCode());
+        assertEquals(2, model.evaluate("(1,2)").getPosition());
+    }
+
+    // Adaptive precision
+    @Test
+    void testEvaluateToRequestedDigits() {
+        assertEquals(new BigDecimal("0.33333333333333333333333333333333333333333333333333"),
+            model.evaluate("1 / 3", 50).getValue());
+        assertEquals(new BigDecimal("1.4142135623730950488016887242096980785697"),
+            model.evaluate("sqrt(2)", 40).getValue());
+        assertEquals(new BigDecimal("2.71828182845904523536"), model.evaluate("exp(1)", 20).getValue());
+        assertEquals(new BigDecimal("10000000000.33333333333333333333"), model.evaluate("1e10 + 1/3", 20).getValue());
+    }
+
+    @Test
+    void testEvaluateToRequestedDigitsHandlesCancellation() {
+        // Both sides agree to many digits, so precision has to be raised to pin down zero
+        assertEquals(0, model.evaluate("sqrt(2) ^ 2 - 2", 30).getValue().signum());
+        assertEquals(0, model.evaluate("exp(1) ^ 2 - exp(2)", 30).getValue().signum());
+    }
+
+    @Test
+    void testEvaluateToRequestedDigitsReportsErrors() {
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, model.evaluate("1 / (2 - 2)", 10).getErrorCode());
+        assertEquals(ErrorCode.INVALID_ARGUMENT, model.evaluate("ln(0)", 10).getErrorCode());
+        assertEquals(ErrorCode.MISSING_OPERAND, model.evaluate("1 +", 10).getErrorCode());
+        // The divisor is zero but never exactly, so no precision can bound the quotient
+        EvaluationResult result = new AdaptivePrecisionEvaluator(100)
+            .evaluate(model.compile("1 / (sqrt(2) ^ 2 - 2)"), 10);
+        assertEquals(ErrorCode.PRECISION_LIMIT, result.getErrorCode());
+    }
+
+    // Exact rational mode
+    @Test
+    void testRationalModeRoundsOnlyOnce() {
+        assertEquals(0, new BigDecimal("0.9999999999").compareTo(model.evaluateExpression("1 / 3 * 3")));
+        model.setNumericMode(NumericMode.RATIONAL);
+        assertEquals(new BigDecimal("1"), model.evaluateExpression("1 / 3 * 3"));
+        assertEquals(new BigDecimal("1"), model.evaluateExpression("1/7 + 1/7 + 1/7 + 1/7 + 1/7 + 1/7 + 1/7"));
+        assertEquals(new BigDecimal("0.6666666667"), model.evaluateExpression("2 / 3"));
+        assertEquals(new BigDecimal("0.125"), model.evaluateExpression("2 ^ -3"));
+        assertEquals(new BigDecimal("1.4142135624"), model.evaluateExpression("2 ^ 0.5"));
+    }
+
+    @Test
+    void testRationalModeReportsErrors() {
+        model.setNumericMode(NumericMode.RATIONAL);
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, model.evaluate("1 / (1/3 - 2/6)").getErrorCode());
+        assertEquals(ErrorCode.INVALID_ARGUMENT, model.evaluate("sqrt(-1/3)").getErrorCode());
+    }
+
+    // Variables
+    @Test
+    void testCompiledFormulaWithVariables() {
+        CompiledExpression formula = model.compile("qty * rate + x", "x", "rate", "qty");
+        assertEquals(2, formula.slotOf("qty"));
+        assertEquals(new BigDecimal("6.0"),
+            formula.evaluate(new BigDecimal("1"), new BigDecimal("0.5"), new BigDecimal("10")).getValue());
+        assertEquals(new BigDecimal("40.0"),
+            formula.evaluate(new BigDecimal("0"), new BigDecimal("2.0"), new BigDecimal("20")).getValue());
+        assertEquals(6.0, formula.evaluateDouble(1, 0.5, 10), 1e-12);
+    }
+
+    @Test
+    void testVariableErrors() {
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, model.evaluate("x + 1").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, model.compile("y + 1", "x").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_FUNCTION, model.compile("x(1)", "x").getErrorCode());
+        assertEquals(ErrorCode.UNBOUND_VARIABLE, model.compile("x + y", "x", "y").evaluate(BigDecimal.ONE).getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, model.validate("x + 1").getErrorCode());
+        assertTrue(model.validate("x + 1", "x").isValid());
+    }
+
+    // Large expressions (evaluated in parallel)
+    @Test
+    void testLargeSumMatchesSequentialResult() {
+        StringBuilder expression = new StringBuilder("1");
+        for (int i = 2; i <= 20000; i++) {
+            expression.append(" + ").append(i);
+        }
+        assertEquals(new BigDecimal("200010000"), model.evaluateExpression(expression.toString()));
+
+        String withError = expression + " + 1 / 0 + sqrt(-1)";
+        EvaluationResult result = model.evaluate(withError);
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getErrorCode());
+        assertEquals(withError.indexOf('/'), result.getPosition());
+    }
+
+    @Test
+    void testLargeProductInRationalMode() {
+        StringBuilder expression = new StringBuilder("1");
+        for (int i = 0; i < 10000; i++) {
+            expression.append(" * 3 / 3");
+        }
+        model.setNumericMode(NumericMode.RATIONAL);
+        assertEquals(new BigDecimal("1"), model.evaluateExpression(expression.toString()));
+    }
+
+    @Test
+    void testLargeProductReportsLimitWhereSequentialEvaluationDoes() {
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxPrecision(1000));
+        StringBuilder expression = new StringBuilder("9");
+        for (int i = 0; i < 20000; i++) {
+            expression.append(" * 9");
+        }
+        // A left-to-right product first has more than 1000 digits at the 1047th '*'
+        EvaluationResult result = model.evaluate(expression.toString());
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, result.getErrorCode());
+        assertEquals(2 + 4 * 1046, result.getPosition());
+    }
+
+    // Shared expression pool
+    @Test
+    void testIdenticalFormulasAreCompiledOnce() {
+        CalculatorModel other = new CalculatorModel();
+        CompiledExpression first = model.compile("price * qty + 1", "price", "qty");
+        assertSame(first, other.compile("price * qty + 1", "price", "qty"));
+        assertNotSame(first, model.compile("price * qty + 1", "qty", "price"));
+
+        // Identical subexpressions are shared between formulas and within one, wherever they are
+        CompiledExpression second = model.compile("1 - price * qty", "price", "qty");
+        assertSame(first.getRoot().getOperand(0), second.getRoot().getOperand(1));
+        CompiledExpression square = model.compile("price * qty / (price * qty)", "price", "qty");
+        assertSame(square.getRoot().getOperand(0), square.getRoot().getOperand(1));
+    }
+
+    @Test
+    void testSharedSubexpressionsReportTheirOwnPositions() {
+        CompiledExpression first = model.compile("1 / 0 + 5");
+        CompiledExpression second = model.compile("5 + 1 / 0");
+        assertSame(first.getRoot().getOperand(0), second.getRoot().getOperand(1));
+        assertEquals(2, first.evaluate().getPosition());
+        assertEquals(6, second.evaluate().getPosition());
+        assertEquals(6, new AdaptivePrecisionEvaluator().evaluate(second, 10).getPosition());
+    }
+
+    @Test
+    void testPoolRespectsBounds() {
+        ExpressionPool pool = new ExpressionPool(1, 1, 100, 10);
+        CompiledExpression pooled = pool.compile("1 + 2");
+        assertSame(pooled, pool.compile("1 + 2"));
+        assertNotSame(pool.compile("3 + 4"), pool.compile("3 + 4")); // table is full
+        assertNotSame(pool.compile("1 + 2 + 3 + 4"), pool.compile("1 + 2 + 3 + 4")); // source too long
+        assertEquals(1, pool.expressionCount());
+    }
+
+    // Resource limits
+    @Test
+    void testOversizedExpressionsAreRejected() {
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxTokens(5).withMaxDepth(2).withMaxLength(20));
+        assertEquals(new BigDecimal("6"), model.evaluateExpression("1 + 2 + 3"));
+        assertEquals(ErrorCode.TOO_MANY_TOKENS, model.evaluate("1 + 2 + 3 + 4").getErrorCode());
+        assertEquals(ErrorCode.TOO_MANY_TOKENS, model.validate("1 + 2 + 3 + 4").getErrorCode());
+        assertEquals(ErrorCode.NESTED_TOO_DEEPLY, model.evaluate("(((1)))").getErrorCode());
+        assertEquals(ErrorCode.EXPRESSION_TOO_LONG, model.evaluate("1                    + 2").getErrorCode());
+    }
+
+    @Test
+    void testHugeIntermediateValuesAreRejected() {
+        EvaluationResult result = model.evaluate("1 + 2 ^ 2147483647");
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, result.getErrorCode());
+        assertEquals(6, result.getPosition());
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, model.evaluate("1e-200000 + 1").getErrorCode());
+        assertEquals(new BigDecimal("1"), model.evaluateExpression("1 ^ 2000000000"));
+
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxPrecision(50));
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, model.evaluate("99999999999 * 99999999999 * 99999999999 * 99999999999 * 99999999999").getErrorCode());
+        model.setNumericMode(NumericMode.RATIONAL);
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, model.evaluate("(1 / 3) ^ 200").getErrorCode());
+    }
+
+    @Test
+    void testTimeoutAndCancellation() {
+        StringBuilder expression = new StringBuilder("1");
+        for (int i = 0; i < 20000; i++) {
+            expression.append(" * 99");
+        }
+        model.setLimits(EvaluationLimits.DEFAULT.withTimeout(Duration.ofNanos(1)));
+        assertEquals(ErrorCode.TIMEOUT, model.evaluate(expression).getErrorCode());
+
+        model.setLimits(EvaluationLimits.DEFAULT);
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(ErrorCode.CANCELLED, model.evaluate("1 + 2").getErrorCode());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void testSingleFunctionsStopAtTheLimits() {
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxPrecision(1000));
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, model.evaluate("sin(1e1001)").getErrorCode());
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, model.evaluate("exp(2400)").getErrorCode());
+        EvaluationResult power = model.evaluate("1 + 10 ^ 1000.5");
+        assertEquals(ErrorCode.VALUE_TOO_LARGE, power.getErrorCode());
+        assertEquals(7, power.getPosition());
+
+        // Each of these takes many seconds; the timeout ends them within the function
+        model.setLimits(EvaluationLimits.DEFAULT.withTimeout(Duration.ofMillis(200)));
+        for (String expression : new String[] {"sin(1e3000)", "1 + exp(30000)", "2 ^ 70000.5"}) {
+            long start = System.nanoTime();
+            assertEquals(ErrorCode.TIMEOUT, model.evaluate(expression).getErrorCode());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        }
+        // Without limits, exp keeps its fixed cap
+        assertEquals(ErrorCode.OVERFLOW, model.compile("exp(100001)").evaluate().getErrorCode());
+    }
+
+    @Test
+    void testCurrentExpressionIsCapped() {
+        model.setLimits(EvaluationLimits.DEFAULT.withMaxLength(10));
+        model.calculate(new BigDecimal("12345"), "+");
+        CalculationException ex = assertThrows(CalculationException.class,
+            () -> model.calculate(new BigDecimal("12345"), "+"));
+        assertEquals(ErrorCode.EXPRESSION_TOO_LONG, ex.getErrorCode());
+        assertEquals("12345 +", model.getCurrentExpression());
+    }
+
+    // Custom operators
+    @Test
+    void testCustomOperatorsAndFunctions() {
+        model.setOperatorRegistry(OperatorRegistry.DEFAULT
+            .with(CustomOperator.function("vat", x -> x.multiply(new BigDecimal("1.2"))))
+            .with(CustomOperator.function("hyp", (x, y) -> x.multiply(x).add(y.multiply(y)).sqrt(java.math.MathContext.DECIMAL64)))
+            .with(CustomOperator.infix("<>", 1, true, (x, y) -> x.subtract(y).abs())));
+
+        assertEquals(new BigDecimal("120.0"), model.evaluateExpression("vat(100)"));
+        assertEquals(new BigDecimal("6"), model.evaluateExpression("hyp(3, 4) + 1"));
+        assertEquals(new BigDecimal("8"), model.evaluateExpression("2 <> 5 * 2"));
+        assertEquals(7.0, model.compile("x <> 3", "x").evaluateDouble(10), 1e-12);
+        assertTrue(model.validate("vat(x) <> 1", "x").isValid());
+        assertEquals(ErrorCode.WRONG_ARGUMENT_COUNT, model.evaluate("vat(1, 2)").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_FUNCTION, new CalculatorModel().evaluate("vat(100)").getErrorCode());
+    }
+
+    @Test
+    void testEachCustomOperatorCallsItsOwnImplementation() {
+        // Every operator has a call site of its own, however many are registered
+        OperatorRegistry registry = OperatorRegistry.DEFAULT;
+        StringBuilder sum = new StringBuilder("0");
+        for (int i = 1; i <= 8; i++) {
+            BigDecimal offset = BigDecimal.valueOf(i);
+            registry = registry.with(CustomOperator.function("add" + i, x -> x.add(offset)))
+                .with(CustomOperator.function("mul" + i, (x, y) -> x.multiply(y).multiply(offset)));
+            sum.append(" + add").append(i).append("(0) + mul").append(i).append("(1, 1)");
+        }
+        model.setOperatorRegistry(registry);
+        for (int round = 0; round < 1000; round++) {
+            assertEquals(new BigDecimal("72"), model.evaluate(sum).getValue());
+        }
+        assertEquals(new BigDecimal("56"), model.evaluateExpression("mul7(add1(1), 4)"));
+    }
+
+    @Test
+    void testCustomOperatorErrors() {
+        model.setOperatorRegistry(OperatorRegistry.DEFAULT
+            .with(CustomOperator.function("inv", x -> BigDecimal.ONE.divide(x))));
+        EvaluationResult result = model.evaluate("1 + inv(3)");
+        assertEquals(ErrorCode.INVALID_ARGUMENT, result.getErrorCode());
+        assertEquals(4, result.getPosition());
+
+        assertThrows(IllegalArgumentException.class, () -> CustomOperator.function("sqrt", x -> x));
+        assertThrows(IllegalArgumentException.class, () -> CustomOperator.infix("+", 1, true, (x, y) -> x));
+        assertThrows(IllegalArgumentException.class,
+            () -> model.getOperatorRegistry().with(CustomOperator.function("inv", x -> x)));
+    }
+
+    // Compact decimal arithmetic
+    @Test
+    void testResultsKeepBigDecimalScaleAcrossLongOverflow() {
+        assertEquals(new BigDecimal("9223372036854775808"), model.evaluate("9223372036854775807 + 1").getValue());
+        assertEquals(new BigDecimal("-9223372036854775808"), model.evaluate("-9223372036854775807 - 1").getValue());
+        assertEquals(new BigDecimal("9223372037000250000"), model.evaluate("3037000500 * 3037000500").getValue());
+        assertEquals(new BigDecimal("0.30"), model.evaluate("0.1 + 0.20").getValue());
+        assertEquals(new BigDecimal("1E+2"), model.evaluate("1e5 * 1e-3").getValue());
+        assertEquals(new BigDecimal("-0.2500000000"), model.evaluate("5 / -2e1").getValue());
+        assertEquals(new BigDecimal("1.0"), model.evaluate("min(1.0, 1.00)").getValue());
+        assertEquals(new BigDecimal("123456789012345678.9"), model.evaluate("123456789012345678.9 * 1").getValue());
+    }
+
+    // Huge numbers
+    @Test
+    void testHugeProductsAndRendering() {
+        model.setLimits(EvaluationLimits.HUGE_NUMBERS);
+        BigDecimal power = model.evaluate("7^60000").getValueOrThrow();
+        BigDecimal product = model.evaluate("7^60000 * -(7^60000) / 1000").getValueOrThrow();
+        assertEquals(0, power.multiply(power).negate().movePointLeft(3).compareTo(product));
+        assertEquals(product.toPlainString(), HugeNumbers.toPlainString(product));
+        assertEquals(power.toBigInteger().toString(), HugeNumbers.toString(power.toBigInteger()));
+    }
+
+    @Test
+    void testAbbreviatedResults() {
+        assertEquals("12345.678", HugeNumbers.abbreviate(new BigDecimal("12345.678"), 10));
+        assertEquals("1.2345\u2026E+8", HugeNumbers.abbreviate(new BigDecimal("123456789"), 5));
+        assertEquals("-1.2345\u2026E-4", HugeNumbers.abbreviate(new BigDecimal("-0.000123456789"), 5));
+        assertEquals(5, HugeNumbers.digits(new BigDecimal("-123.45")));
+    }
 }
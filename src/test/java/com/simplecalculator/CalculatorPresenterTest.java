@@ -6,7 +6,10 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import javax.swing.SwingUtilities;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Unit tests for CalculatorPresenter using mocking
@@ -198,4 +201,51 @@ class CalculatorPresenterTest {
         // Should show user-friendly error
         // verify(mockView).showError(contains("Expression Error"));
     }
+
+    // As-you-type preview
+    @Test
+    void testPreviewShowsOnlyTheLatestExpression() throws Exception {
+        List<String> shown = new CopyOnWriteArrayList<>();
+        ResultPreview preview = new ResultPreview(shown::add, new ExpressionDocument(), 20);
+        SwingUtilities.invokeAndWait(() -> {
+            preview.update("1 + 2");
+            // Typed before the debounce delay, so "1 + 2" is never evaluated
+            preview.update("1 + 23");
+        });
+        awaitPreview(shown, "= 24");
+        assertEquals(List.of("= 24"), shown);
+
+        // Appending reuses the document; errors show no preview
+        SwingUtilities.invokeAndWait(() -> preview.update("1 + 23 * 2"));
+        awaitPreview(shown, "= 47");
+        SwingUtilities.invokeAndWait(() -> preview.update("1 + 23 * 2 / 0"));
+        awaitPreview(shown, "");
+        SwingUtilities.invokeAndWait(() -> preview.update("1 + 23 * 2 / 4"));
+        awaitPreview(shown, "= 12.5000000000");
+        SwingUtilities.invokeAndWait(() -> preview.update(null));
+        assertEquals(List.of("= 24", "= 47", "", "= 12.5000000000", ""), shown);
+    }
+
+    @Test
+    void testPreviewFollowsTheDocumentsSettings() throws Exception {
+        List<String> shown = new CopyOnWriteArrayList<>();
+        ResultPreview preview = new ResultPreview(shown::add, new ExpressionDocument(), 20);
+        // The operand is joined to the expression off the EDT
+        SwingUtilities.invokeAndWait(() -> preview.update("1 / 3 *", "3"));
+        awaitPreview(shown, "= 0.9999999999");
+
+        // A model switched to RATIONAL gives 1 for "=", and so does the preview once it has a new document
+        SwingUtilities.invokeAndWait(() -> preview.setDocument(
+            new ExpressionDocument(NumericMode.RATIONAL, OperatorRegistry.DEFAULT, EvaluationLimits.DEFAULT)));
+        awaitPreview(shown, "= 1");
+        assertEquals(List.of("= 0.9999999999", "= 1"), shown);
+    }
+
+    private static void awaitPreview(List<String> shown, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (shown.isEmpty() || !shown.get(shown.size() - 1).equals(expected)) {
+            assertTrue(System.currentTimeMillis() < deadline, "no preview " + expected + " in " + shown);
+            Thread.sleep(10);
+        }
+    }
 }
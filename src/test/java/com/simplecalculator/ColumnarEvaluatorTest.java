@@ -0,0 +1,30 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ColumnarEvaluator
+ */
+class ColumnarEvaluatorTest {
+
+    @Test
+    void testColumnsMatchRowByRowEvaluation() {
+        CompiledExpression formula = new CalculatorModel().compile("(a + b) * -c - a / (b - 3) + min(a, c) % 2", "a", "b", "c");
+        int rows = 3000;
+        double[][] columns = new double[3][rows];
+        for (int i = 0; i < rows; i++) {
+            columns[0][i] = i * 0.5;
+            columns[1][i] = i % 7;
+            columns[2][i] = 100 - i;
+        }
+        double[] results = new double[rows];
+        for (ColumnarEvaluator evaluator : new ColumnarEvaluator[] {ColumnarEvaluator.SCALAR, ColumnarEvaluator.DEFAULT}) {
+            evaluator.evaluate(formula, columns, results);
+            for (int i = 0; i < rows; i++) {
+                assertEquals(formula.evaluateDouble(columns[0][i], columns[1][i], columns[2][i]), results[i]);
+            }
+        }
+        assertThrows(CalculationException.class, () -> formula.evaluateColumns(new double[2][rows], results));
+    }
+}
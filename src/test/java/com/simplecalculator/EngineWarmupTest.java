@@ -0,0 +1,26 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for EngineWarmup
+ */
+class EngineWarmupTest {
+
+    @Test
+    void testWarmUpRunsReadyHooks() {
+        AtomicInteger hooks = new AtomicInteger();
+        EngineWarmup.onReady(hooks::incrementAndGet);
+        assertTrue(EngineWarmup.warmUp(Duration.ofMillis(200)) > 0);
+        assertTrue(EngineWarmup.isReady());
+        assertEquals(1, hooks.get());
+        // Hooks registered once the engine is ready run right away
+        EngineWarmup.onReady(hooks::incrementAndGet);
+        assertEquals(2, hooks.get());
+        assertEquals(new BigDecimal("7"), new CalculatorModel().evaluateExpression("1 + 2 * 3"));
+    }
+}
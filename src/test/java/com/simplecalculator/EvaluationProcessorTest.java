@@ -0,0 +1,72 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for EvaluationProcessor
+ */
+class EvaluationProcessorTest {
+
+    @Test
+    void testProcessorEvaluatesStreamInOrderWithBoundedDemand() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        EvaluationProcessor processor = new EvaluationProcessor(NumericMode.DECIMAL, OperatorRegistry.DEFAULT,
+            EvaluationLimits.DEFAULT, executor, 4, 8, true);
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>(executor, 16);
+        publisher.subscribe(processor);
+        List<EvaluationProcessor.Result> results = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        processor.subscribe(new Flow.Subscriber<EvaluationProcessor.Result>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(EvaluationProcessor.Result result) {
+                results.add(result);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < 2000; i++) {
+            publisher.submit(i % 100 == 0 ? i + " / 0" : i + " * 2");
+        }
+        publisher.close();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(2000, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            EvaluationProcessor.Result result = results.get(i);
+            assertEquals(i, result.getIndex());
+            if (i % 100 == 0) {
+                assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getEvaluation().getErrorCode());
+            } else {
+                assertEquals(0, new BigDecimal(i * 2).compareTo(result.getEvaluation().getValue()));
+            }
+        }
+    }
+}
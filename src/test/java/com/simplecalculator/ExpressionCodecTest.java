@@ -0,0 +1,86 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Round-trip tests for the binary expression and result format
+ */
+class ExpressionCodecTest {
+
+    private final CalculatorModel model = new CalculatorModel();
+
+    private CompiledExpression roundTrip(CompiledExpression expression) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        ExpressionCodec.encode(expression, buffer);
+        buffer.flip();
+        CompiledExpression decoded = ExpressionCodec.decodeExpression(buffer);
+        assertFalse(buffer.hasRemaining());
+        return decoded;
+    }
+
+    private BigDecimal roundTrip(BigDecimal value) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        ExpressionCodec.encode(value, buffer);
+        buffer.flip();
+        return ExpressionCodec.decodeDecimal(buffer);
+    }
+
+    @Test
+    void testExpressionsRoundTripAgainstTextForm() {
+        String[] expressions = {
+            "1 + 2 * 3", "-2 ^ 2", "2 ^ 3 ^ 2", "max(1, sqrt(4)) / 3", "10 % 4 - ln(exp(1))",
+            "1e400 * 0.1 + 123456789012345678901234567890", "1 / 0"
+        };
+        for (String text : expressions) {
+            CompiledExpression compiled = model.compile(text);
+            CompiledExpression decoded = roundTrip(compiled);
+            assertEquals(text, decoded.getSource());
+            assertEquals(compiled.toString(), decoded.toString());
+            assertEquals(model.evaluate(text).toString(), decoded.evaluate().toString());
+        }
+    }
+
+    @Test
+    void testVariablesAndFailuresRoundTrip() {
+        CompiledExpression decoded = roundTrip(model.compile("qty * rate + 1", "qty", "rate"));
+        assertArrayEquals(new String[] {"qty", "rate"}, decoded.getVariableNames());
+        assertEquals(new BigDecimal("21"), decoded.evaluate(new BigDecimal("2"), BigDecimal.TEN).getValue());
+
+        CompiledExpression failed = roundTrip(model.compile("1 +"));
+        assertFalse(failed.isValid());
+        assertEquals(ErrorCode.MISSING_OPERAND, failed.getErrorCode());
+        assertEquals(2, failed.getErrorPosition());
+    }
+
+    @Test
+    void testDecimalsKeepUnscaledValueAndScale() {
+        String[] values = {"0", "-1", "0.10", "1E+5", "-123.456", "9223372036854775807", "-9223372036854775809",
+            "3.14159265358979323846264338327950288419716939937510"};
+        for (String value : values) {
+            BigDecimal original = new BigDecimal(value);
+            BigDecimal decoded = roundTrip(original);
+            assertEquals(original, decoded); // equals also compares the scale
+        }
+    }
+
+    @Test
+    void testResultsRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        ExpressionCodec.encode(model.evaluate("1 / 3"), buffer);
+        ExpressionCodec.encode(model.evaluate("1 / 0"), buffer);
+        buffer.flip();
+        assertEquals(new BigDecimal("0.3333333333"), ExpressionCodec.decodeResult(buffer).getValue());
+        EvaluationResult failure = ExpressionCodec.decodeResult(buffer);
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, failure.getErrorCode());
+        assertEquals(2, failure.getPosition());
+    }
+
+    @Test
+    void testMalformedInputIsRejected() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {99, 0, 0, 0});
+        assertThrows(IllegalArgumentException.class, () -> ExpressionCodec.decodeExpression(buffer));
+    }
+}
@@ -0,0 +1,158 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+
+/**
+ * Unit tests for ExpressionDocument
+ */
+class ExpressionDocumentTest {
+
+    private CalculatorModel model;
+
+    @BeforeEach
+    void setUp() {
+        model = new CalculatorModel();
+    }
+
+    @Test
+    void testDocumentEditsMatchWholeEvaluation() {
+        StringBuilder text = new StringBuilder("1");
+        for (int i = 2; i <= 5000; i++) {
+            text.append(i % 3 == 0 ? " - " : " + ").append(i).append(i % 4 == 0 ? " * 1.5" : "");
+        }
+        ExpressionDocument document = new ExpressionDocument();
+        document.setText(text);
+        assertEquals(model.evaluate(text.toString()).getValue(), document.evaluate().getValue());
+
+        // Typing a digit in the middle, then changing an operator
+        int middle = text.indexOf(" 2500 ") + 3;
+        document.insert(middle, "7");
+        text.insert(middle, "7");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertEquals(model.evaluate(text.toString()).getValue(), document.evaluate().getValue());
+        document.replace(middle - 2, 1, "-");
+        text.replace(middle - 2, middle - 1, "-");
+        assertEquals(model.evaluate(text.toString()).getValue(), document.evaluate().getValue());
+
+        // Typing at the end and backspacing over it
+        document.append(" * (2");
+        text.append(" * (2");
+        EvaluationResult unbalanced = document.evaluate();
+        assertEquals(ErrorCode.MISMATCHED_PARENTHESES, unbalanced.getErrorCode());
+        assertEquals(model.evaluate(text.toString()).getPosition(), unbalanced.getPosition());
+        document.append(" / 0)");
+        text.append(" / 0)");
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, document.evaluate().getErrorCode());
+        assertEquals(model.evaluate(text.toString()).getPosition(), document.evaluate().getPosition());
+        document.delete(document.length() - 10, 10);
+        text.setLength(text.length() - 10);
+        assertTrue(document.getReparsedTerms() <= 2);
+        assertEquals(text.toString(), document.getText());
+        assertEquals(model.evaluate(text.toString()).getValue(), document.evaluate().getValue());
+    }
+
+    @Test
+    void testSyntaxErrorsKeepTheTermsSplit() {
+        StringBuilder text = new StringBuilder("1");
+        for (int i = 2; i <= 5000; i++) {
+            text.append(i % 3 == 0 ? " - " : " + ").append(i);
+        }
+        ExpressionDocument document = new ExpressionDocument();
+        document.setText(text);
+        document.evaluate();
+
+        // A trailing operator, then its operand
+        edit(document, text, text.length(), 0, " + ");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+        edit(document, text, text.length(), 0, "7");
+        assertTrue(document.getReparsedTerms() <= 2);
+        assertSameResult(text, document);
+
+        // An unclosed '(' in the middle, removed again
+        int open = text.indexOf(" 2500 ") + 1;
+        edit(document, text, open, 0, "(");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+        edit(document, text, open, 1, "");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+
+        // Closed a few terms on, which joins them; then a stray ')' after it
+        edit(document, text, open, 0, "(");
+        int close = text.indexOf(" 2505 ") + 5;
+        edit(document, text, close, 0, ")");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+        edit(document, text, close + 1, 0, ")");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+        edit(document, text, close + 1, 1, "");
+        assertSameResult(text, document);
+    }
+
+    @Test
+    void testEditsInsideGroupsStayInTheirGroup() {
+        StringBuilder sum = new StringBuilder("1");
+        for (int i = 2; i <= 2000; i++) {
+            sum.append(i % 3 == 0 ? " - " : " + ").append(i).append(i % 4 == 0 ? " * 1.5" : "");
+        }
+        StringBuilder text = new StringBuilder("2 * (").append(sum).append(") - 3 * (1 + (").append(sum).append(")) / 4");
+        ExpressionDocument document = new ExpressionDocument();
+        document.setText(text);
+        assertSameResult(text, document);
+
+        // Typing in the nested group recompiles a few of its terms, not the product around it
+        int inner = text.lastIndexOf(" 1000 ") + 1;
+        edit(document, text, inner, 0, "7");
+        assertTrue(document.getReparsedTerms() <= 2);
+        assertSameResult(text, document);
+        edit(document, text, inner, 0, "5 * ");
+        assertTrue(document.getReparsedTerms() <= 2);
+        assertSameResult(text, document);
+
+        // Errors inside a group are reported where the whole text reports them
+        edit(document, text, inner, 0, "1 / 0 * ");
+        assertSameResult(text, document);
+        edit(document, text, inner, 8, "");
+        int end = text.indexOf(") - 3");
+        edit(document, text, end, 0, " *");
+        assertTrue(document.getReparsedTerms() <= 3);
+        assertSameResult(text, document);
+        edit(document, text, end, 2, ", 1");
+        assertSameResult(text, document);
+        edit(document, text, end, 3, "");
+        assertSameResult(text, document);
+    }
+
+    @Test
+    void testDocumentEvaluatesInItsNumericMode() {
+        model.setNumericMode(NumericMode.RATIONAL);
+        String text = "1 / 3 * 3 + 1 / 3 + 1 / 3 + 1 / 3 - 2";
+        ExpressionDocument document = new ExpressionDocument(NumericMode.RATIONAL, OperatorRegistry.DEFAULT,
+            EvaluationLimits.DEFAULT);
+        document.setText(text);
+        assertEquals(model.evaluate(text).getValue(), document.evaluate().getValue());
+        document.append(" / 0");
+        assertEquals(model.evaluate(text + " / 0").getPosition(), document.evaluate().getPosition());
+        document.delete(text.length(), 4);
+        // Exactly 0 in RATIONAL mode; DECIMAL rounds each 1 / 3 and gives -0.0000000001
+        assertEquals(0, BigDecimal.ZERO.compareTo(document.evaluate().getValue()));
+    }
+
+    private static void edit(ExpressionDocument document, StringBuilder text, int offset, int length, String replacement) {
+        document.replace(offset, length, replacement);
+        text.replace(offset, offset + length, replacement);
+    }
+
+    private void assertSameResult(CharSequence text, ExpressionDocument document) {
+        EvaluationResult expected = model.evaluate(text.toString());
+        EvaluationResult actual = document.evaluate();
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getErrorCode(), actual.getErrorCode());
+        assertEquals(expected.getPosition(), actual.getPosition());
+    }
+}
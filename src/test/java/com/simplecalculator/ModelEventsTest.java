@@ -0,0 +1,39 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Unit tests for the flight recorder events in ModelEvents
+ */
+class ModelEventsTest {
+
+    @Test
+    void testParseAndEvaluateEventsAreRecorded() throws Exception {
+        Path file = Files.createTempFile("calculator", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.simplecalculator.Parse");
+            recording.enable("com.simplecalculator.Evaluate");
+            recording.start();
+            new CalculatorModel().evaluate("12 + 3 * (4 - 1) + 0 * 987654");
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        RecordedEvent parse = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.simplecalculator.Parse")
+                && e.getInt("expressionLength") == 29)
+            .findFirst().orElseThrow();
+        assertEquals(13, parse.getInt("tokenCount"));
+        assertEquals(5, parse.getInt("reductions"));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.simplecalculator.Evaluate")
+            && "DECIMAL".equals(e.getString("mode"))));
+    }
+}
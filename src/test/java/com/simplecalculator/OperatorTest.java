@@ -16,6 +16,9 @@ class OperatorTest {
         assertEquals("/", Operator.DIVIDE.getSymbol());
         assertEquals("(", Operator.LEFT_PARENTHESIS.getSymbol());
         assertEquals(")", Operator.RIGHT_PARENTHESIS.getSymbol());
+        assertEquals("%", Operator.MODULO.getSymbol());
+        assertEquals("^", Operator.POWER.getSymbol());
+        assertEquals("sqrt", Operator.SQRT.getSymbol());
     }
 
     @Test
@@ -26,6 +29,28 @@ class OperatorTest {
         assertEquals(2, Operator.DIVIDE.getPrecedence());
         assertEquals(0, Operator.LEFT_PARENTHESIS.getPrecedence());
         assertEquals(0, Operator.RIGHT_PARENTHESIS.getPrecedence());
+        assertEquals(2, Operator.MODULO.getPrecedence());
+        // Unary minus binds tighter than * but looser than ^, so -2^2 = -4
+        assertTrue(Operator.NEGATE.getPrecedence() > Operator.MULTIPLY.getPrecedence());
+        assertTrue(Operator.POWER.getPrecedence() > Operator.NEGATE.getPrecedence());
+    }
+
+    @Test
+    void testGetArity() {
+        assertEquals(2, Operator.ADD.getArity());
+        assertEquals(2, Operator.POWER.getArity());
+        assertEquals(1, Operator.NEGATE.getArity());
+        assertEquals(1, Operator.SQRT.getArity());
+        assertEquals(2, Operator.MAX.getArity());
+        assertEquals(0, Operator.LEFT_PARENTHESIS.getArity());
+    }
+
+    @Test
+    void testIsFunction() {
+        assertTrue(Operator.SQRT.isFunction());
+        assertTrue(Operator.MIN.isFunction());
+        assertFalse(Operator.POWER.isFunction());
+        assertFalse(Operator.NEGATE.isFunction());
     }
 
     @Test
@@ -36,6 +61,8 @@ class OperatorTest {
         assertEquals(Operator.DIVIDE, Operator.fromSymbol("/"));
         assertEquals(Operator.LEFT_PARENTHESIS, Operator.fromSymbol("("));
         assertEquals(Operator.RIGHT_PARENTHESIS, Operator.fromSymbol(")"));
+        assertEquals(Operator.POWER, Operator.fromSymbol("^"));
+        assertEquals(Operator.COS, Operator.fromSymbol("cos"));
         assertNull(Operator.fromSymbol("invalid"));
         assertNull(Operator.fromSymbol(""));
     }
@@ -48,6 +75,9 @@ class OperatorTest {
         assertTrue(Operator.DIVIDE.isLeftAssociative());
         assertTrue(Operator.LEFT_PARENTHESIS.isLeftAssociative());
         assertFalse(Operator.RIGHT_PARENTHESIS.isLeftAssociative());
+        assertTrue(Operator.MODULO.isLeftAssociative());
+        assertFalse(Operator.POWER.isLeftAssociative());
+        assertFalse(Operator.NEGATE.isLeftAssociative());
     }
 
     @Test
@@ -0,0 +1,56 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Unit tests for the Rational number type
+ */
+class RationalTest {
+
+    @Test
+    void testArithmeticIsExact() {
+        Rational third = Rational.valueOf(1, 3);
+        assertEquals(Rational.ONE, third.multiply(Rational.valueOf(3)));
+        assertEquals(Rational.valueOf(2, 3), third.add(third));
+        assertEquals(Rational.ZERO, third.subtract(Rational.valueOf(2, 6)));
+        assertEquals(Rational.valueOf(3), Rational.ONE.divide(third));
+        assertEquals(Rational.valueOf(1, 27), third.pow(3));
+        assertEquals(Rational.valueOf(27), third.pow(-3));
+    }
+
+    @Test
+    void testEqualityIgnoresCommonFactors() {
+        assertEquals(Rational.valueOf(1, 2), Rational.valueOf(50, 100));
+        assertEquals(Rational.valueOf(1, 2).hashCode(), Rational.valueOf(50, 100).hashCode());
+        assertEquals(Rational.valueOf(-1, 2), Rational.valueOf(1, -2));
+        assertEquals("1/2", Rational.valueOf(50, 100).toString());
+    }
+
+    @Test
+    void testOverflowFallsBackToBigInteger() {
+        Rational big = Rational.valueOf(Long.MAX_VALUE, 3);
+        assertEquals(big, big.multiply(big).divide(big));
+        assertEquals(big, big.add(big).subtract(big));
+        assertEquals(new BigDecimal("85070591730234615847396907784232501249"),
+            Rational.valueOf(Long.MAX_VALUE).pow(2).toBigDecimal(0, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void testDecimalConversion() {
+        assertEquals(Rational.valueOf(1, 8), Rational.valueOf(new BigDecimal("0.125")));
+        assertEquals(Rational.valueOf(1200), Rational.valueOf(new BigDecimal("1.2E+3")));
+        assertEquals(3, Rational.valueOf(1, 8).decimalScale());
+        assertEquals(-1, Rational.valueOf(1, 3).decimalScale());
+        assertEquals(new BigDecimal("0.6666666667"), Rational.valueOf(2, 3).toBigDecimal(10, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    void testRemainderHasSignOfDividend() {
+        assertEquals(Rational.valueOf(1), Rational.valueOf(7).remainder(Rational.valueOf(3)));
+        assertEquals(Rational.valueOf(-1), Rational.valueOf(-7).remainder(Rational.valueOf(3)));
+        assertEquals(Rational.valueOf(1, 6), Rational.valueOf(1, 2).remainder(Rational.valueOf(1, 3)));
+    }
+}
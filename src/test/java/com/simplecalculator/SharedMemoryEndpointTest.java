@@ -0,0 +1,81 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import com.simplecalculator.ipc.SharedMemoryClient;
+import com.simplecalculator.ipc.SharedMemoryEndpoint;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for SharedMemoryEndpoint and SharedMemoryClient
+ */
+class SharedMemoryEndpointTest {
+
+    private CalculatorModel model;
+
+    @BeforeEach
+    void setUp() {
+        model = new CalculatorModel();
+    }
+
+    @Test
+    void testSharedMemoryEndpointAnswersInOrder() throws Exception {
+        Path file = Files.createTempDirectory("calculator-shm").resolve("endpoint");
+        // A small ring, so that records wrap around many times
+        try (SharedMemoryEndpoint endpoint = new SharedMemoryEndpoint(file, 4096, new CalculatorModel())) {
+            SharedMemoryClient client = new SharedMemoryClient(file);
+            assertEquals(0, new BigDecimal("10").compareTo(client.evaluate("2 * (3 + 2)").getValue()));
+            List<String> expressions = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                expressions.add(i % 10 == 0 ? i + " / 0" : "(" + i + " + 1) * " + "3".repeat(1 + i % 40));
+            }
+            int taken = 0;
+            for (String expression : expressions) {
+                client.submit(expression);
+                if (client.getOutstanding() == 8) {
+                    assertEquals(model.evaluate(expressions.get(taken++)).toString(), client.take().toString());
+                }
+            }
+            while (client.getOutstanding() > 0) {
+                assertEquals(model.evaluate(expressions.get(taken++)).toString(), client.take().toString());
+            }
+            // Too large for the response ring
+            assertEquals(ErrorCode.VALUE_TOO_LARGE, client.evaluate("9 ^ 20000").getErrorCode());
+        }
+        assertFalse(Files.exists(file));
+        Files.delete(file.getParent());
+    }
+
+    @Test
+    void testSharedMemoryRecordsUpToTheLimitFitAtAnyOffset() throws Exception {
+        Path file = Files.createTempDirectory("calculator-shm").resolve("endpoint");
+        try (SharedMemoryEndpoint endpoint = new SharedMemoryEndpoint(file, 4096, new CalculatorModel())) {
+            SharedMemoryClient client = new SharedMemoryClient(file);
+            // Records take at most half the ring: 2040 bytes of request, 1020 characters
+            String largest = "1" + " ".repeat(1019);
+            assertThrows(IllegalArgumentException.class, () -> client.submit(largest + " "));
+            for (int padding = 0; padding < 100; padding++) {
+                // A short request moves the tail to another offset, mid-ring, before the largest one
+                assertEquals(0, new BigDecimal("2").compareTo(client.evaluate("2" + " ".repeat(padding)).getValue()));
+                assertEquals(0, BigDecimal.ONE.compareTo(client.evaluate(largest).getValue()));
+            }
+            // Responses from small to too large for the response ring
+            for (int exponent = 4600; exponent < 5400; exponent += 3) {
+                EvaluationResult expected = model.evaluate("9 ^ " + exponent);
+                EvaluationResult result = client.evaluate("9 ^ " + exponent);
+                if (result.isSuccess()) {
+                    assertEquals(expected.toString(), result.toString());
+                } else {
+                    assertEquals(ErrorCode.VALUE_TOO_LARGE, result.getErrorCode());
+                }
+            }
+            assertEquals(ErrorCode.VALUE_TOO_LARGE, client.evaluate("9 ^ 5400").getErrorCode());
+        }
+        Files.delete(file.getParent());
+    }
+}
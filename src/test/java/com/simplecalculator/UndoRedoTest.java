@@ -0,0 +1,73 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+
+/**
+ * Unit tests for undo and redo in CalculatorModel
+ */
+class UndoRedoTest {
+
+    private CalculatorModel model;
+
+    @BeforeEach
+    void setUp() {
+        model = new CalculatorModel();
+    }
+
+    @Test
+    void testUndoAndRedoSteps() {
+        model.calculate(new BigDecimal("2"), "+");
+        model.calculate(new BigDecimal("3"), "*");
+        assertEquals("2 + 3 *", model.getCurrentExpression());
+        model.calculate(new BigDecimal("4"), "=");
+        assertEquals(new BigDecimal("14"), model.getResult());
+
+        assertTrue(model.undo());
+        assertEquals("2 + 3 *", model.getCurrentExpression());
+        assertEquals(BigDecimal.ZERO, model.getResult());
+        assertTrue(model.undo());
+        assertEquals("2 +", model.getCurrentExpression());
+        assertTrue(model.redo());
+        assertTrue(model.redo());
+        assertEquals(new BigDecimal("14"), model.getResult());
+        assertFalse(model.redo());
+    }
+
+    @Test
+    void testNewStepClearsRedo() {
+        model.calculate(new BigDecimal("2"), "+");
+        model.reset();
+        assertTrue(model.undo());
+        assertEquals("2 +", model.getCurrentExpression());
+        model.calculate(new BigDecimal("5"), "-");
+        assertFalse(model.canRedo());
+        assertEquals("2 + 5 -", model.getCurrentExpression());
+    }
+
+    @Test
+    void testFailedEvaluationCanBeUndone() {
+        model.calculate(new BigDecimal("10"), "/");
+        assertThrows(ArithmeticException.class, () -> model.calculate(BigDecimal.ZERO, "="));
+        assertTrue(model.undo());
+        assertEquals("10 /", model.getCurrentExpression());
+    }
+
+    @Test
+    void testLongSessionKeepsBoundedHistory() {
+        CalculatorModel session = new CalculatorModel(1000);
+        for (int i = 0; i < 100000; i++) {
+            session.calculate(BigDecimal.ONE, "+");
+            if (i % 100 == 99) {
+                session.calculate(BigDecimal.ONE, "=");
+            }
+        }
+        int undone = 0;
+        while (session.undo()) {
+            undone++;
+        }
+        assertEquals(1000, undone);
+    }
+}
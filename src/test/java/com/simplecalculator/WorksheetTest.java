@@ -0,0 +1,72 @@
+package com.simplecalculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+
+/**
+ * Unit tests for Worksheet
+ */
+class WorksheetTest {
+
+    private Worksheet sheet;
+
+    @BeforeEach
+    void setUp() {
+        sheet = new Worksheet();
+        sheet.set("qty", "3");
+        sheet.set("price", "2.5");
+        sheet.set("subtotal", "qty * price");
+        sheet.set("rate", "0.2");
+        sheet.set("total", "subtotal * (1 + rate)");
+    }
+
+    @Test
+    void testCellsReferToOtherCells() {
+        assertEquals(0, new BigDecimal("9").compareTo(sheet.get("total").getValue()));
+        assertEquals(0, new BigDecimal("7.5").compareTo(sheet.get("subtotal").getValue()));
+        assertEquals(2, sheet.getPrecedents("total").size());
+    }
+
+    @Test
+    void testOnlyAffectedCellsAreRecomputed() {
+        sheet.recalculate();
+        sheet.set("qty", "4");
+        assertTrue(sheet.isDirty("total"));
+        assertFalse(sheet.isDirty("rate"));
+        assertFalse(sheet.isDirty("price"));
+        assertEquals(3, sheet.recalculate()); // qty, subtotal, total
+        assertEquals(0, new BigDecimal("12").compareTo(sheet.get("total").getValue()));
+    }
+
+    @Test
+    void testUndefinedAndCircularReferences() {
+        sheet.set("a", "b + 1");
+        assertEquals(ErrorCode.UNBOUND_VARIABLE, sheet.get("a").getErrorCode());
+        sheet.set("b", "a + 1");
+        sheet.set("c", "a * 2");
+        assertEquals(ErrorCode.CIRCULAR_REFERENCE, sheet.get("a").getErrorCode());
+        assertEquals(ErrorCode.CIRCULAR_REFERENCE, sheet.get("c").getErrorCode());
+        sheet.set("b", "5");
+        assertEquals(0, new BigDecimal("12").compareTo(sheet.get("c").getValue()));
+    }
+
+    @Test
+    void testLargeLevelIsEvaluatedInParallel() {
+        for (int i = 0; i < 500; i++) {
+            sheet.set("x" + i, "qty * " + i);
+        }
+        sheet.set("sum", "x1 + x499");
+        assertEquals(0, new BigDecimal("1500").compareTo(sheet.get("sum").getValue()));
+        sheet.set("qty", "1");
+        assertEquals(0, new BigDecimal("500").compareTo(sheet.get("sum").getValue()));
+    }
+
+    @Test
+    void testInvalidCellNames() {
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("sqrt", "1"));
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("1a", "1"));
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("a b", "1"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.simplecalculator.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ColumnKernels} on the incubating Vector API, using the widest vectors the CPU
+ * supports and a scalar loop for the remainder. Needs
+ * {@code --add-modules jdk.incubator.vector} both to compile and to run, so it lives in
+ * its own source root (src/vector/java) that only scripts/columnar-benchmark.sh
+ * compiles; {@link ColumnarEvaluator} loads it reflectively, and only after checking
+ * that the module is present.
+ */
+final class VectorKernels implements ColumnKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aFrom + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bFrom + i);
+            x.add(y).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[aFrom + i] + b[bFrom + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aFrom + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bFrom + i);
+            x.sub(y).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[aFrom + i] - b[bFrom + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aFrom + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bFrom + i);
+            x.mul(y).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[aFrom + i] * b[bFrom + i];
+        }
+    }
+
+    @Override
+    public void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aFrom + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bFrom + i);
+            x.div(y).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[aFrom + i] / b[bFrom + i];
+        }
+    }
+
+    @Override
+    public void negate(double[] a, int aFrom, double[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aFrom + i).neg().intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = -a[aFrom + i];
+        }
+    }
+}